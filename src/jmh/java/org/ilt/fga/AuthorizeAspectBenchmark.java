@@ -0,0 +1,115 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+/**
+ * End-to-end cost of an annotated call through a real Spring AOP proxy and the aspect, against an
+ * in-process SpiceDB stand-in that allows every document except {@code denied}.
+ */
+@State(Scope.Benchmark)
+public class AuthorizeAspectBenchmark {
+
+  private Server server;
+  private ManagedChannel channel;
+  private BenchmarkModel.DocumentService service;
+  private PermissionPlan plan;
+  private BenchmarkModel.User allowedUser;
+  private BenchmarkModel.User deniedUser;
+  private Object[] args;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, NoSuchMethodException {
+    String serverName = InProcessServerBuilder.generateName();
+    server =
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(new AllowAllButDenied())
+            .build()
+            .start();
+    channel = InProcessChannelBuilder.forName(serverName).directExecutor().build();
+
+    AuthorizationPlans plans = new AuthorizationPlans();
+    SpiceDbAuthorizeAspect aspect =
+        new SpiceDbAuthorizeAspect(
+            new GrpcPermissionChecker(PermissionsServiceGrpc.newBlockingStub(channel)), plans);
+    AspectJProxyFactory factory = new AspectJProxyFactory(new BenchmarkModel.DocumentService());
+    factory.setProxyTargetClass(true);
+    factory.addAspect(aspect);
+    service = factory.getProxy();
+
+    Method method =
+        BenchmarkModel.DocumentService.class.getMethod("simple", BenchmarkModel.User.class);
+    plan = plans.get(method).getPermissions().get(0);
+    BenchmarkModel.Account account = new BenchmarkModel.Account("acc1");
+    allowedUser = new BenchmarkModel.User("u1", "doc1", account);
+    deniedUser = new BenchmarkModel.User("u1", "denied", account);
+    args = new Object[] {allowedUser};
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws InterruptedException {
+    channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+    server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  @Benchmark
+  public CheckPermissionRequest buildRequest() {
+    return plan.buildRequest(args);
+  }
+
+  @Benchmark
+  public String allowed() {
+    return service.simple(allowedUser);
+  }
+
+  @Benchmark
+  public String allowedNested() {
+    return service.nested(allowedUser);
+  }
+
+  @Benchmark
+  public Object denied() {
+    try {
+      return service.simple(deniedUser);
+    } catch (UnauthorizedException e) {
+      return e;
+    }
+  }
+
+  private static class AllowAllButDenied
+      extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+    private static final CheckPermissionResponse ALLOWED =
+        CheckPermissionResponse.newBuilder()
+            .setPermissionship(
+                CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+            .build();
+    private static final CheckPermissionResponse DENIED =
+        CheckPermissionResponse.newBuilder()
+            .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+            .build();
+
+    @Override
+    public void checkPermission(
+        CheckPermissionRequest request, StreamObserver<CheckPermissionResponse> observer) {
+      observer.onNext("denied".equals(request.getResource().getObjectId()) ? DENIED : ALLOWED);
+      observer.onCompleted();
+    }
+  }
+}
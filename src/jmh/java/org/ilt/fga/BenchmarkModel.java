@@ -0,0 +1,55 @@
+package org.ilt.fga;
+
+/** Annotated service and argument types shared by the benchmarks. */
+public final class BenchmarkModel {
+
+  private BenchmarkModel() {}
+
+  public static class DocumentService {
+    @SpiceDbAuthorize(permission = "document:{user.documentId}#view@user:{user.id}")
+    public String simple(User user) {
+      return user.getDocumentId();
+    }
+
+    @SpiceDbAuthorize(permission = "account:{user.account.accountId}#view@user:{user.id}")
+    public String nested(User user) {
+      return user.getAccount().getAccountId();
+    }
+  }
+
+  public static class User {
+    private final String id;
+    private final String documentId;
+    private final Account account;
+
+    public User(String id, String documentId, Account account) {
+      this.id = id;
+      this.documentId = documentId;
+      this.account = account;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getDocumentId() {
+      return documentId;
+    }
+
+    public Account getAccount() {
+      return account;
+    }
+  }
+
+  public static class Account {
+    private final String accountId;
+
+    public Account(String accountId) {
+      this.accountId = accountId;
+    }
+
+    public String getAccountId() {
+      return accountId;
+    }
+  }
+}
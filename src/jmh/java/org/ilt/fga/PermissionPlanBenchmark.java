@@ -0,0 +1,61 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Cost of turning a permission string into something checkable, per call versus cached. */
+@State(Scope.Benchmark)
+public class PermissionPlanBenchmark {
+
+  private Method method;
+  private AuthorizationPlans plans;
+  private PermissionPlan plan;
+  private Object[] args;
+
+  @Setup
+  public void setUp() throws NoSuchMethodException {
+    method = BenchmarkModel.DocumentService.class.getMethod("simple", BenchmarkModel.User.class);
+    plans = new AuthorizationPlans();
+    plan = plans.get(method).getPermissions().get(0);
+    args =
+        new Object[] {
+          new BenchmarkModel.User("user-1", "doc-1", new BenchmarkModel.Account("account-1"))
+        };
+  }
+
+  /** What the aspect did on every call before plans were cached. */
+  @Benchmark
+  public Object parsePerCall() {
+    String permission = method.getAnnotation(SpiceDbAuthorize.class).permission();
+    if (!Pattern.compile(SpiceDbAuthorizeAspect.PERMISSION_VALIDATION_REGEX)
+        .matcher(permission)
+        .matches()) {
+      throw new IllegalStateException();
+    }
+    String[] parts = permission.split("#|@");
+    return new String[] {
+      parts[0].split(":")[0], parts[0].split(":")[1], parts[1], parts[2].split(":")[0],
+      parts[2].split(":")[1]
+    };
+  }
+
+  @Benchmark
+  public Object compilePlan() {
+    return new AuthorizationPlans().get(method);
+  }
+
+  @Benchmark
+  public Object cachedPlan() {
+    return plans.get(method);
+  }
+
+  /** Resolving the ids and building the check request; see the gc profiler's bytes per op. */
+  @Benchmark
+  public Object buildRequest() {
+    return plan.buildRequest(args, ConsistencyMode.MINIMIZE_LATENCY.toConsistency());
+  }
+}
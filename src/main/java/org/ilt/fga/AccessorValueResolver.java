@@ -0,0 +1,102 @@
+package org.ilt.fga;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+
+/**
+ * Fast path for plain {@code {param}} and {@code {param.field}} expressions. The argument is read
+ * straight from the argument array and the field through a cached getter handle, bypassing SpEL.
+ * Only what SpEL would read without privileged access is used: public getters, record accessors
+ * and public fields. Any other property is left to {@link SpelValueResolver}.
+ */
+public class AccessorValueResolver implements ValueResolver {
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private final String expression;
+  private final int index;
+  private final MethodHandle getter;
+
+  private AccessorValueResolver(String expression, int index, MethodHandle getter) {
+    this.expression = expression;
+    this.index = index;
+    this.getter = getter;
+  }
+
+  /**
+   * Builds a resolver for {@code args[index].property}, or returns {@code null} when the declared
+   * parameter type exposes no public accessor of that name.
+   */
+  public static AccessorValueResolver of(
+      String expression, int index, Class<?> type, String property) {
+    if (property == null) {
+      return new AccessorValueResolver(expression, index, null);
+    }
+    MethodHandle getter = findGetter(type, property);
+    return getter == null ? null : new AccessorValueResolver(expression, index, getter);
+  }
+
+  @Override
+  public String resolve(Object[] args) {
+    Object value = args[index];
+    if (value != null && getter != null) {
+      try {
+        value = getter.invokeExact(value);
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable e) {
+        throw new FgaAuthorizationException(
+            "Error resolving expression: " + expression, (Exception) e);
+      }
+    }
+    if (value == null) {
+      throw new FgaAuthorizationException("Unable to resolve expression: " + expression);
+    }
+    return value.toString();
+  }
+
+  private static MethodHandle findGetter(Class<?> type, String property) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    for (String name : new String[] {"get" + suffix, "is" + suffix}) {
+      MethodHandle getter = unreflect(lookup, type, name);
+      if (getter != null) {
+        return getter;
+      }
+    }
+    if (type.isRecord()) {
+      for (RecordComponent component : type.getRecordComponents()) {
+        if (component.getName().equals(property)) {
+          return unreflect(lookup, type, property);
+        }
+      }
+    }
+    try {
+      Field field = type.getField(property);
+      if (!Modifier.isStatic(field.getModifiers())) {
+        return lookup.unreflectGetter(field).asType(GETTER_TYPE);
+      }
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      // no public field either
+    }
+    return null;
+  }
+
+  /** The public instance method {@code name} without parameters, if accessible as it is. */
+  private static MethodHandle unreflect(MethodHandles.Lookup lookup, Class<?> type, String name) {
+    try {
+      Method method = type.getMethod(name);
+      if (Modifier.isStatic(method.getModifiers()) || method.getReturnType() == void.class) {
+        return null;
+      }
+      return lookup.unreflect(method).asType(GETTER_TYPE);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+}
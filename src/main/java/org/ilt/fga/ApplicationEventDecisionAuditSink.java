@@ -0,0 +1,25 @@
+package org.ilt.fga;
+
+import java.util.List;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Publishes every audited decision as a Spring application event, to be received by listeners
+ * such as {@code @EventListener void on(AuthorizationDecision decision)}. Listeners run on the
+ * audit log's thread unless they are asynchronous.
+ */
+public class ApplicationEventDecisionAuditSink implements DecisionAuditSink {
+
+  private final ApplicationEventPublisher publisher;
+
+  public ApplicationEventDecisionAuditSink(ApplicationEventPublisher publisher) {
+    this.publisher = publisher;
+  }
+
+  @Override
+  public void publish(List<AuthorizationDecision> decisions) {
+    for (AuthorizationDecision decision : decisions) {
+      publisher.publishEvent(decision);
+    }
+  }
+}
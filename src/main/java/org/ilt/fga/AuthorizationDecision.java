@@ -0,0 +1,23 @@
+package org.ilt.fga;
+
+import java.time.Instant;
+
+/**
+ * One audited permission check: the relationship tuple that was checked, its result and where it
+ * came from.
+ *
+ * @param method the annotated method, as {@code declaringClass#name}
+ * @param resource the checked resource, as {@code type:id}
+ * @param subject the checked subject, as {@code type:id} or {@code type:id#relation}
+ * @param zedToken the revision the check was evaluated at, or {@code null} if unknown
+ * @param latencyNanos time from issuing the check to receiving its result
+ */
+public record AuthorizationDecision(
+    Instant timestamp,
+    String method,
+    String resource,
+    String permission,
+    String subject,
+    boolean allowed,
+    String zedToken,
+    long latencyNanos) {}
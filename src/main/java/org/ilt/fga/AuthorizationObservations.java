@@ -0,0 +1,54 @@
+package org.ilt.fga;
+
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Method;
+
+/**
+ * Names and keys of the observations recorded around authorization. With Micrometer metrics on the
+ * classpath each becomes a timer tagged by outcome; with a tracing bridge each becomes a span.
+ *
+ * <ul>
+ *   <li>{@code spicedb.authorize}: the whole authorization of an annotated method call
+ *   <li>{@code spicedb.authorize.resolve}: evaluating the resource and subject expressions
+ *   <li>{@code spicedb.check}: a single check RPC to SpiceDB, excluding cache hits
+ * </ul>
+ */
+public final class AuthorizationObservations {
+
+  public static final String AUTHORIZE = "spicedb.authorize";
+  public static final String RESOLVE = "spicedb.authorize.resolve";
+  public static final String CHECK = "spicedb.check";
+
+  public static final String METHOD = "method";
+  public static final String PERMISSION = "permission";
+  public static final String RESOURCE_TYPE = "resource.type";
+  public static final String OUTCOME = "outcome";
+
+  public static final String ALLOWED = "allowed";
+  public static final String DENIED = "denied";
+  public static final String ERROR = "error";
+
+  private AuthorizationObservations() {}
+
+  static Observation authorize(ObservationRegistry registry, Method method, String permission) {
+    return Observation.createNotStarted(AUTHORIZE, registry)
+        .lowCardinalityKeyValue(
+            METHOD, method.getDeclaringClass().getSimpleName() + "." + method.getName())
+        .lowCardinalityKeyValue(PERMISSION, permission)
+        .start();
+  }
+
+  static Observation resolve(ObservationRegistry registry, Observation parent) {
+    return Observation.createNotStarted(RESOLVE, registry).parentObservation(parent).start();
+  }
+
+  static void decided(Observation observation, boolean allowed) {
+    observation.lowCardinalityKeyValue(OUTCOME, allowed ? ALLOWED : DENIED);
+  }
+
+  static void failed(Observation observation, Throwable error) {
+    observation.lowCardinalityKeyValue(OUTCOME, ERROR);
+    observation.error(error);
+  }
+}
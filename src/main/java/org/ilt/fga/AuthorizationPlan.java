@@ -0,0 +1,198 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ExpressionParser;
+
+/**
+ * Compiled form of a {@link SpiceDbAuthorize} annotation: the permissions to check, how their
+ * results are combined, and how the annotated method delivers its result.
+ */
+public class AuthorizationPlan {
+
+  /** Name under which permission expressions read the id of the {@link SubjectResolver} subject. */
+  public static final String SUBJECT_VARIABLE = "subject";
+
+  /** How the annotated method delivers its result, which decides how the check is awaited. */
+  public enum ReturnKind {
+    BLOCKING,
+    COMPLETION_STAGE,
+    MONO,
+    FLUX
+  }
+
+  private final Method method;
+  private final List<PermissionPlan> permissions;
+  private final SpiceDbAuthorize.Operator operator;
+  private final ConsistencyMode consistency;
+  private final boolean speculative;
+  private final int subjectIndex;
+  private final ValueResolver routingKey;
+  private final ReturnKind returnKind;
+  private final String permissionNames;
+
+  AuthorizationPlan(
+      Method method,
+      List<PermissionPlan> permissions,
+      SpiceDbAuthorize.Operator operator,
+      ConsistencyMode consistency,
+      boolean speculative,
+      int subjectIndex,
+      ValueResolver routingKey) {
+    this.method = method;
+    this.permissions = List.copyOf(permissions);
+    this.operator = operator;
+    this.consistency = consistency;
+    this.speculative = speculative;
+    this.subjectIndex = subjectIndex;
+    this.routingKey = routingKey;
+    this.returnKind = returnKindOf(method.getReturnType());
+    this.permissionNames =
+        String.join(",", permissions.stream().map(PermissionPlan::getPermission).toList());
+  }
+
+  public static AuthorizationPlan compile(
+      SpiceDbAuthorize annotation,
+      Method method,
+      ExpressionParser parser,
+      EvaluationContext context) {
+    return compile(annotation, method, parser, context, ConsistencyMode.MINIMIZE_LATENCY);
+  }
+
+  public static AuthorizationPlan compile(
+      SpiceDbAuthorize annotation,
+      Method method,
+      ExpressionParser parser,
+      EvaluationContext context,
+      ConsistencyMode defaultConsistency) {
+    return compile(annotation, method, parser, context, defaultConsistency, null);
+  }
+
+  /**
+   * @param generated resolvers generated for the method's class by {@link
+   *     SpiceDbAuthorizeProcessor}, or {@code null}
+   */
+  public static AuthorizationPlan compile(
+      SpiceDbAuthorize annotation,
+      Method method,
+      ExpressionParser parser,
+      EvaluationContext context,
+      ConsistencyMode defaultConsistency,
+      GeneratedResolvers generated) {
+    List<String> permissionStrings = new ArrayList<>();
+    if (!annotation.permission().isEmpty()) {
+      permissionStrings.add(annotation.permission());
+    }
+    permissionStrings.addAll(List.of(annotation.permissions()));
+    if (permissionStrings.isEmpty()) {
+      throw new UnauthorizedException("Invalid permission format");
+    }
+
+    ParameterBinding binding = new ParameterBinding(method);
+    int subjectIndex = -1;
+    if (binding.indexOf(SUBJECT_VARIABLE) < 0 && usesSubject(permissionStrings)) {
+      binding = binding.with(SUBJECT_VARIABLE, String.class);
+      subjectIndex = binding.size() - 1;
+    }
+    Function<String, ValueResolver> precompiled = body -> null;
+    if (generated != null) {
+      String methodKey = GeneratedResolvers.methodKey(method);
+      precompiled = body -> generated.resolver(methodKey, body);
+    }
+    List<PermissionPlan> permissions = new ArrayList<>(permissionStrings.size());
+    for (String permission : permissionStrings) {
+      permissions.add(PermissionPlan.compile(permission, binding, parser, context, precompiled));
+    }
+    ValueResolver routingKey =
+        annotation.routingKey().isEmpty()
+            ? null
+            : PermissionPlan.compileExpression(
+                annotation.routingKey(), binding, parser, context, precompiled);
+    return new AuthorizationPlan(
+        method,
+        permissions,
+        annotation.operator(),
+        annotation.consistency().orElse(defaultConsistency),
+        annotation.speculative(),
+        subjectIndex,
+        routingKey);
+  }
+
+  private static boolean usesSubject(List<String> permissionStrings) {
+    for (String permission : permissionStrings) {
+      if (permission.contains("{" + SUBJECT_VARIABLE + "}")
+          || permission.contains("{" + SUBJECT_VARIABLE + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static ReturnKind returnKindOf(Class<?> returnType) {
+    if (CompletionStage.class.isAssignableFrom(returnType)) {
+      return ReturnKind.COMPLETION_STAGE;
+    }
+    // compared by name so that reactor stays an optional dependency
+    if (returnType.getName().equals("reactor.core.publisher.Mono")) {
+      return ReturnKind.MONO;
+    }
+    if (returnType.getName().equals("reactor.core.publisher.Flux")) {
+      return ReturnKind.FLUX;
+    }
+    return ReturnKind.BLOCKING;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public List<PermissionPlan> getPermissions() {
+    return permissions;
+  }
+
+  public boolean isSinglePermission() {
+    return permissions.size() == 1;
+  }
+
+  /** The checked permission names joined by commas, e.g. for use as a metric tag. */
+  public String getPermissionNames() {
+    return permissionNames;
+  }
+
+  public SpiceDbAuthorize.Operator getOperator() {
+    return operator;
+  }
+
+  public ConsistencyMode getConsistency() {
+    return consistency;
+  }
+
+  /** Whether the method may run while its check is in flight. */
+  public boolean isSpeculative() {
+    return speculative;
+  }
+
+  /**
+   * Position of the resolved subject id in the argument array passed to the permissions, right
+   * after the method arguments, or {@code -1} when no permission reads it.
+   */
+  public int getSubjectIndex() {
+    return subjectIndex;
+  }
+
+  /**
+   * The {@link SpiceDbRouting} key the checks are made under, or {@code null} when the annotation
+   * does not set one.
+   */
+  public String resolveRoutingKey(Object[] args) {
+    return routingKey == null ? null : routingKey.resolve(args);
+  }
+
+  public ReturnKind getReturnKind() {
+    return returnKind;
+  }
+}
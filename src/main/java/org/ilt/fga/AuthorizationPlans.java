@@ -0,0 +1,135 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.core.NativeDetector;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Per-method cache of compiled {@link AuthorizationPlan}s. Expressions that cannot take the
+ * accessor fast path are parsed with the configured {@link SpelCompilerMode} and share a single
+ * evaluation context, with the method arguments passed as the root object.
+ */
+public class AuthorizationPlans {
+
+  private final Map<Method, AuthorizationPlan> plans = new ConcurrentHashMap<>();
+  private final Map<Method, FilterPlan> filterPlans = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Optional<GeneratedResolvers>> generated = new ConcurrentHashMap<>();
+  private final ExpressionParser parser;
+  private final EvaluationContext context;
+  private final ConsistencyMode consistency;
+
+  public AuthorizationPlans() {
+    this(SpelCompilerMode.OFF);
+  }
+
+  public AuthorizationPlans(SpelCompilerMode compilerMode) {
+    this(compilerMode, ConsistencyMode.MINIMIZE_LATENCY);
+  }
+
+  public AuthorizationPlans(SpelCompilerMode compilerMode, ConsistencyMode consistency) {
+    this(
+        new SpelExpressionParser(
+            new SpelParserConfiguration(
+                // a native image cannot load the bytecode the SpEL compiler generates
+                NativeDetector.inNativeImage() ? SpelCompilerMode.OFF : compilerMode,
+                AuthorizationPlans.class.getClassLoader())),
+        consistency);
+  }
+
+  public AuthorizationPlans(ExpressionParser parser) {
+    this(parser, ConsistencyMode.MINIMIZE_LATENCY);
+  }
+
+  /**
+   * @param consistency the mode used by annotations that leave theirs as {@link
+   *     ConsistencyMode#DEFAULT}
+   */
+  public AuthorizationPlans(ExpressionParser parser, ConsistencyMode consistency) {
+    this.parser = parser;
+    this.consistency = consistency.orElse(ConsistencyMode.MINIMIZE_LATENCY);
+    StandardEvaluationContext context = new StandardEvaluationContext();
+    // initialise the lazily created accessor lists before the context is shared between threads
+    context.getPropertyAccessors();
+    context.getMethodResolvers();
+    context.getConstructorResolvers();
+    this.context = context;
+  }
+
+  public AuthorizationPlan get(Method method) {
+    AuthorizationPlan plan = plans.get(method);
+    if (plan == null) {
+      plan = plans.computeIfAbsent(method, this::compile);
+    }
+    return plan;
+  }
+
+  /** The globally configured consistency mode, never {@link ConsistencyMode#DEFAULT}. */
+  public ConsistencyMode getConsistency() {
+    return consistency;
+  }
+
+  public FilterPlan getFilterPlan(Method method) {
+    FilterPlan plan = filterPlans.get(method);
+    if (plan == null) {
+      plan = filterPlans.computeIfAbsent(method, this::compileFilter);
+    }
+    return plan;
+  }
+
+  /** Compiles a single {@code {...}} expression, or literal, against {@code binding}. */
+  ValueResolver compileExpression(String expression, ParameterBinding binding) {
+    return PermissionPlan.compileExpression(expression, binding, parser, context);
+  }
+
+  /** Compiles a SpEL expression evaluated against the argument array, e.g. {@code [0].id}. */
+  ValueResolver compileSpel(String expression) {
+    return new SpelValueResolver(parser.parseExpression(expression), context);
+  }
+
+  private FilterPlan compileFilter(Method method) {
+    SpiceDbPostFilter annotation = method.getAnnotation(SpiceDbPostFilter.class);
+    if (annotation == null) {
+      throw new UnauthorizedException("Missing @SpiceDbPostFilter on " + method);
+    }
+    return FilterPlan.compile(annotation, method, parser, context, consistency);
+  }
+
+  private AuthorizationPlan compile(Method method) {
+    SpiceDbAuthorize annotation = method.getAnnotation(SpiceDbAuthorize.class);
+    if (annotation == null) {
+      throw new UnauthorizedException("Missing @SpiceDbAuthorize on " + method);
+    }
+    return AuthorizationPlan.compile(
+        annotation,
+        method,
+        parser,
+        context,
+        consistency,
+        generated.computeIfAbsent(method.getDeclaringClass(), this::loadGenerated).orElse(null));
+  }
+
+  /** Loads the resolvers {@link SpiceDbAuthorizeProcessor} generated for {@code type}, if any. */
+  private Optional<GeneratedResolvers> loadGenerated(Class<?> type) {
+    String name = type.getName().replace('$', '_') + GeneratedResolvers.CLASS_SUFFIX;
+    ClassLoader classLoader = type.getClassLoader();
+    if (!ClassUtils.isPresent(name, classLoader)) {
+      return Optional.empty();
+    }
+    try {
+      return Optional.of(
+          (GeneratedResolvers)
+              ClassUtils.forName(name, classLoader).getDeclaredConstructor().newInstance());
+    } catch (ReflectiveOperationException e) {
+      throw new FgaAuthorizationException("Unable to load " + name, e);
+    }
+  }
+}
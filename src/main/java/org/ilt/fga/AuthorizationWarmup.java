@@ -0,0 +1,196 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.ReadSchemaRequest;
+import com.authzed.api.v1.SchemaServiceGrpc;
+import com.authzed.api.v1.SubjectReference;
+import io.grpc.ManagedChannel;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Prepares authorization once all singletons exist, instead of on the first request of each
+ * method. Every bean method annotated with {@link SpiceDbAuthorize}, {@link SpiceDbPostFilter} or
+ * {@link FgaAuthorize} is validated and compiled, logging a warning for malformed annotations,
+ * which keep denying access when called; the referenced types and permissions are optionally
+ * checked against the schema read from SpiceDB, failing startup on a mismatch; and the channels are
+ * connected and warmed up with a few throwaway checks.
+ */
+public class AuthorizationWarmup implements SmartInitializingSingleton {
+
+  private static final Log logger = LogFactory.getLog(AuthorizationWarmup.class);
+
+  static final String WARMUP_ID = "spicedb-warmup";
+
+  private final ListableBeanFactory beanFactory;
+  private final AuthorizationPlans plans;
+  private final PermissionChecker permissionChecker;
+  private final SpiceDbChannelPool channelPool;
+  private final SchemaServiceGrpc.SchemaServiceBlockingStub schemaService;
+  private final int warmupRequests;
+
+  /**
+   * @param permissionChecker sends the throwaway checks; a plain {@link GrpcPermissionChecker}, so
+   *     that they do not reach caches, metrics, the audit log or the circuit breaker
+   * @param channelPool channels to connect eagerly, or {@code null}
+   * @param schemaService used to validate annotations against the schema, or {@code null} to skip
+   *     schema validation
+   */
+  public AuthorizationWarmup(
+      ListableBeanFactory beanFactory,
+      AuthorizationPlans plans,
+      PermissionChecker permissionChecker,
+      SpiceDbChannelPool channelPool,
+      SchemaServiceGrpc.SchemaServiceBlockingStub schemaService,
+      int warmupRequests) {
+    this.beanFactory = beanFactory;
+    this.plans = plans;
+    this.permissionChecker = permissionChecker;
+    this.channelPool = channelPool;
+    this.schemaService = schemaService;
+    this.warmupRequests = warmupRequests;
+  }
+
+  @Override
+  public void afterSingletonsInstantiated() {
+    List<PermissionPlan> permissions = compileAll();
+    if (schemaService != null) {
+      validateSchema(permissions);
+    }
+    warmUp(permissions);
+  }
+
+  /** Compiles every annotated bean method, returning the permissions that compiled. */
+  public List<PermissionPlan> compileAll() {
+    Set<Method> methods = new LinkedHashSet<>();
+    for (String name : beanFactory.getBeanDefinitionNames()) {
+      Class<?> type = beanFactory.getType(name, false);
+      if (type != null) {
+        ReflectionUtils.doWithMethods(
+            ClassUtils.getUserClass(type), methods::add, ReflectionUtils.USER_DECLARED_METHODS);
+      }
+    }
+
+    // @FgaAuthorize is only enforced, and so only validated, when its aspect is registered
+    boolean fgaAuthorizeEnabled =
+        beanFactory.getBeanNamesForType(FgAuthorizeAspect.class, false, false).length > 0;
+    List<PermissionPlan> permissions = new ArrayList<>();
+    List<String> problems = new ArrayList<>();
+    for (Method method : methods) {
+      try {
+        if (method.isAnnotationPresent(SpiceDbAuthorize.class)) {
+          permissions.addAll(plans.get(method).getPermissions());
+        }
+        if (method.isAnnotationPresent(SpiceDbPostFilter.class)) {
+          permissions.add(plans.getFilterPlan(method).getPermission());
+        }
+        FgaAuthorize fgaAuthorize = method.getAnnotation(FgaAuthorize.class);
+        if (fgaAuthorize != null && fgaAuthorizeEnabled) {
+          if (fgaAuthorize.permission().isEmpty() || fgaAuthorize.object().isEmpty()) {
+            problems.add(method + ": @FgaAuthorize requires a permission and an object");
+          } else {
+            String[] object = FgAuthorizeAspect.splitObject(fgaAuthorize.object());
+            // FgAuthorizeAspect always checks on behalf of a user
+            permissions.add(
+                new PermissionPlan(
+                    object[0],
+                    ValueResolver.literal(object[1]),
+                    fgaAuthorize.permission(),
+                    "user",
+                    ValueResolver.literal(fgaAuthorize.subject())));
+          }
+        }
+      } catch (RuntimeException e) {
+        problems.add(method + ": " + e.getMessage());
+      }
+    }
+    if (!problems.isEmpty()) {
+      logger.warn(
+          "Invalid SpiceDB authorization annotations, calls to these methods will be denied:\n  "
+              + String.join("\n  ", problems));
+    }
+    return permissions;
+  }
+
+  /** Checks that the resource types, permissions and subject types exist in the schema. */
+  public void validateSchema(List<PermissionPlan> permissions) {
+    SchemaDefinitions schema;
+    try {
+      schema =
+          SchemaDefinitions.parse(
+              schemaService.readSchema(ReadSchemaRequest.getDefaultInstance()).getSchemaText());
+    } catch (RuntimeException e) {
+      logger.warn("Skipping SpiceDB schema validation, the schema could not be read", e);
+      return;
+    }
+
+    Set<String> problems = new LinkedHashSet<>();
+    for (PermissionPlan permission : permissions) {
+      String type = permission.getObjectType();
+      if (!schema.hasDefinition(type)) {
+        problems.add("unknown resource type '" + type + "'");
+      } else if (!schema.hasMember(type, permission.getPermission())) {
+        problems.add("'" + type + "' has no permission '" + permission.getPermission() + "'");
+      }
+      if (!schema.hasDefinition(permission.getSubjectType())) {
+        problems.add("unknown subject type '" + permission.getSubjectType() + "'");
+      }
+    }
+    failOn("SpiceDB authorization annotations do not match the schema", List.copyOf(problems));
+  }
+
+  /** Connects every channel and sends a few checks over them. */
+  public void warmUp(List<PermissionPlan> permissions) {
+    if (channelPool != null) {
+      for (ManagedChannel channel : channelPool.getChannels()) {
+        channel.getState(true);
+      }
+    }
+    if (permissions.isEmpty() || warmupRequests <= 0) {
+      return;
+    }
+
+    PermissionPlan permission = permissions.get(0);
+    CheckPermissionRequest request =
+        CheckPermissionRequest.newBuilder()
+            .setConsistency(ConsistencyMode.MINIMIZE_LATENCY.toConsistency())
+            .setResource(
+                ObjectReference.newBuilder()
+                    .setObjectType(permission.getObjectType())
+                    .setObjectId(WARMUP_ID))
+            .setPermission(permission.getPermission())
+            .setSubject(
+                SubjectReference.newBuilder()
+                    .setObject(
+                        ObjectReference.newBuilder()
+                            .setObjectType(permission.getSubjectType())
+                            .setObjectId(WARMUP_ID)))
+            .build();
+    // enough calls to go through every channel of the round-robin pool
+    int requests =
+        Math.max(warmupRequests, channelPool != null ? channelPool.getChannels().size() : 0);
+    try {
+      for (int i = 0; i < requests; i++) {
+        permissionChecker.check(request);
+      }
+    } catch (RuntimeException e) {
+      logger.warn("SpiceDB warm-up check failed, the first requests may be slower", e);
+    }
+  }
+
+  private static void failOn(String message, List<String> problems) {
+    if (!problems.isEmpty()) {
+      throw new FgaAuthorizationException(message + ":\n  " + String.join("\n  ", problems));
+    }
+  }
+}
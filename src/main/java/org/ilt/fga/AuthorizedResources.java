@@ -0,0 +1,187 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.LookupPermissionship;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SubjectReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.grpc.Context;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import reactor.core.publisher.Flux;
+
+/**
+ * Streams the ids of the resources a subject holds a permission on, for use as a pre-filter in
+ * repository queries, e.g. {@code WHERE id IN (...)} per chunk. Ids are pulled from {@code
+ * LookupResources} one response at a time as the stream is consumed, so memory stays bounded by
+ * the chunk size however many resources the subject can see. Closing the stream cancels the call.
+ *
+ * <p>The subject uses the {@link SpiceDbAuthorize} syntax, with the given arguments addressed by
+ * the lower-cased simple name of their type, e.g. {@code user:{user.id}} for a {@code User}.
+ */
+public class AuthorizedResources {
+
+  private static final Pattern SUBJECT_PATTERN =
+      Pattern.compile("^([\\w-]+):(\\{[\\w.]+}|[\\w-]+)$");
+
+  /** Compiled subject templates kept; more only happens with templates built at runtime. */
+  private static final int MAX_SUBJECT_PLANS = 1024;
+
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final AuthorizationPlans plans;
+  private final Cache<SubjectKey, SubjectPlan> subjects =
+      Caffeine.newBuilder().maximumSize(MAX_SUBJECT_PLANS).build();
+
+  public AuthorizedResources(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      AuthorizationPlans plans) {
+    this.permissionsService = permissionsService;
+    this.plans = plans;
+  }
+
+  /** Returns the ids of the matching resources; the stream must be closed if not fully consumed. */
+  public Stream<String> ids(
+      String resourceType, String permission, String subject, Object... args) {
+    LookupResourcesRequest request =
+        LookupResourcesRequest.newBuilder()
+            .setResourceObjectType(resourceType)
+            .setPermission(permission)
+            .setSubject(subjectOf(subject, args))
+            .setConsistency(plans.getConsistency().toConsistency())
+            .build();
+
+    // the call is bound to its own context so that closing the stream early cancels it
+    Context.CancellableContext context = Context.current().withCancellation();
+    Iterator<LookupResourcesResponse> responses;
+    Context previous = context.attach();
+    try {
+      responses = permissionsService.lookupResources(request);
+    } finally {
+      context.detach(previous);
+    }
+
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(
+                new PermittedIds(responses), Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(() -> context.cancel(null));
+  }
+
+  /** Returns the ids of the matching resources in lists of at most {@code chunkSize}. */
+  public Stream<List<String>> chunks(
+      int chunkSize, String resourceType, String permission, String subject, Object... args) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("chunkSize must be positive");
+    }
+    Stream<String> ids = ids(resourceType, permission, subject, args);
+    Iterator<String> iterator = ids.iterator();
+    Iterator<List<String>> chunks =
+        new Iterator<>() {
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public List<String> next() {
+            List<String> chunk = new ArrayList<>(chunkSize);
+            while (chunk.size() < chunkSize && iterator.hasNext()) {
+              chunk.add(iterator.next());
+            }
+            if (chunk.isEmpty()) {
+              throw new NoSuchElementException();
+            }
+            return chunk;
+          }
+        };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(ids::close);
+  }
+
+  /**
+   * Returns the ids of the matching resources as a {@code Flux} that only pulls as many responses
+   * as have been requested downstream. Requires reactor-core.
+   */
+  public Flux<String> flux(String resourceType, String permission, String subject, Object... args) {
+    return ReactorAuthorization.stream(() -> ids(resourceType, permission, subject, args));
+  }
+
+  private SubjectReference subjectOf(String subject, Object[] args) {
+    Class<?>[] types = new Class<?>[args.length];
+    for (int i = 0; i < args.length; i++) {
+      types[i] = args[i] != null ? args[i].getClass() : Object.class;
+    }
+    // a literal subject such as user:alice differs per caller and is not worth keeping
+    SubjectPlan plan =
+        subject.indexOf('{') < 0
+            ? compile(subject, types)
+            : subjects.get(
+                new SubjectKey(subject, Arrays.asList(types)), key -> compile(subject, types));
+    return SubjectReference.newBuilder()
+        .setObject(
+            ObjectReference.newBuilder()
+                .setObjectType(plan.type())
+                .setObjectId(plan.id().resolve(args)))
+        .build();
+  }
+
+  private SubjectPlan compile(String subject, Class<?>[] types) {
+    Matcher matcher = SUBJECT_PATTERN.matcher(subject);
+    if (!matcher.matches()) {
+      throw new UnauthorizedException("Invalid subject format");
+    }
+    return new SubjectPlan(
+        matcher.group(1),
+        plans.compileExpression(matcher.group(2), new ParameterBinding(types)));
+  }
+
+  private record SubjectKey(String subject, List<Class<?>> types) {}
+
+  private record SubjectPlan(String type, ValueResolver id) {}
+
+  /** Skips conditional results, which would need caveat context to be decided. */
+  private static final class PermittedIds implements Iterator<String> {
+    private final Iterator<LookupResourcesResponse> responses;
+    private String next;
+
+    private PermittedIds(Iterator<LookupResourcesResponse> responses) {
+      this.responses = responses;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (next == null && responses.hasNext()) {
+        LookupResourcesResponse response = responses.next();
+        if (response.getPermissionship()
+            == LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION) {
+          next = response.getResourceObjectId();
+        }
+      }
+      return next != null;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String id = next;
+      next = null;
+      return id;
+    }
+  }
+}
@@ -0,0 +1,309 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckBulkPermissionsResponseItem;
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.protobuf.StatusProto;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Collects checks issued within a short window and sends them as one {@code CheckBulkPermissions}
+ * RPC, handing each result back to its waiting caller. A batch is sent when the window elapses or
+ * when it reaches the maximum size, whichever comes first. Checks are only batched with others of
+ * the same consistency, since a bulk request carries a single consistency requirement.
+ *
+ * <p>With unary fallback enabled, single-item batches and batches whose bulk call fails are sent
+ * through the unary {@code CheckPermission} RPC instead.
+ *
+ * <p>Batches are sent by a fixed number of threads. Closing the dispatcher fails the checks that
+ * are still queued, and a blocking {@link #check} gives up after the maximum wait.
+ */
+public class BulkCheckDispatcher implements AutoCloseable {
+
+  static final int DEFAULT_SENDER_THREADS = 4;
+
+  static final Duration DEFAULT_MAX_WAIT = Duration.ofSeconds(30);
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final PermissionChecker unary;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final boolean fallbackToUnary;
+  private final long maxWaitNanos;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService sender;
+  private final Object lock = new Object();
+  private List<Pending> batch = new ArrayList<>();
+  private boolean closed;
+
+  public BulkCheckDispatcher(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      Duration window,
+      int maxBatchSize,
+      boolean fallbackToUnary) {
+    this(
+        permissionsService,
+        window,
+        maxBatchSize,
+        fallbackToUnary,
+        DEFAULT_SENDER_THREADS,
+        DEFAULT_MAX_WAIT);
+  }
+
+  /**
+   * @param senderThreads number of batches that can be in flight at once
+   * @param maxWait how long {@link #check} waits for a result before failing
+   */
+  public BulkCheckDispatcher(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      Duration window,
+      int maxBatchSize,
+      boolean fallbackToUnary,
+      int senderThreads,
+      Duration maxWait) {
+    this.permissionsService = permissionsService;
+    this.unary = new GrpcPermissionChecker(permissionsService);
+    this.windowNanos = window.toNanos();
+    this.maxBatchSize = maxBatchSize;
+    this.fallbackToUnary = fallbackToUnary;
+    this.maxWaitNanos = maxWait.toNanos();
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(daemonThreads("spicedb-batch-timer-"));
+    this.sender =
+        Executors.newFixedThreadPool(Math.max(1, senderThreads), daemonThreads("spicedb-batch-"));
+  }
+
+  /** Queues the check for the next batch and blocks until its result arrives. */
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    CompletableFuture<CheckPermissionResponse> future = checkAsync(request);
+    try {
+      return future.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new FgaAuthorizationException("Bulk permission check failed", e);
+    } catch (TimeoutException e) {
+      future.cancel(false);
+      throw new SpiceDbUnavailableException("Timed out waiting for a batched permission check");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(false);
+      throw new FgaAuthorizationException("Interrupted waiting for a permission check", e);
+    }
+  }
+
+  /** Queues the check for the next batch. */
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    Pending pending = new Pending(request, SpiceDbRouting.get(), new CompletableFuture<>());
+    List<Pending> full = null;
+    synchronized (lock) {
+      if (closed) {
+        return CompletableFuture.failedFuture(
+            new SpiceDbUnavailableException("Bulk check dispatcher is closed"));
+      }
+      batch.add(pending);
+      if (batch.size() == 1) {
+        scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+      }
+      if (batch.size() >= maxBatchSize) {
+        full = batch;
+        batch = new ArrayList<>();
+      }
+    }
+    if (full != null) {
+      List<Pending> toSend = full;
+      sender.execute(() -> send(toSend));
+    }
+    return pending.future();
+  }
+
+  /** Exposes the dispatcher as the base of a {@link PermissionChecker} chain. */
+  public PermissionChecker asPermissionChecker() {
+    return new PermissionChecker() {
+      @Override
+      public CheckPermissionResponse check(CheckPermissionRequest request) {
+        return BulkCheckDispatcher.this.check(request);
+      }
+
+      @Override
+      public CompletableFuture<CheckPermissionResponse> checkAsync(
+          CheckPermissionRequest request) {
+        return BulkCheckDispatcher.this.checkAsync(request);
+      }
+    };
+  }
+
+  /**
+   * Fails the checks still waiting for a batch and gives the batches being sent a few seconds to
+   * complete.
+   */
+  @Override
+  public void close() {
+    List<Pending> queued;
+    synchronized (lock) {
+      closed = true;
+      queued = batch;
+      batch = new ArrayList<>();
+    }
+    scheduler.shutdownNow();
+    SpiceDbUnavailableException closing =
+        new SpiceDbUnavailableException("Bulk check dispatcher is closed");
+    queued.forEach(p -> p.future().completeExceptionally(closing));
+    sender.shutdown();
+    try {
+      if (!sender.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        // interrupts the blocking calls, which fail their checks
+        sender.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      sender.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void flush() {
+    List<Pending> toSend;
+    synchronized (lock) {
+      if (batch.isEmpty()) {
+        return;
+      }
+      toSend = batch;
+      batch = new ArrayList<>();
+    }
+    sender.execute(() -> send(toSend));
+  }
+
+  private void send(List<Pending> pending) {
+    // checks routed to different clusters cannot share a bulk request
+    Map<BatchKey, List<Pending>> byKey = new LinkedHashMap<>();
+    for (Pending p : pending) {
+      // a check cancelled while queued, e.g. by a short-circuited combination, is not sent
+      if (p.future().isCancelled()) {
+        continue;
+      }
+      byKey
+          .computeIfAbsent(
+              new BatchKey(p.request().getConsistency(), p.routingKey()), k -> new ArrayList<>())
+          .add(p);
+    }
+    byKey.forEach(
+        (key, group) ->
+            SpiceDbRouting.with(
+                key.routingKey(),
+                () -> {
+                  sendGroup(key.consistency(), group);
+                  return null;
+                }));
+  }
+
+  private void sendGroup(Consistency consistency, List<Pending> group) {
+    if (group.size() == 1 && fallbackToUnary) {
+      sendUnary(group.get(0));
+      return;
+    }
+
+    CheckBulkPermissionsRequest.Builder request =
+        CheckBulkPermissionsRequest.newBuilder().setConsistency(consistency);
+    for (Pending p : group) {
+      CheckBulkPermissionsRequestItem.Builder item =
+          CheckBulkPermissionsRequestItem.newBuilder()
+              .setResource(p.request().getResource())
+              .setPermission(p.request().getPermission())
+              .setSubject(p.request().getSubject());
+      // left unset when absent, so the item echoed in the response compares equal
+      if (p.request().hasContext()) {
+        item.setContext(p.request().getContext());
+      }
+      request.addItems(item);
+    }
+
+    CheckBulkPermissionsResponse response;
+    try {
+      response = permissionsService.checkBulkPermissions(request.build());
+    } catch (RuntimeException e) {
+      if (fallbackToUnary) {
+        group.forEach(this::sendUnary);
+      } else {
+        group.forEach(p -> p.future().completeExceptionally(e));
+      }
+      return;
+    }
+
+    // a pair carries the item it answers; the same check may have been queued more than once
+    Map<CheckBulkPermissionsRequestItem, List<Pending>> byItem = new HashMap<>();
+    for (int i = 0; i < group.size(); i++) {
+      byItem.computeIfAbsent(request.getItems(i), k -> new ArrayList<>(1)).add(group.get(i));
+    }
+    for (CheckBulkPermissionsPair pair : response.getPairsList()) {
+      List<Pending> answered = byItem.remove(pair.getRequest());
+      if (answered == null) {
+        continue;
+      }
+      if (pair.hasError()) {
+        RuntimeException error = StatusProto.toStatusRuntimeException(pair.getError());
+        answered.forEach(p -> p.future().completeExceptionally(error));
+        continue;
+      }
+      CheckBulkPermissionsResponseItem item = pair.getItem();
+      CheckPermissionResponse result =
+          CheckPermissionResponse.newBuilder()
+              .setCheckedAt(response.getCheckedAt())
+              .setPermissionship(item.getPermissionship())
+              .setPartialCaveatInfo(item.getPartialCaveatInfo())
+              .build();
+      answered.forEach(p -> p.future().complete(result));
+    }
+    FgaAuthorizationException missing =
+        new FgaAuthorizationException("Missing result in bulk permission response");
+    for (List<Pending> unanswered : byItem.values()) {
+      unanswered.forEach(p -> p.future().completeExceptionally(missing));
+    }
+  }
+
+  private void sendUnary(Pending pending) {
+    try {
+      pending.future().complete(unary.check(pending.request()));
+    } catch (RuntimeException e) {
+      pending.future().completeExceptionally(e);
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger counter = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private record Pending(
+      CheckPermissionRequest request,
+      String routingKey,
+      CompletableFuture<CheckPermissionResponse> future) {}
+
+  private record BatchKey(Consistency consistency, String routingKey) {}
+}
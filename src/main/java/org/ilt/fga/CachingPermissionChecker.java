@@ -0,0 +1,47 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import java.util.concurrent.CompletableFuture;
+
+public class CachingPermissionChecker implements PermissionChecker {
+
+  private final PermissionChecker delegate;
+  private final PermissionDecisionCache cache;
+
+  public CachingPermissionChecker(PermissionChecker delegate, PermissionDecisionCache cache) {
+    this.delegate = delegate;
+    this.cache = cache;
+  }
+
+  @Override
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    CheckKey key = CheckKey.of(request);
+    CheckPermissionResponse cached = cache.get(key, request.getConsistency());
+    if (cached != null) {
+      return cached;
+    }
+    long requestedAt = System.nanoTime();
+    CheckPermissionResponse response = delegate.check(request);
+    cache.put(key, response, requestedAt);
+    return response;
+  }
+
+  @Override
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    CheckKey key = CheckKey.of(request);
+    CheckPermissionResponse cached = cache.get(key, request.getConsistency());
+    if (cached != null) {
+      return CompletableFuture.completedFuture(cached);
+    }
+    long requestedAt = System.nanoTime();
+    CompletableFuture<CheckPermissionResponse> check = delegate.checkAsync(request);
+    return PermissionDecisions.forwardCancel(
+        check.thenApply(
+            response -> {
+              cache.put(key, response, requestedAt);
+              return response;
+            }),
+        check);
+  }
+}
@@ -0,0 +1,29 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+
+/**
+ * Identity of a permission check: the (resource, permission, subject) tuple and the {@link
+ * SpiceDbRouting} key it is made under, since clusters serving different keys hold different data.
+ */
+public record CheckKey(
+    String resourceType,
+    String resourceId,
+    String permission,
+    String subjectType,
+    String subjectId,
+    String subjectRelation,
+    String routingKey) {
+
+  /** The key of {@code request} made under the routing key bound to the current thread. */
+  public static CheckKey of(CheckPermissionRequest request) {
+    return new CheckKey(
+        request.getResource().getObjectType(),
+        request.getResource().getObjectId(),
+        request.getPermission(),
+        request.getSubject().getObject().getObjectType(),
+        request.getSubject().getObject().getObjectId(),
+        request.getSubject().getOptionalRelation(),
+        SpiceDbRouting.get());
+  }
+}
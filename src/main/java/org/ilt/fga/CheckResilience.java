@@ -0,0 +1,366 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how long and how many checks may wait on SpiceDB. Every call gets a deadline, after which
+ * it fails; a second, hedged attempt is started once a call has taken longer than the configured
+ * latency percentile of recent calls; a circuit breaker rejects calls outright after consecutive
+ * failures of SpiceDB itself (unavailable, deadline exceeded, resource exhausted or timed out); and
+ * a bulkhead rejects calls beyond a number in flight. Rejections fail closed with a
+ * {@link SpiceDbUnavailableException}, so callers are denied instead of queueing.
+ */
+public class CheckResilience implements AutoCloseable {
+
+  /** State of the circuit breaker. */
+  public enum CircuitState {
+    /** Calls pass through. */
+    CLOSED,
+    /** Calls are rejected until the open duration has passed. */
+    OPEN,
+    /** A single trial call decides whether the circuit closes or opens again. */
+    HALF_OPEN
+  }
+
+  private static final int LATENCY_SAMPLES = 256;
+  private static final int MIN_HEDGE_SAMPLES = 20;
+  private static final int PERCENTILE_REFRESH = 32;
+
+  private final long timeoutNanos;
+  private final double hedgePercentile;
+  private final long minHedgeDelayNanos;
+  private final int failureThreshold;
+  private final long openNanos;
+  private final int maxConcurrent;
+  private final Semaphore bulkhead;
+  private final ScheduledExecutorService scheduler;
+
+  private final AtomicReference<CircuitState> circuit = new AtomicReference<>(CircuitState.CLOSED);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile long openedAtNanos;
+
+  private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_SAMPLES);
+  private final AtomicLong latencyCount = new AtomicLong();
+  private volatile long hedgeDelayNanos = -1;
+
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder hedges = new LongAdder();
+  private final LongAdder circuitRejections = new LongAdder();
+  private final LongAdder bulkheadRejections = new LongAdder();
+
+  /**
+   * @param timeout deadline of a call including any hedged attempt, or zero for none
+   * @param hedgePercentile latency percentile, e.g. {@code 0.95}, after which a call is hedged, or
+   *     zero to disable hedging
+   * @param minHedgeDelay lower bound of the hedge delay
+   * @param failureThreshold consecutive failures that open the circuit, or zero to disable it
+   * @param openDuration how long the circuit stays open before a trial call is let through
+   * @param maxConcurrent attempts allowed in flight at once
+   */
+  public CheckResilience(
+      Duration timeout,
+      double hedgePercentile,
+      Duration minHedgeDelay,
+      int failureThreshold,
+      Duration openDuration,
+      int maxConcurrent) {
+    this.timeoutNanos = timeout.toNanos();
+    this.hedgePercentile = hedgePercentile;
+    this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+    this.failureThreshold = failureThreshold;
+    this.openNanos = openDuration.toNanos();
+    this.maxConcurrent = maxConcurrent;
+    this.bulkhead = new Semaphore(maxConcurrent);
+    for (int i = 0; i < LATENCY_SAMPLES; i++) {
+      latencies.set(i, -1);
+    }
+    ScheduledThreadPoolExecutor executor =
+        new ScheduledThreadPoolExecutor(
+            1,
+            runnable -> {
+              Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+              thread.setName("spicedb-resilience-timer");
+              thread.setDaemon(true);
+              return thread;
+            });
+    // most timers are cancelled because the call completed first
+    executor.setRemoveOnCancelPolicy(true);
+    this.scheduler = executor;
+  }
+
+  /** Returns a checker that runs every check of {@code delegate} through this policy. */
+  public PermissionChecker wrap(PermissionChecker delegate) {
+    return new PermissionChecker() {
+      @Override
+      public CheckPermissionResponse check(CheckPermissionRequest request) {
+        try {
+          return checkAsync(request).join();
+        } catch (CompletionException e) {
+          if (e.getCause() instanceof RuntimeException cause) {
+            throw cause;
+          }
+          throw e;
+        }
+      }
+
+      @Override
+      public CompletableFuture<CheckPermissionResponse> checkAsync(
+          CheckPermissionRequest request) {
+        return execute(() -> delegate.checkAsync(request));
+      }
+    };
+  }
+
+  /**
+   * Runs {@code attempt}, possibly twice when hedged. The first attempt to complete decides the
+   * result and the other one is cancelled.
+   */
+  public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+    boolean trial = false;
+    switch (circuit.get()) {
+      case OPEN:
+        if (System.nanoTime() - openedAtNanos < openNanos
+            || !circuit.compareAndSet(CircuitState.OPEN, CircuitState.HALF_OPEN)) {
+          circuitRejections.increment();
+          return CompletableFuture.failedFuture(
+              new SpiceDbUnavailableException("SpiceDB circuit breaker is open"));
+        }
+        trial = true;
+        break;
+      case HALF_OPEN:
+        circuitRejections.increment();
+        return CompletableFuture.failedFuture(
+            new SpiceDbUnavailableException("SpiceDB circuit breaker is open"));
+      default:
+        break;
+    }
+
+    if (!bulkhead.tryAcquire()) {
+      if (trial) {
+        circuit.compareAndSet(CircuitState.HALF_OPEN, CircuitState.OPEN);
+      }
+      bulkheadRejections.increment();
+      return CompletableFuture.failedFuture(
+          new SpiceDbUnavailableException("Too many concurrent SpiceDB checks"));
+    }
+    // the hedged attempt runs on the scheduler thread, which must route it like the first one
+    return new Call<>(SpiceDbRouting.bind(attempt), trial).start();
+  }
+
+  public CircuitState getCircuitState() {
+    return circuit.get();
+  }
+
+  public int inFlight() {
+    return maxConcurrent - bulkhead.availablePermits();
+  }
+
+  public long timeoutCount() {
+    return timeouts.sum();
+  }
+
+  public long hedgeCount() {
+    return hedges.sum();
+  }
+
+  public long circuitRejectionCount() {
+    return circuitRejections.sum();
+  }
+
+  public long bulkheadRejectionCount() {
+    return bulkheadRejections.sum();
+  }
+
+  @Override
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private void recordSuccess(boolean trial, long latencyNanos) {
+    recordResponse(trial);
+
+    long count = latencyCount.incrementAndGet();
+    latencies.set((int) ((count - 1) % LATENCY_SAMPLES), latencyNanos);
+    if (count == MIN_HEDGE_SAMPLES
+        || (count > MIN_HEDGE_SAMPLES && count % PERCENTILE_REFRESH == 0)) {
+      // slots claimed by a concurrent call but not written yet are still -1 and left out
+      long[] samples = new long[LATENCY_SAMPLES];
+      int size = 0;
+      for (int i = 0; i < LATENCY_SAMPLES; i++) {
+        long sample = latencies.get(i);
+        if (sample >= 0) {
+          samples[size++] = sample;
+        }
+      }
+      Arrays.sort(samples, 0, size);
+      hedgeDelayNanos = samples[(int) Math.min(size - 1, Math.floor(hedgePercentile * size))];
+    }
+  }
+
+  /** Any answer from SpiceDB, including an error about the request itself, shows it is up. */
+  private void recordResponse(boolean trial) {
+    consecutiveFailures.set(0);
+    if (trial) {
+      circuit.set(CircuitState.CLOSED);
+    }
+  }
+
+  private void recordFailure(boolean trial) {
+    if (trial
+        || (failureThreshold > 0 && consecutiveFailures.incrementAndGet() >= failureThreshold)) {
+      openedAtNanos = System.nanoTime();
+      circuit.set(CircuitState.OPEN);
+    }
+  }
+
+  /** Whether {@code error} says SpiceDB is unavailable or overloaded, not that a request is bad. */
+  static boolean isUnavailable(Throwable error) {
+    if (error instanceof SpiceDbUnavailableException || error instanceof TimeoutException) {
+      return true;
+    }
+    Status.Code code = Status.fromThrowable(error).getCode();
+    return code == Status.Code.UNAVAILABLE
+        || code == Status.Code.DEADLINE_EXCEEDED
+        || code == Status.Code.RESOURCE_EXHAUSTED;
+  }
+
+  private long hedgeDelayNanos() {
+    long delay = hedgeDelayNanos;
+    return delay < 0 ? -1 : Math.max(minHedgeDelayNanos, delay);
+  }
+
+  private final class Call<T> {
+    private final Supplier<CompletableFuture<T>> attempt;
+    private final boolean trial;
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private final long startNanos = System.nanoTime();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean settled = new AtomicBoolean();
+    private volatile CompletableFuture<T> primary;
+    private volatile CompletableFuture<T> hedge;
+    private volatile ScheduledFuture<?> timeoutTimer;
+    private volatile ScheduledFuture<?> hedgeTimer;
+
+    private Call(Supplier<CompletableFuture<T>> attempt, boolean trial) {
+      this.attempt = attempt;
+      this.trial = trial;
+    }
+
+    CompletableFuture<T> start() {
+      // settles calls abandoned by the caller, e.g. when cancelled
+      result.whenComplete(this::settle);
+      primary = launch();
+      if (timeoutNanos > 0 && !result.isDone()) {
+        timeoutTimer = scheduler.schedule(this::timeOut, timeoutNanos, TimeUnit.NANOSECONDS);
+      }
+      long hedgeDelay = hedgePercentile > 0 && !trial ? hedgeDelayNanos() : -1;
+      if (hedgeDelay >= 0 && (timeoutNanos <= 0 || hedgeDelay < timeoutNanos) && !result.isDone()) {
+        hedgeTimer = scheduler.schedule(this::hedge, hedgeDelay, TimeUnit.NANOSECONDS);
+      }
+      if (result.isDone()) {
+        cancel(timeoutTimer);
+        cancel(hedgeTimer);
+      }
+      return result;
+    }
+
+    /**
+     * Starts an attempt holding an already acquired bulkhead permit. A failed attempt only fails
+     * the call when no other attempt is still running.
+     */
+    private CompletableFuture<T> launch() {
+      pending.incrementAndGet();
+      CompletableFuture<T> future;
+      try {
+        future = attempt.get();
+      } catch (RuntimeException e) {
+        future = CompletableFuture.failedFuture(e);
+      }
+      future.whenComplete(
+          (value, error) -> {
+            bulkhead.release();
+            int running = pending.decrementAndGet();
+            if (error == null || running == 0) {
+              settle(value, error);
+            }
+          });
+      return future;
+    }
+
+    private void hedge() {
+      if (result.isDone() || !bulkhead.tryAcquire()) {
+        return;
+      }
+      hedges.increment();
+      hedge = launch();
+    }
+
+    private void timeOut() {
+      String message = "SpiceDB check timed out after " + Duration.ofNanos(timeoutNanos);
+      if (settle(null, new SpiceDbUnavailableException(message))) {
+        timeouts.increment();
+      }
+    }
+
+    /**
+     * Cancels whatever is still running and records the outcome before completing the result, so
+     * that callers woken by it observe the final state.
+     */
+    private boolean settle(T value, Throwable error) {
+      if (!settled.compareAndSet(false, true)) {
+        return false;
+      }
+      cancel(timeoutTimer);
+      cancel(hedgeTimer);
+      cancel(primary);
+      cancel(hedge);
+
+      Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+      if (cause == null) {
+        recordSuccess(trial, System.nanoTime() - startNanos);
+        result.complete(value);
+        return true;
+      }
+      if (cause instanceof CancellationException) {
+        // abandoned by the caller, which says nothing about SpiceDB
+        if (trial) {
+          circuit.compareAndSet(CircuitState.HALF_OPEN, CircuitState.OPEN);
+        }
+      } else if (isUnavailable(cause)) {
+        recordFailure(trial);
+      } else {
+        recordResponse(trial);
+      }
+      result.completeExceptionally(error);
+      return true;
+    }
+
+    private void cancel(Future<?> future) {
+      if (future != null && !future.isDone()) {
+        future.cancel(false);
+      }
+    }
+  }
+}
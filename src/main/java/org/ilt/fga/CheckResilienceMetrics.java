@@ -0,0 +1,44 @@
+package org.ilt.fga;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the circuit breaker state, bulkhead usage and the timeout, hedge and rejection counters
+ * of a {@link CheckResilience}. The circuit state gauge is 0 when closed, 1 when open and 2 when
+ * half-open.
+ */
+public class CheckResilienceMetrics implements MeterBinder {
+
+  private final CheckResilience resilience;
+
+  public CheckResilienceMetrics(CheckResilience resilience) {
+    this.resilience = resilience;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder(
+            "spicedb.resilience.circuit.state",
+            resilience,
+            r -> r.getCircuitState().ordinal())
+        .register(registry);
+    Gauge.builder("spicedb.resilience.in-flight", resilience, CheckResilience::inFlight)
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.resilience.timeouts", resilience, CheckResilience::timeoutCount)
+        .register(registry);
+    FunctionCounter.builder("spicedb.resilience.hedges", resilience, CheckResilience::hedgeCount)
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.resilience.rejections", resilience, CheckResilience::circuitRejectionCount)
+        .tag("reason", "circuit-open")
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.resilience.rejections", resilience, CheckResilience::bulkheadRejectionCount)
+        .tag("reason", "bulkhead-full")
+        .register(registry);
+  }
+}
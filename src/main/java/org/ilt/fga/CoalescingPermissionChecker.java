@@ -0,0 +1,120 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Single-flight coalescing of identical concurrent checks: the first caller issues the RPC and
+ * every caller that arrives with an equal request and the same {@link SpiceDbRouting} key while it
+ * is outstanding waits for its result. The RPC is cancelled once every caller waiting for it has
+ * cancelled.
+ */
+public class CoalescingPermissionChecker implements PermissionChecker {
+
+  private final PermissionChecker delegate;
+  private final ConcurrentMap<FlightKey, Flight> inFlight = new ConcurrentHashMap<>();
+
+  public CoalescingPermissionChecker(PermissionChecker delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    FlightKey key = new FlightKey(request, SpiceDbRouting.get());
+    Flight created = new Flight();
+    Flight flight = join(key, created);
+    if (flight != created) {
+      return await(flight.result);
+    }
+
+    try {
+      CheckPermissionResponse response = delegate.check(request);
+      flight.result.complete(response);
+      return response;
+    } catch (RuntimeException | Error e) {
+      flight.result.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(key, flight);
+    }
+  }
+
+  @Override
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    FlightKey key = new FlightKey(request, SpiceDbRouting.get());
+    Flight created = new Flight();
+    Flight flight = join(key, created);
+    if (flight == created) {
+      CompletableFuture<CheckPermissionResponse> source = delegate.checkAsync(request);
+      flight.source = source;
+      source.whenComplete(
+          (response, error) -> {
+            inFlight.remove(key, flight);
+            if (error != null) {
+              flight.result.completeExceptionally(error);
+            } else {
+              flight.result.complete(response);
+            }
+          });
+    }
+
+    // a dependent future per caller, so that one caller cancelling does not fail the others
+    CompletableFuture<CheckPermissionResponse> waiter =
+        flight.result.thenApply(Function.identity());
+    waiter.whenComplete(
+        (response, error) -> {
+          if (waiter.isCancelled()) {
+            flight.leave(key);
+          }
+        });
+    return waiter;
+  }
+
+  /** Joins the flight in progress for {@code key}, or starts {@code created} instead. */
+  private Flight join(FlightKey key, Flight created) {
+    return inFlight.compute(
+        key, (k, current) -> current != null && current.enter() ? current : created);
+  }
+
+  private static CheckPermissionResponse await(CompletableFuture<CheckPermissionResponse> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private record FlightKey(CheckPermissionRequest request, String routingKey) {}
+
+  /** One outstanding check and the number of callers still waiting for it. */
+  private final class Flight {
+    private final CompletableFuture<CheckPermissionResponse> result = new CompletableFuture<>();
+    private final AtomicInteger waiters = new AtomicInteger(1);
+    private volatile Future<?> source;
+
+    /** Adds a waiter, unless every previous one has already cancelled. */
+    private boolean enter() {
+      return waiters.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0;
+    }
+
+    private void leave(FlightKey key) {
+      if (waiters.decrementAndGet() == 0) {
+        inFlight.remove(key, this);
+        Future<?> running = source;
+        if (running != null) {
+          running.cancel(true);
+        }
+      }
+    }
+  }
+}
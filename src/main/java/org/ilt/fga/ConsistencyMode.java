@@ -0,0 +1,47 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.Consistency;
+
+/**
+ * The consistency SpiceDB is asked to evaluate a check at. The snapshot modes use the ZedToken held
+ * by {@link ZedTokenContext} and fall back to {@link #MINIMIZE_LATENCY} when there is none.
+ */
+public enum ConsistencyMode {
+  /** Use the globally configured mode. */
+  DEFAULT,
+  /** Evaluate at whatever snapshot is cached, the fastest option. */
+  MINIMIZE_LATENCY,
+  /** Evaluate at a snapshot no older than the current ZedToken, e.g. that of the latest write. */
+  AT_LEAST_AS_FRESH,
+  /**
+   * Evaluate at exactly the snapshot of the current ZedToken, when the application obtained it from
+   * SpiceDB; a token received from a client is only used as with {@link #AT_LEAST_AS_FRESH}.
+   */
+  AT_EXACT_SNAPSHOT,
+  /** Evaluate at the newest snapshot, bypassing SpiceDB's caches. */
+  FULLY_CONSISTENT;
+
+  private static final Consistency MINIMIZE_LATENCY_CONSISTENCY =
+      Consistency.newBuilder().setMinimizeLatency(true).build();
+  private static final Consistency FULLY_CONSISTENT_CONSISTENCY =
+      Consistency.newBuilder().setFullyConsistent(true).build();
+
+  /** Returns this mode, or {@code defaultMode} when this is {@link #DEFAULT}. */
+  public ConsistencyMode orElse(ConsistencyMode defaultMode) {
+    return this == DEFAULT ? defaultMode : this;
+  }
+
+  /** Builds the consistency for a request issued now, on the current thread. */
+  public Consistency toConsistency() {
+    switch (this) {
+      case FULLY_CONSISTENT:
+        return FULLY_CONSISTENT_CONSISTENCY;
+      case AT_LEAST_AS_FRESH:
+      case AT_EXACT_SNAPSHOT:
+        Consistency consistency = ZedTokenContext.consistency(this == AT_EXACT_SNAPSHOT);
+        return consistency != null ? consistency : MINIMIZE_LATENCY_CONSISTENCY;
+      default:
+        return MINIMIZE_LATENCY_CONSISTENCY;
+    }
+  }
+}
@@ -0,0 +1,256 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.ZedToken;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Hands authorization decisions from request threads to {@link DecisionAuditSink}s without ever
+ * blocking them. Decisions are written into a preallocated ring buffer, claimed with a single
+ * compare-and-set, and drained in batches by one background thread that formats them and calls the
+ * sinks. When the sinks fall behind and the buffer is full, new decisions are dropped and counted.
+ *
+ * <p>Denied checks are always recorded. Allowed checks are recorded with the configured sample
+ * rate, between 0 and 1.
+ */
+public class DecisionAuditLog implements AutoCloseable {
+
+  private static final Log logger = LogFactory.getLog(DecisionAuditLog.class);
+  private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+  private static final long MAX_IDLE_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final Slot[] slots;
+  private final int mask;
+  private final int batchSize;
+  private final double allowSampleRate;
+  private final List<DecisionAuditSink> sinks;
+  private final AtomicLong tail = new AtomicLong();
+  private final LongAdder recorded = new LongAdder();
+  private final LongAdder dropped = new LongAdder();
+  private final LongAdder sampledOut = new LongAdder();
+  private final LongAdder sinkFailures = new LongAdder();
+  private final Thread drainer;
+  private volatile boolean running = true;
+  private volatile boolean idle;
+  private long head;
+
+  /**
+   * @param bufferSize number of decisions held for the sinks, rounded up to a power of two
+   * @param batchSize maximum number of decisions passed to a sink at once
+   */
+  public DecisionAuditLog(
+      List<DecisionAuditSink> sinks, int bufferSize, int batchSize, double allowSampleRate) {
+    int capacity = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+    this.slots = new Slot[capacity];
+    for (int i = 0; i < capacity; i++) {
+      slots[i] = new Slot(i);
+    }
+    this.mask = capacity - 1;
+    this.batchSize = batchSize;
+    this.allowSampleRate = allowSampleRate;
+    this.sinks = List.copyOf(sinks);
+    this.drainer = new Thread(this::drain, "spicedb-audit");
+    drainer.setDaemon(true);
+    drainer.start();
+  }
+
+  /**
+   * Records the outcome of a check. Returns immediately; the decision is formatted and published
+   * on the log's own thread.
+   */
+  public void record(
+      Method method,
+      CheckPermissionRequest request,
+      CheckPermissionResponse response,
+      long latencyNanos) {
+    boolean allowed = PermissionDecisions.isAllowed(response);
+    if (allowed
+        && allowSampleRate < 1.0
+        && ThreadLocalRandom.current().nextDouble() >= allowSampleRate) {
+      sampledOut.increment();
+      return;
+    }
+
+    // bounded multi-producer queue: a slot is free for position p once its sequence equals p
+    Slot slot;
+    long position = tail.get();
+    while (true) {
+      slot = slots[(int) position & mask];
+      long available = slot.sequence - position;
+      if (available == 0) {
+        if (tail.compareAndSet(position, position + 1)) {
+          break;
+        }
+        position = tail.get();
+      } else if (available < 0) {
+        dropped.increment();
+        return;
+      } else {
+        position = tail.get();
+      }
+    }
+    slot.timestampMillis = System.currentTimeMillis();
+    slot.method = method;
+    slot.request = request;
+    slot.allowed = allowed;
+    slot.checkedAt = response.hasCheckedAt() ? response.getCheckedAt() : null;
+    slot.latencyNanos = latencyNanos;
+    slot.sequence = position + 1;
+    recorded.increment();
+    if (idle) {
+      LockSupport.unpark(drainer);
+    }
+  }
+
+  private void drain() {
+    long parkNanos = MIN_IDLE_PARK_NANOS;
+    while (true) {
+      // read before polling so that decisions recorded before close() are still published
+      boolean stopping = !running;
+      List<AuthorizationDecision> batch = poll();
+      if (batch.isEmpty()) {
+        if (stopping) {
+          return;
+        }
+        // announced before checking again, so that a decision recorded in between unparks us;
+        // the timeout only backs up that wakeup and grows while the buffer stays empty
+        idle = true;
+        if (running && isEmpty()) {
+          LockSupport.parkNanos(this, parkNanos);
+          parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+        }
+        idle = false;
+        continue;
+      }
+      parkNanos = MIN_IDLE_PARK_NANOS;
+      List<AuthorizationDecision> view = Collections.unmodifiableList(batch);
+      for (DecisionAuditSink sink : sinks) {
+        try {
+          sink.publish(view);
+        } catch (RuntimeException e) {
+          sinkFailures.increment();
+          logger.warn(
+              "Audit sink " + sink + " failed to publish " + batch.size() + " decisions", e);
+        }
+      }
+    }
+  }
+
+  private List<AuthorizationDecision> poll() {
+    List<AuthorizationDecision> batch = new ArrayList<>();
+    while (batch.size() < batchSize) {
+      Slot slot = slots[(int) head & mask];
+      if (slot.sequence != head + 1) {
+        break;
+      }
+      batch.add(decision(slot));
+      slot.method = null;
+      slot.request = null;
+      slot.checkedAt = null;
+      slot.sequence = head + slots.length;
+      head++;
+    }
+    return batch;
+  }
+
+  private boolean isEmpty() {
+    return slots[(int) head & mask].sequence != head + 1;
+  }
+
+  private static AuthorizationDecision decision(Slot slot) {
+    CheckPermissionRequest request = slot.request;
+    return new AuthorizationDecision(
+        Instant.ofEpochMilli(slot.timestampMillis),
+        slot.method.getDeclaringClass().getName() + '#' + slot.method.getName(),
+        reference(request.getResource()),
+        request.getPermission(),
+        subject(request.getSubject()),
+        slot.allowed,
+        slot.checkedAt != null ? slot.checkedAt.getToken() : null,
+        slot.latencyNanos);
+  }
+
+  private static String reference(ObjectReference object) {
+    return object.getObjectType() + ':' + object.getObjectId();
+  }
+
+  private static String subject(SubjectReference subject) {
+    String object = reference(subject.getObject());
+    return subject.getOptionalRelation().isEmpty()
+        ? object
+        : object + '#' + subject.getOptionalRelation();
+  }
+
+  /** Decisions written to the buffer. */
+  public long recordedCount() {
+    return recorded.sum();
+  }
+
+  /** Decisions discarded because the buffer was full. */
+  public long droppedCount() {
+    return dropped.sum();
+  }
+
+  /** Allowed decisions skipped by sampling. */
+  public long sampledOutCount() {
+    return sampledOut.sum();
+  }
+
+  /** Batches a sink failed to publish. */
+  public long sinkFailureCount() {
+    return sinkFailures.sum();
+  }
+
+  /**
+   * Publishes the decisions still in the buffer and stops the background thread. Sinks that are
+   * {@link AutoCloseable} are closed afterwards.
+   */
+  @Override
+  public void close() {
+    running = false;
+    LockSupport.unpark(drainer);
+    try {
+      drainer.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    for (DecisionAuditSink sink : sinks) {
+      if (sink instanceof AutoCloseable closeable) {
+        try {
+          closeable.close();
+        } catch (Exception e) {
+          logger.warn("Failed to close audit sink " + sink, e);
+        }
+      }
+    }
+  }
+
+  /** A preallocated entry of the ring buffer, reused for every decision that passes through it. */
+  private static final class Slot {
+    volatile long sequence;
+    long timestampMillis;
+    Method method;
+    CheckPermissionRequest request;
+    boolean allowed;
+    ZedToken checkedAt;
+    long latencyNanos;
+
+    Slot(long sequence) {
+      this.sequence = sequence;
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package org.ilt.fga;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/** Publishes how many decisions a {@link DecisionAuditLog} recorded, sampled out and dropped. */
+public class DecisionAuditMetrics implements MeterBinder {
+
+  private final DecisionAuditLog auditLog;
+
+  public DecisionAuditMetrics(DecisionAuditLog auditLog) {
+    this.auditLog = auditLog;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder(
+            "spicedb.audit.decisions", auditLog, DecisionAuditLog::recordedCount)
+        .tag("result", "recorded")
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.audit.decisions", auditLog, DecisionAuditLog::sampledOutCount)
+        .tag("result", "sampled-out")
+        .register(registry);
+    FunctionCounter.builder("spicedb.audit.decisions", auditLog, DecisionAuditLog::droppedCount)
+        .tag("result", "dropped")
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.audit.sink.failures", auditLog, DecisionAuditLog::sinkFailureCount)
+        .register(registry);
+  }
+}
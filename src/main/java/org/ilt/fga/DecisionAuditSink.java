@@ -0,0 +1,13 @@
+package org.ilt.fga;
+
+import java.util.List;
+
+/**
+ * Receives audited decisions from a {@link DecisionAuditLog}, one batch at a time and always on the
+ * log's own thread. A slow sink delays every sink, and once the log's buffer is full new decisions
+ * are dropped rather than blocking the requests that made them.
+ */
+@FunctionalInterface
+public interface DecisionAuditSink {
+  void publish(List<AuthorizationDecision> decisions);
+}
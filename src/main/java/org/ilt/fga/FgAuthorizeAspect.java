@@ -2,24 +2,102 @@ package org.ilt.fga;
 
 import com.authzed.api.v1.CheckPermissionRequest;
 import com.authzed.api.v1.CheckPermissionResponse;
-import com.authzed.api.v1.Consistency;
 import com.authzed.api.v1.ObjectReference;
 import com.authzed.api.v1.PermissionsServiceGrpc;
 import com.authzed.api.v1.SubjectReference;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.expression.spel.SpelCompilerMode;
 
+/**
+ * Checks {@link FgaAuthorize} methods. The {@code object} is the checked resource as {@code
+ * type:id}, where the id is a literal or a {@code {...}} expression over the method parameters
+ * like in {@link SpiceDbAuthorize}, e.g. {@code document:{document.id}}.
+ */
 @Aspect
 public class FgAuthorizeAspect {
 
-  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final PermissionChecker permissionChecker;
+  private final ObservationRegistry observationRegistry;
+  private final AuthorizationPlans plans;
+  private final ConsistencyMode consistency;
+  private final DecisionAuditLog auditLog;
+  private final SubjectResolver subjectResolver;
+  private final Map<Method, ValueResolver> subjects = new ConcurrentHashMap<>();
+  private final Map<Method, ValueResolver> objectIds = new ConcurrentHashMap<>();
 
   public FgAuthorizeAspect(
       PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService) {
-    this.permissionsService = permissionsService;
+    this(new GrpcPermissionChecker(permissionsService));
+  }
+
+  public FgAuthorizeAspect(PermissionChecker permissionChecker) {
+    this(permissionChecker, ObservationRegistry.NOOP);
+  }
+
+  public FgAuthorizeAspect(
+      PermissionChecker permissionChecker, ObservationRegistry observationRegistry) {
+    this(permissionChecker, observationRegistry, ConsistencyMode.MINIMIZE_LATENCY);
+  }
+
+  public FgAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      ObservationRegistry observationRegistry,
+      ConsistencyMode consistency) {
+    this(permissionChecker, observationRegistry, consistency, null);
+  }
+
+  /** @param auditLog receives every decision, may be {@code null} */
+  public FgAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      ObservationRegistry observationRegistry,
+      ConsistencyMode consistency,
+      DecisionAuditLog auditLog) {
+    this(permissionChecker, observationRegistry, consistency, auditLog, null);
+  }
+
+  /**
+   * @param auditLog receives every decision, may be {@code null}
+   * @param subjectResolver supplies the subject of annotations without one, may be {@code null}
+   */
+  public FgAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      ObservationRegistry observationRegistry,
+      ConsistencyMode consistency,
+      DecisionAuditLog auditLog,
+      SubjectResolver subjectResolver) {
+    this(
+        permissionChecker,
+        observationRegistry,
+        new AuthorizationPlans(SpelCompilerMode.OFF, consistency),
+        auditLog,
+        subjectResolver);
+  }
+
+  /**
+   * @param plans compiles the object id expressions and supplies the default consistency
+   * @param auditLog receives every decision, may be {@code null}
+   * @param subjectResolver supplies the subject of annotations without one, may be {@code null}
+   */
+  public FgAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      ObservationRegistry observationRegistry,
+      AuthorizationPlans plans,
+      DecisionAuditLog auditLog,
+      SubjectResolver subjectResolver) {
+    this.permissionChecker = permissionChecker;
+    this.observationRegistry = observationRegistry;
+    this.plans = plans;
+    this.consistency = plans.getConsistency();
+    this.auditLog = auditLog;
+    this.subjectResolver = subjectResolver;
   }
 
   @Around("@annotation(org.ilt.fga.FgaAuthorize)")
@@ -29,51 +107,123 @@ public class FgAuthorizeAspect {
     FgaAuthorize annotation = method.getAnnotation(FgaAuthorize.class);
 
     String permission = annotation.permission();
-    String subject = resolveValue(annotation.subject(), joinPoint);
-    String object = annotation.object();
+    Observation observation =
+        AuthorizationObservations.authorize(observationRegistry, method, permission);
+    boolean allowed;
+    try (Observation.Scope scope = observation.openScope()) {
+      allowed = check(observation, method, annotation, joinPoint);
+    } catch (RuntimeException e) {
+      AuthorizationObservations.failed(observation, e);
+      throw e;
+    } finally {
+      observation.stop();
+    }
+
+    if (!allowed) {
+      throw new SecurityException("Access denied");
+    }
+    return joinPoint.proceed();
+  }
+
+  private boolean check(
+      Observation observation,
+      Method method,
+      FgaAuthorize annotation,
+      ProceedingJoinPoint joinPoint) {
+    Observation resolve = AuthorizationObservations.resolve(observationRegistry, observation);
+    String permission = annotation.permission();
+    String[] object = splitObject(annotation.object());
+    SubjectReference subject;
+    String objectId;
+    try {
+      subject = resolveSubject(method, annotation, joinPoint.getArgs());
+      objectId = resolveObjectId(method, object[1], joinPoint.getArgs());
+    } finally {
+      resolve.stop();
+    }
 
     CheckPermissionRequest request =
         CheckPermissionRequest.newBuilder()
-            .setConsistency(Consistency.newBuilder().setFullyConsistent(true).build())
+            .setConsistency(annotation.consistency().orElse(consistency).toConsistency())
             .setResource(
-                ObjectReference.newBuilder().setObjectType(object).setObjectId(subject).build())
+                ObjectReference.newBuilder().setObjectType(object[0]).setObjectId(objectId).build())
             .setPermission(permission)
-            .setSubject(
-                SubjectReference.newBuilder()
-                    .setObject(
-                        ObjectReference.newBuilder()
-                            .setObjectType("user")
-                            .setObjectId(subject)
-                            .build())
-                    .build())
+            .setSubject(subject)
             .build();
 
-    CheckPermissionResponse response = permissionsService.checkPermission(request);
-
-    if (response.getPermissionship()
-        != CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION) {
-      throw new SecurityException("Access denied");
+    long start = System.nanoTime();
+    CheckPermissionResponse response = permissionChecker.check(request);
+    if (auditLog != null) {
+      auditLog.record(method, request, response, System.nanoTime() - start);
     }
 
-    return joinPoint.proceed();
+    boolean allowed = PermissionDecisions.isAllowed(response);
+    AuthorizationObservations.decided(observation, allowed);
+    return allowed;
   }
 
-  private String resolveValue(String expression, ProceedingJoinPoint joinPoint) {
-    // This is a simple implementation. You might need to enhance this
-    // to handle more complex expressions like "user.id"
-    if (expression.contains(".")) {
-      String[] parts = expression.split("\\.");
-      Object arg = joinPoint.getArgs()[0];
-      try {
-        return arg.getClass().getMethod("get" + capitalize(parts[1])).invoke(arg).toString();
-      } catch (Exception e) {
-        throw new RuntimeException("Failed to resolve " + expression, e);
+  private SubjectReference resolveSubject(Method method, FgaAuthorize annotation, Object[] args) {
+    if (annotation.subject().isEmpty() && subjectResolver != null) {
+      SubjectReference subject = subjectResolver.resolve();
+      if (subject == null) {
+        throw new SecurityException("Access denied");
       }
+      return subject;
+    }
+    ValueResolver resolver = subjects.get(method);
+    if (resolver == null) {
+      resolver = subjects.computeIfAbsent(method, m -> compileSubject(annotation.subject(), m));
     }
-    return expression;
+    return SubjectReference.newBuilder()
+        .setObject(
+            ObjectReference.newBuilder()
+                .setObjectType("user")
+                .setObjectId(resolver.resolve(args))
+                .build())
+        .build();
   }
 
-  private String capitalize(String str) {
-    return str.substring(0, 1).toUpperCase() + str.substring(1);
+  private String resolveObjectId(Method method, String expression, Object[] args) {
+    ValueResolver resolver = objectIds.get(method);
+    if (resolver == null) {
+      resolver =
+          objectIds.computeIfAbsent(
+              method, m -> plans.compileExpression(expression, new ParameterBinding(m)));
+    }
+    String id = resolver.resolve(args);
+    if (id == null || id.isEmpty()) {
+      throw new FgaAuthorizationException("Object id resolved to nothing: " + expression);
+    }
+    return id;
+  }
+
+  /** Splits an {@link FgaAuthorize#object()} into its type and its id expression. */
+  static String[] splitObject(String object) {
+    int colon = object.indexOf(':');
+    if (colon <= 0 || colon == object.length() - 1) {
+      throw new FgaAuthorizationException(
+          "@FgaAuthorize object must be type:id, e.g. document:{document.id}, was '"
+              + object
+              + "'");
+    }
+    return new String[] {object.substring(0, colon), object.substring(colon + 1)};
+  }
+
+  /**
+   * Compiles a subject such as {@code user.id}, read from the first argument through a cached
+   * getter handle, or through SpEL when it has no public accessor, or a literal id when it has no
+   * dot.
+   */
+  private ValueResolver compileSubject(String expression, Method method) {
+    if (!expression.contains(".")) {
+      return ValueResolver.literal(expression);
+    }
+    String property = expression.split("\\.")[1];
+    Class<?>[] types = method.getParameterTypes();
+    if (types.length == 0) {
+      throw new FgaAuthorizationException("Failed to resolve " + expression);
+    }
+    ValueResolver resolver = AccessorValueResolver.of(expression, 0, types[0], property);
+    return resolver != null ? resolver : plans.compileSpel("[0]." + property);
   }
 }
@@ -10,5 +10,10 @@ import java.lang.annotation.Target;
 public @interface FgaAuthorize {
   String permission() default "";
   String subject() default "";
+
+  /** The checked resource as {@code type:id}, e.g. {@code document:{document.id}}. */
   String object() default "";
+
+  /** Consistency of the check; {@code DEFAULT} uses {@code spicedb.consistency.mode}. */
+  ConsistencyMode consistency() default ConsistencyMode.DEFAULT;
 }
\ No newline at end of file
@@ -0,0 +1,84 @@
+package org.ilt.fga;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/** Appends audited decisions to a file as JSON lines, flushing once per batch. */
+public class FileDecisionAuditSink implements DecisionAuditSink, AutoCloseable {
+
+  private final Path path;
+  private final BufferedWriter writer;
+  private final StringBuilder line = new StringBuilder(256);
+
+  public FileDecisionAuditSink(Path path) {
+    this.path = path;
+    try {
+      this.writer =
+          Files.newBufferedWriter(
+              path,
+              StandardCharsets.UTF_8,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot open audit log " + path, e);
+    }
+  }
+
+  @Override
+  public void publish(List<AuthorizationDecision> decisions) {
+    try {
+      for (AuthorizationDecision decision : decisions) {
+        writer.append(format(decision)).append('\n');
+      }
+      writer.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot write audit log " + path, e);
+    }
+  }
+
+  private CharSequence format(AuthorizationDecision decision) {
+    line.setLength(0);
+    line.append("{\"timestamp\":\"").append(decision.timestamp()).append('"');
+    field("method", decision.method());
+    field("resource", decision.resource());
+    field("permission", decision.permission());
+    field("subject", decision.subject());
+    line.append(",\"allowed\":").append(decision.allowed());
+    if (decision.zedToken() != null) {
+      field("zedToken", decision.zedToken());
+    }
+    line.append(",\"latencyNanos\":").append(decision.latencyNanos()).append('}');
+    return line;
+  }
+
+  private void field(String name, String value) {
+    line.append(",\"").append(name).append("\":\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        line.append('\\').append(c);
+      } else if (c < 0x20) {
+        line.append(String.format("\\u%04x", (int) c));
+      } else {
+        line.append(c);
+      }
+    }
+    line.append('"');
+  }
+
+  @Override
+  public void close() throws IOException {
+    writer.close();
+  }
+
+  @Override
+  public String toString() {
+    return "FileDecisionAuditSink[" + path + "]";
+  }
+}
@@ -0,0 +1,144 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.springframework.core.ResolvableType;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ExpressionParser;
+
+/** Compiled form of a {@link SpiceDbPostFilter} annotation. */
+public class FilterPlan {
+
+  public static final String FILTER_OBJECT = "filterObject";
+
+  /** The container type the annotated method returns. */
+  public enum ContainerKind {
+    LIST,
+    SET,
+    STREAM,
+    PAGE
+  }
+
+  private final Method method;
+  private final PermissionPlan permission;
+  private final int elementIndex;
+  private final ContainerKind containerKind;
+  private final ConsistencyMode consistency;
+  private final int subjectIndex;
+  private final ValueResolver routingKey;
+
+  FilterPlan(
+      Method method,
+      PermissionPlan permission,
+      int elementIndex,
+      ContainerKind containerKind,
+      ConsistencyMode consistency,
+      int subjectIndex,
+      ValueResolver routingKey) {
+    this.method = method;
+    this.permission = permission;
+    this.elementIndex = elementIndex;
+    this.containerKind = containerKind;
+    this.consistency = consistency;
+    this.subjectIndex = subjectIndex;
+    this.routingKey = routingKey;
+  }
+
+  public static FilterPlan compile(
+      SpiceDbPostFilter annotation,
+      Method method,
+      ExpressionParser parser,
+      EvaluationContext context,
+      ConsistencyMode defaultConsistency) {
+    ContainerKind containerKind = containerKindOf(method.getReturnType());
+    if (containerKind == null) {
+      throw new FgaAuthorizationException(
+          "@SpiceDbPostFilter requires a List, Collection, Set, Stream or Page return type, "
+              + "not an implementation of one: "
+              + method);
+    }
+    Class<?> elementType = ResolvableType.forMethodReturnType(method).resolveGeneric(0);
+    ParameterBinding binding = new ParameterBinding(method);
+    int subjectIndex = -1;
+    String subject = "{" + AuthorizationPlan.SUBJECT_VARIABLE;
+    if (binding.indexOf(AuthorizationPlan.SUBJECT_VARIABLE) < 0
+        && (annotation.permission().contains(subject + "}")
+            || annotation.permission().contains(subject + "."))) {
+      binding = binding.with(AuthorizationPlan.SUBJECT_VARIABLE, String.class);
+      subjectIndex = binding.size() - 1;
+    }
+    ValueResolver routingKey =
+        annotation.routingKey().isEmpty()
+            ? null
+            : PermissionPlan.compileExpression(annotation.routingKey(), binding, parser, context);
+    binding = binding.with(FILTER_OBJECT, elementType != null ? elementType : Object.class);
+    PermissionPlan permission =
+        PermissionPlan.compile(annotation.permission(), binding, parser, context);
+    return new FilterPlan(
+        method,
+        permission,
+        binding.size() - 1,
+        containerKind,
+        annotation.consistency().orElse(defaultConsistency),
+        subjectIndex,
+        routingKey);
+  }
+
+  /** Only the interfaces themselves: the filtered result is a new container of the same kind. */
+  private static ContainerKind containerKindOf(Class<?> returnType) {
+    if (returnType == List.class || returnType == Collection.class) {
+      return ContainerKind.LIST;
+    }
+    if (returnType == Set.class) {
+      return ContainerKind.SET;
+    }
+    if (returnType == Stream.class) {
+      return ContainerKind.STREAM;
+    }
+    // compared by name so that spring-data stays an optional dependency
+    if (returnType.getName().equals("org.springframework.data.domain.Page")) {
+      return ContainerKind.PAGE;
+    }
+    return null;
+  }
+
+  public Method getMethod() {
+    return method;
+  }
+
+  public PermissionPlan getPermission() {
+    return permission;
+  }
+
+  /** Position of the current element in the argument array passed to the permission's resolvers. */
+  public int getElementIndex() {
+    return elementIndex;
+  }
+
+  public ContainerKind getContainerKind() {
+    return containerKind;
+  }
+
+  public ConsistencyMode getConsistency() {
+    return consistency;
+  }
+
+  /**
+   * Position of the resolved subject id in the argument array passed to the permission, right
+   * after the method arguments, or {@code -1} when the permission does not read it.
+   */
+  public int getSubjectIndex() {
+    return subjectIndex;
+  }
+
+  /**
+   * The {@link SpiceDbRouting} key the checks are made under, or {@code null} when the annotation
+   * does not set one.
+   */
+  public String resolveRoutingKey(Object[] args) {
+    return routingKey == null ? null : routingKey.resolve(args);
+  }
+}
@@ -0,0 +1,35 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.StringJoiner;
+
+/**
+ * Resolvers generated at compile time by {@link SpiceDbAuthorizeProcessor} for the {@link
+ * SpiceDbAuthorize} methods of one class. They read parameters and properties with plain casts and
+ * getter calls, so neither SpEL nor reflection is involved when a request is checked. Expressions
+ * the processor could not translate are left to the runtime resolvers.
+ */
+public interface GeneratedResolvers {
+
+  /** Appended to the binary name of the annotated class, with {@code $} replaced by {@code _}. */
+  String CLASS_SUFFIX = "_SpiceDbResolvers";
+
+  /**
+   * Returns the resolver of {@code expression}, without braces, as used by the method with the
+   * given {@link #methodKey key}, or {@code null} when none was generated.
+   */
+  ValueResolver resolver(String methodKey, String expression);
+
+  /** Identifies a method by name and erased parameter types, e.g. {@code read(com.acme.User)}. */
+  static String methodKey(Method method) {
+    StringJoiner key = new StringJoiner(",", method.getName() + "(", ")");
+    for (Class<?> type : method.getParameterTypes()) {
+      key.add(type.getCanonicalName());
+    }
+    return key.toString();
+  }
+
+  static FgaAuthorizationException unresolved(String expression) {
+    return new FgaAuthorizationException("Unable to resolve expression: " + expression);
+  }
+}
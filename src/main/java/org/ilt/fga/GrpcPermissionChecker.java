@@ -0,0 +1,80 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.CallOptions;
+import java.util.concurrent.CompletableFuture;
+
+public class GrpcPermissionChecker implements PermissionChecker {
+
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final PermissionsServiceGrpc.PermissionsServiceFutureStub permissionsFutureService;
+
+  public GrpcPermissionChecker(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService) {
+    this(permissionsService, futureStubFor(permissionsService));
+  }
+
+  public GrpcPermissionChecker(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      PermissionsServiceGrpc.PermissionsServiceFutureStub permissionsFutureService) {
+    this.permissionsService = permissionsService;
+    this.permissionsFutureService = permissionsFutureService;
+  }
+
+  @Override
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    return permissionsService.checkPermission(request);
+  }
+
+  @Override
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    return toCompletableFuture(permissionsFutureService.checkPermission(request));
+  }
+
+  /** Creates a future stub on the same channel, carrying over credentials and deadline. */
+  static PermissionsServiceGrpc.PermissionsServiceFutureStub futureStubFor(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService) {
+    PermissionsServiceGrpc.PermissionsServiceFutureStub stub =
+        PermissionsServiceGrpc.newFutureStub(permissionsService.getChannel());
+    CallOptions options = permissionsService.getCallOptions();
+    if (options.getCredentials() != null) {
+      stub = stub.withCallCredentials(options.getCredentials());
+    }
+    if (options.getDeadline() != null) {
+      stub = stub.withDeadline(options.getDeadline());
+    }
+    return stub;
+  }
+
+  /** Bridges a gRPC future, propagating cancellation of the returned future to the RPC. */
+  static <T> CompletableFuture<T> toCompletableFuture(ListenableFuture<T> listenable) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    Futures.addCallback(
+        listenable,
+        new FutureCallback<>() {
+          @Override
+          public void onSuccess(T result) {
+            future.complete(result);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            future.completeExceptionally(t);
+          }
+        },
+        MoreExecutors.directExecutor());
+    future.whenComplete(
+        (result, error) -> {
+          if (future.isCancelled()) {
+            listenable.cancel(true);
+          }
+        });
+    return future;
+  }
+}
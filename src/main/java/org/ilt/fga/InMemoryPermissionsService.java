@@ -0,0 +1,252 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckBulkPermissionsResponseItem;
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.LookupPermissionship;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import org.ilt.fga.LocalSchema.Arrow;
+import org.ilt.fga.LocalSchema.Definition;
+import org.ilt.fga.LocalSchema.Exclusion;
+import org.ilt.fga.LocalSchema.Intersection;
+import org.ilt.fga.LocalSchema.Node;
+import org.ilt.fga.LocalSchema.Ref;
+import org.ilt.fga.LocalSchema.Union;
+import org.ilt.fga.RelationshipStore.Subject;
+import org.springframework.core.io.Resource;
+
+/**
+ * An in-process {@code PermissionsService} that answers {@code CheckPermission}, {@code
+ * CheckBulkPermissions} and {@code LookupResources} from a schema and a fixed set of
+ * relationships, for tests and benchmarks that should not need a SpiceDB server. Only the schema
+ * subset described by {@link LocalSchema} is evaluated, every consistency is served from the
+ * current state and the revision is returned as the ZedToken. Serve it with {@link
+ * InProcessSpiceDb}.
+ */
+public class InMemoryPermissionsService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+
+  private final LocalSchema schema;
+  private final RelationshipStore relationships;
+
+  /**
+   * @param schema the schema text, as written with {@code zed schema write}
+   * @param relationships one {@code resource:id#relation@subject:id[#relation]} per line
+   */
+  public InMemoryPermissionsService(String schema, String relationships) {
+    this(LocalSchema.parse(schema), RelationshipStore.parse(relationships));
+  }
+
+  InMemoryPermissionsService(LocalSchema schema, RelationshipStore relationships) {
+    this.schema = schema;
+    this.relationships = relationships;
+  }
+
+  public static InMemoryPermissionsService load(Resource schema, Resource relationships) {
+    return new InMemoryPermissionsService(read(schema), read(relationships));
+  }
+
+  private static String read(Resource resource) {
+    try {
+      return resource.getContentAsString(StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new FgaAuthorizationException("Unable to read " + resource, e);
+    }
+  }
+
+  @Override
+  public void checkPermission(
+      CheckPermissionRequest request, StreamObserver<CheckPermissionResponse> observer) {
+    try {
+      boolean allowed =
+          check(
+              request.getResource().getObjectType(),
+              request.getResource().getObjectId(),
+              request.getPermission(),
+              RelationshipStore.subject(request.getSubject()));
+      observer.onNext(
+          CheckPermissionResponse.newBuilder()
+              .setPermissionship(permissionship(allowed))
+              .setCheckedAt(zedToken())
+              .build());
+      observer.onCompleted();
+    } catch (IllegalArgumentException e) {
+      observer.onError(invalidArgument(e));
+    }
+  }
+
+  @Override
+  public void checkBulkPermissions(
+      CheckBulkPermissionsRequest request,
+      StreamObserver<CheckBulkPermissionsResponse> observer) {
+    CheckBulkPermissionsResponse.Builder response =
+        CheckBulkPermissionsResponse.newBuilder().setCheckedAt(zedToken());
+    for (CheckBulkPermissionsRequestItem item : request.getItemsList()) {
+      CheckBulkPermissionsPair.Builder pair =
+          CheckBulkPermissionsPair.newBuilder().setRequest(item);
+      try {
+        boolean allowed =
+            check(
+                item.getResource().getObjectType(),
+                item.getResource().getObjectId(),
+                item.getPermission(),
+                RelationshipStore.subject(item.getSubject()));
+        pair.setItem(
+            CheckBulkPermissionsResponseItem.newBuilder()
+                .setPermissionship(permissionship(allowed)));
+      } catch (IllegalArgumentException e) {
+        pair.setError(
+            com.google.rpc.Status.newBuilder()
+                .setCode(Status.Code.INVALID_ARGUMENT.value())
+                .setMessage(e.getMessage()));
+      }
+      response.addPairs(pair);
+    }
+    observer.onNext(response.build());
+    observer.onCompleted();
+  }
+
+  @Override
+  public void lookupResources(
+      LookupResourcesRequest request, StreamObserver<LookupResourcesResponse> observer) {
+    String type = request.getResourceObjectType();
+    Subject subject = RelationshipStore.subject(request.getSubject());
+    long limit = request.getOptionalLimit() > 0 ? request.getOptionalLimit() : Long.MAX_VALUE;
+    ZedToken token = zedToken();
+    try {
+      requireMember(type, request.getPermission());
+      long sent = 0;
+      for (String id : relationships.resourceIds(type)) {
+        if (sent == limit) {
+          break;
+        }
+        if (check(type, id, request.getPermission(), subject)) {
+          observer.onNext(
+              LookupResourcesResponse.newBuilder()
+                  .setResourceObjectId(id)
+                  .setPermissionship(LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION)
+                  .setLookedUpAt(token)
+                  .build());
+          sent++;
+        }
+      }
+      observer.onCompleted();
+    } catch (IllegalArgumentException e) {
+      observer.onError(invalidArgument(e));
+    }
+  }
+
+  /** Whether {@code subject} has {@code permission}, or the relation so named, on the object. */
+  boolean check(String type, String id, String permission, Subject subject) {
+    requireMember(type, permission);
+    return check(type, id, permission, subject, new HashSet<>());
+  }
+
+  private boolean check(
+      String type, String id, String name, Subject subject, Set<String> visiting) {
+    if (type.equals(subject.type())
+        && id.equals(subject.id())
+        && name.equals(subject.relation())) {
+      return true;
+    }
+    Definition definition = schema.definition(type);
+    if (definition == null || !definition.hasMember(name)) {
+      return false;
+    }
+    // a cycle in the relationships cannot add a subject that is not found without it
+    String key = type + ':' + id + '#' + name;
+    if (!visiting.add(key)) {
+      return false;
+    }
+    try {
+      Node permission = definition.permissions().get(name);
+      if (permission != null) {
+        return evaluate(permission, type, id, subject, visiting);
+      }
+      for (Subject member : relationships.subjects(type, id, name)) {
+        if (matches(member, subject)) {
+          return true;
+        }
+        if (!member.relation().isEmpty()
+            && check(member.type(), member.id(), member.relation(), subject, visiting)) {
+          return true;
+        }
+      }
+      return false;
+    } finally {
+      visiting.remove(key);
+    }
+  }
+
+  private boolean evaluate(
+      Node node, String type, String id, Subject subject, Set<String> visiting) {
+    if (node instanceof Ref ref) {
+      return check(type, id, ref.name(), subject, visiting);
+    }
+    if (node instanceof Arrow arrow) {
+      for (Subject target : relationships.subjects(type, id, arrow.tupleset())) {
+        if (check(target.type(), target.id(), arrow.target(), subject, visiting)) {
+          return true;
+        }
+      }
+      return false;
+    }
+    if (node instanceof Union union) {
+      return evaluate(union.left(), type, id, subject, visiting)
+          || evaluate(union.right(), type, id, subject, visiting);
+    }
+    if (node instanceof Intersection intersection) {
+      return evaluate(intersection.left(), type, id, subject, visiting)
+          && evaluate(intersection.right(), type, id, subject, visiting);
+    }
+    if (node instanceof Exclusion exclusion) {
+      return evaluate(exclusion.left(), type, id, subject, visiting)
+          && !evaluate(exclusion.right(), type, id, subject, visiting);
+    }
+    return false;
+  }
+
+  private static boolean matches(Subject member, Subject subject) {
+    if (!member.type().equals(subject.type()) || !member.relation().equals(subject.relation())) {
+      return false;
+    }
+    return member.id().equals(subject.id()) || Subject.WILDCARD.equals(member.id());
+  }
+
+  private void requireMember(String type, String name) {
+    Definition definition = schema.definition(type);
+    if (definition == null) {
+      throw new IllegalArgumentException("object definition `" + type + "` not found");
+    }
+    if (!definition.hasMember(name)) {
+      throw new IllegalArgumentException(
+          "relation/permission `" + name + "` not found under definition `" + type + "`");
+    }
+  }
+
+  private ZedToken zedToken() {
+    return ZedToken.newBuilder().setToken(Long.toString(relationships.revision())).build();
+  }
+
+  private static CheckPermissionResponse.Permissionship permissionship(boolean allowed) {
+    return allowed
+        ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+        : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+  }
+
+  private static RuntimeException invalidArgument(IllegalArgumentException e) {
+    return Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException();
+  }
+}
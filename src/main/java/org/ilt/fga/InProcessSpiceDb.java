@@ -0,0 +1,58 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.BindableService;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.IOException;
+
+/**
+ * Serves SpiceDB service implementations, typically an {@link InMemoryPermissionsService}, over an
+ * in-process gRPC transport. Requires {@code io.grpc:grpc-inprocess} on the classpath.
+ */
+public final class InProcessSpiceDb implements AutoCloseable {
+
+  private final Server server;
+  private final ManagedChannel channel;
+
+  private InProcessSpiceDb(Server server, ManagedChannel channel) {
+    this.server = server;
+    this.channel = channel;
+  }
+
+  public static InProcessSpiceDb start(BindableService... services) {
+    String name = InProcessServerBuilder.generateName();
+    InProcessServerBuilder builder = InProcessServerBuilder.forName(name).directExecutor();
+    for (BindableService service : services) {
+      builder.addService(service);
+    }
+    Server server;
+    try {
+      server = builder.build().start();
+    } catch (IOException e) {
+      throw new FgaAuthorizationException("Unable to start in-process SpiceDB", e);
+    }
+    return new InProcessSpiceDb(
+        server, InProcessChannelBuilder.forName(name).directExecutor().build());
+  }
+
+  public ManagedChannel channel() {
+    return channel;
+  }
+
+  public PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService() {
+    return PermissionsServiceGrpc.newBlockingStub(channel);
+  }
+
+  public PermissionsServiceGrpc.PermissionsServiceFutureStub permissionsFutureService() {
+    return PermissionsServiceGrpc.newFutureStub(channel);
+  }
+
+  @Override
+  public void close() {
+    channel.shutdownNow();
+    server.shutdownNow();
+  }
+}
@@ -0,0 +1,534 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.ReadRelationshipsRequest;
+import com.authzed.api.v1.ReadRelationshipsResponse;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.RelationshipFilter;
+import com.authzed.api.v1.RelationshipUpdate;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.WatchRequest;
+import com.authzed.api.v1.WatchResponse;
+import com.authzed.api.v1.WatchServiceGrpc;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * In-memory copy of selected relations, such as {@code document#owner}, that answers checks of
+ * those relations without a remote call. The relations are all read with {@code ReadRelationships}
+ * at the exact snapshot of one fully consistent revision, and kept current by following SpiceDB's
+ * {@code Watch} stream from that same revision. Checks are answered locally only once the watch has
+ * been confirmed, by a first response or by staying open for a moment without failing.
+ *
+ * <p>Object ids are interned to ints and each relationship is stored as one {@code long} in an
+ * open-addressing set, roughly 16 bytes per relationship plus the interned ids. Only checks that
+ * the copy decides exactly are answered locally: the permission must be an indexed relation, the
+ * subject a plain object and the consistency {@code minimize_latency} or unset. Resources with
+ * subject sets or caveated relationships, and every check while the copy is loading or the watch is
+ * disconnected, go to the delegate. So do checks made with a {@link SpiceDbRouting} key bound: the
+ * copy follows the cluster chosen without a key, which need not hold the data of other keys.
+ */
+public class LocalRelationIndex implements AutoCloseable {
+
+  private static final Log log = LogFactory.getLog(LocalRelationIndex.class);
+
+  private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+  /** How long a watch must stay open without failing before it counts as established. */
+  private static final Duration WATCH_CONFIRMATION = Duration.ofMillis(500);
+
+  private static final String SNAPSHOT_PROBE_ID = "spicedb-local-index";
+
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final WatchServiceGrpc.WatchServiceStub watchService;
+  private final Map<String, RelationIndex> relations = new LinkedHashMap<>();
+  private final Set<String> objectTypes = new LinkedHashSet<>();
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final ScheduledExecutorService executor;
+  private final Duration initialBackoff;
+
+  private final AtomicLong idChars = new AtomicLong();
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder fallbacks = new LongAdder();
+  private final LongAdder updates = new LongAdder();
+
+  private volatile boolean ready;
+  private volatile boolean closed;
+  private volatile ZedToken revision;
+  private volatile ClientCallStreamObserver<WatchRequest> watchCall;
+  private volatile WatchObserver currentWatch;
+  private Duration backoff;
+
+  /**
+   * @param relations the relations to index as {@code resource_type#relation}
+   */
+  public LocalRelationIndex(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      WatchServiceGrpc.WatchServiceStub watchService,
+      Collection<String> relations,
+      Duration initialBackoff) {
+    this.permissionsService = permissionsService;
+    this.watchService = watchService;
+    for (String relation : relations) {
+      String[] parts = relation.trim().split("#");
+      if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+        throw new FgaAuthorizationException("Invalid local index relation: " + relation);
+      }
+      this.relations.put(parts[0] + '#' + parts[1], new RelationIndex(parts[0], parts[1]));
+      objectTypes.add(parts[0]);
+    }
+    if (this.relations.isEmpty()) {
+      throw new FgaAuthorizationException("The local index requires at least one relation");
+    }
+    this.initialBackoff = initialBackoff;
+    this.backoff = initialBackoff;
+    this.executor =
+        Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "spicedb-local-index");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /** Loads the relations and starts following changes in the background. */
+  public void start() {
+    executor.execute(this::bootstrap);
+  }
+
+  /** Answers checks it can decide locally and passes every other check to {@code delegate}. */
+  public PermissionChecker wrap(PermissionChecker delegate) {
+    return new PermissionChecker() {
+      @Override
+      public CheckPermissionResponse check(CheckPermissionRequest request) {
+        CheckPermissionResponse local = checkLocally(request);
+        return local != null ? local : delegate.check(request);
+      }
+
+      @Override
+      public CompletableFuture<CheckPermissionResponse> checkAsync(
+          CheckPermissionRequest request) {
+        CheckPermissionResponse local = checkLocally(request);
+        return local != null
+            ? CompletableFuture.completedFuture(local)
+            : delegate.checkAsync(request);
+      }
+    };
+  }
+
+  /** The locally decided response, or {@code null} when the check must go to SpiceDB. */
+  public CheckPermissionResponse checkLocally(CheckPermissionRequest request) {
+    Boolean allowed = decide(request);
+    if (allowed == null) {
+      fallbacks.increment();
+      return null;
+    }
+    hits.increment();
+    CheckPermissionResponse.Builder response =
+        CheckPermissionResponse.newBuilder()
+            .setPermissionship(
+                allowed
+                    ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+                    : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION);
+    ZedToken checkedAt = revision;
+    if (checkedAt != null) {
+      response.setCheckedAt(checkedAt);
+    }
+    return response.build();
+  }
+
+  private Boolean decide(CheckPermissionRequest request) {
+    if (!ready
+        || SpiceDbRouting.get() != null
+        || !request.getSubject().getOptionalRelation().isEmpty()) {
+      return null;
+    }
+    Consistency.RequirementCase requirement = request.getConsistency().getRequirementCase();
+    if (requirement != Consistency.RequirementCase.MINIMIZE_LATENCY
+        && requirement != Consistency.RequirementCase.REQUIREMENT_NOT_SET) {
+      return null;
+    }
+    String type = request.getResource().getObjectType();
+    RelationIndex relation = relations.get(type + '#' + request.getPermission());
+    if (relation == null) {
+      return null;
+    }
+    String subjectType = request.getSubject().getObject().getObjectType();
+    String resourceKey = type + ':' + request.getResource().getObjectId();
+    String subjectKey = subjectType + ':' + request.getSubject().getObject().getObjectId();
+
+    lock.readLock().lock();
+    try {
+      if (!ready) {
+        return null;
+      }
+      Integer resource = ids.get(resourceKey);
+      if (resource == null) {
+        // no relationship of any kind was seen for the resource
+        return false;
+      }
+      Integer subject = ids.get(subjectKey);
+      Integer wildcard = ids.get(subjectType + ":*");
+      if ((subject != null && relation.direct.contains(key(resource, subject)))
+          || (wildcard != null && relation.direct.contains(key(resource, wildcard)))) {
+        return true;
+      }
+      return relation.indirect.containsKey(resource) ? null : Boolean.FALSE;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void bootstrap() {
+    if (closed) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      ready = false;
+      relations.values().forEach(RelationIndex::clear);
+      ids.clear();
+      idChars.set(0);
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    try {
+      // every relation is read at, and watched from, the same revision so none misses a change
+      ZedToken readAt = snapshot();
+      Consistency consistency = Consistency.newBuilder().setAtExactSnapshot(readAt).build();
+      for (RelationIndex relation : relations.values()) {
+        Iterator<ReadRelationshipsResponse> responses =
+            permissionsService.readRelationships(
+                ReadRelationshipsRequest.newBuilder()
+                    .setConsistency(consistency)
+                    .setRelationshipFilter(
+                        RelationshipFilter.newBuilder()
+                            .setResourceType(relation.type)
+                            .setOptionalRelation(relation.relation))
+                    .build());
+        while (responses.hasNext()) {
+          write(relation, responses.next().getRelationship());
+        }
+      }
+      revision = readAt;
+      log.info("Loaded " + tupleCount() + " relationships into the local relation index");
+      watch();
+    } catch (RuntimeException e) {
+      log.warn("Unable to load the local relation index, checks use SpiceDB", e);
+      retry(this::bootstrap);
+    }
+  }
+
+  /**
+   * The current revision, taken from a fully consistent check since {@code ReadRelationships} only
+   * reports it along with a relationship.
+   */
+  private ZedToken snapshot() {
+    RelationIndex relation = relations.values().iterator().next();
+    ObjectReference probe =
+        ObjectReference.newBuilder()
+            .setObjectType(relation.type)
+            .setObjectId(SNAPSHOT_PROBE_ID)
+            .build();
+    CheckPermissionResponse response =
+        permissionsService.checkPermission(
+            CheckPermissionRequest.newBuilder()
+                .setConsistency(Consistency.newBuilder().setFullyConsistent(true))
+                .setResource(probe)
+                .setPermission(relation.relation)
+                .setSubject(SubjectReference.newBuilder().setObject(probe))
+                .build());
+    if (!response.hasCheckedAt()) {
+      throw new IllegalStateException("SpiceDB did not report the revision of a check");
+    }
+    return response.getCheckedAt();
+  }
+
+  private void watch() {
+    if (closed) {
+      return;
+    }
+    WatchRequest.Builder request = WatchRequest.newBuilder().addAllOptionalObjectTypes(objectTypes);
+    if (revision != null) {
+      request.setOptionalStartCursor(revision);
+    }
+    WatchObserver observer = new WatchObserver();
+    currentWatch = observer;
+    watchService.watch(request.build(), observer);
+    // a start cursor SpiceDB can no longer serve fails the stream right away
+    executor.schedule(observer::confirm, WATCH_CONFIRMATION.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void retry(Runnable task) {
+    ready = false;
+    if (closed) {
+      return;
+    }
+    Duration delay = backoff;
+    Duration doubled = backoff.multipliedBy(2);
+    backoff = doubled.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : doubled;
+    executor.schedule(task, delay.toMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  private void apply(WatchResponse response) {
+    lock.writeLock().lock();
+    try {
+      for (RelationshipUpdate update : response.getUpdatesList()) {
+        Relationship relationship = update.getRelationship();
+        RelationIndex relation =
+            relations.get(
+                relationship.getResource().getObjectType() + '#' + relationship.getRelation());
+        if (relation == null) {
+          continue;
+        }
+        if (update.getOperation() == RelationshipUpdate.Operation.OPERATION_DELETE) {
+          delete(relation, relationship);
+        } else {
+          write(relation, relationship);
+        }
+        updates.increment();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+    if (response.hasChangesThrough()) {
+      revision = response.getChangesThrough();
+    }
+  }
+
+  /** Adds or replaces a relationship; callers hold the write lock or own the index. */
+  private void write(RelationIndex relation, Relationship relationship) {
+    int resource = intern(resourceKey(relationship));
+    SubjectReference subject = relationship.getSubject();
+    String subjectKey = subjectKey(subject);
+    if (subject.getOptionalRelation().isEmpty() && !relationship.hasOptionalCaveat()) {
+      relation.direct.add(key(resource, intern(subjectKey)));
+      relation.removeIndirect(resource, subjectKey);
+    } else {
+      Integer plain = ids.get(subjectKey);
+      if (plain != null) {
+        relation.direct.remove(key(resource, plain));
+      }
+      relation.indirect.computeIfAbsent(resource, r -> new HashSet<>()).add(subjectKey);
+    }
+  }
+
+  private void delete(RelationIndex relation, Relationship relationship) {
+    Integer resource = ids.get(resourceKey(relationship));
+    if (resource == null) {
+      return;
+    }
+    String subjectKey = subjectKey(relationship.getSubject());
+    Integer subject = ids.get(subjectKey);
+    if (subject != null) {
+      relation.direct.remove(key(resource, subject));
+    }
+    relation.removeIndirect(resource, subjectKey);
+  }
+
+  private int intern(String id) {
+    Integer existing = ids.get(id);
+    if (existing != null) {
+      return existing;
+    }
+    int next = ids.size();
+    ids.put(id, next);
+    idChars.addAndGet(id.length());
+    return next;
+  }
+
+  private static String resourceKey(Relationship relationship) {
+    return relationship.getResource().getObjectType()
+        + ':'
+        + relationship.getResource().getObjectId();
+  }
+
+  private static String subjectKey(SubjectReference subject) {
+    String key = subject.getObject().getObjectType() + ':' + subject.getObject().getObjectId();
+    String relation = subject.getOptionalRelation();
+    return relation.isEmpty() ? key : key + '#' + relation;
+  }
+
+  private static long key(int resource, int subject) {
+    return ((long) resource << 32) | (subject & 0xFFFFFFFFL);
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  /** Relationships held, direct and indirect. */
+  public long tupleCount() {
+    lock.readLock().lock();
+    try {
+      long count = 0;
+      for (RelationIndex relation : relations.values()) {
+        count += relation.direct.size();
+        for (Set<String> subjects : relation.indirect.values()) {
+          count += subjects.size();
+        }
+      }
+      return count;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int internedIdCount() {
+    return ids.size();
+  }
+
+  /**
+   * Estimated heap used by the index: the slot arrays plus, per interned id, a map entry, a boxed
+   * int and a compact string. Subject sets and caveated relationships are not included.
+   */
+  public long estimatedBytes() {
+    lock.readLock().lock();
+    try {
+      long bytes = 0;
+      for (RelationIndex relation : relations.values()) {
+        bytes += relation.direct.footprint();
+      }
+      return bytes + ids.size() * 96L + idChars.get();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long fallbackCount() {
+    return fallbacks.sum();
+  }
+
+  public long updateCount() {
+    return updates.sum();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    ready = false;
+    ClientCallStreamObserver<WatchRequest> call = watchCall;
+    if (call != null) {
+      call.cancel("Local relation index closed", null);
+    }
+    executor.shutdownNow();
+  }
+
+  private final class WatchObserver implements ClientResponseObserver<WatchRequest, WatchResponse> {
+
+    private boolean ended;
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<WatchRequest> requestStream) {
+      watchCall = requestStream;
+    }
+
+    /**
+     * Starts answering checks locally, unless this stream has ended or been replaced. Changes since
+     * the start revision are replayed first, so the copy catches up within the stream.
+     */
+    synchronized void confirm() {
+      if (!ended && !closed && currentWatch == this) {
+        ready = true;
+      }
+    }
+
+    /** Stops answering checks locally; {@link #confirm} cannot undo it for this stream. */
+    private synchronized void end() {
+      ended = true;
+      ready = false;
+    }
+
+    @Override
+    public void onNext(WatchResponse response) {
+      apply(response);
+      backoff = initialBackoff;
+      confirm();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+      end();
+      if (closed) {
+        return;
+      }
+      Status.Code code = Status.fromThrowable(error).getCode();
+      log.warn("Local relation index watch failed with " + code + ", checks use SpiceDB");
+      // the stream resumes from the last revision unless SpiceDB can no longer serve it from there
+      boolean resumable =
+          code == Status.Code.UNAVAILABLE
+              || code == Status.Code.DEADLINE_EXCEEDED
+              || code == Status.Code.INTERNAL
+              || code == Status.Code.UNKNOWN;
+      retry(resumable ? LocalRelationIndex.this::watch : LocalRelationIndex.this::bootstrap);
+    }
+
+    @Override
+    public void onCompleted() {
+      end();
+      if (!closed) {
+        retry(LocalRelationIndex.this::watch);
+      }
+    }
+  }
+
+  /** The relationships of one {@code resource_type#relation}. */
+  private static final class RelationIndex {
+
+    final String type;
+    final String relation;
+    /** (resource, subject) pairs of plain subjects without caveats. */
+    final LongHashSet direct = new LongHashSet();
+    /** Subject sets and caveated subjects per resource, which force a remote check. */
+    final Map<Integer, Set<String>> indirect = new HashMap<>();
+
+    RelationIndex(String type, String relation) {
+      this.type = type;
+      this.relation = relation;
+    }
+
+    void removeIndirect(int resource, String subjectKey) {
+      Set<String> subjects = indirect.get(resource);
+      if (subjects != null && subjects.remove(subjectKey) && subjects.isEmpty()) {
+        indirect.remove(resource);
+      }
+    }
+
+    void clear() {
+      direct.clear();
+      indirect.clear();
+    }
+  }
+}
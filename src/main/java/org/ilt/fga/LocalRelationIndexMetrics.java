@@ -0,0 +1,42 @@
+package org.ilt.fga;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Publishes the size and estimated memory footprint of a {@link LocalRelationIndex}, whether it is
+ * serving checks, and how many checks it answered or passed on to SpiceDB.
+ */
+public class LocalRelationIndexMetrics implements MeterBinder {
+
+  private final LocalRelationIndex index;
+
+  public LocalRelationIndexMetrics(LocalRelationIndex index) {
+    this.index = index;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("spicedb.local-index.relationships", index, LocalRelationIndex::tupleCount)
+        .register(registry);
+    Gauge.builder("spicedb.local-index.ids", index, LocalRelationIndex::internedIdCount)
+        .register(registry);
+    Gauge.builder("spicedb.local-index.memory", index, LocalRelationIndex::estimatedBytes)
+        .baseUnit(BaseUnits.BYTES)
+        .register(registry);
+    Gauge.builder("spicedb.local-index.ready", index, i -> i.isReady() ? 1 : 0)
+        .register(registry);
+    FunctionCounter.builder("spicedb.local-index.checks", index, LocalRelationIndex::hitCount)
+        .tag("result", "local")
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.local-index.checks", index, LocalRelationIndex::fallbackCount)
+        .tag("result", "remote")
+        .register(registry);
+    FunctionCounter.builder("spicedb.local-index.updates", index, LocalRelationIndex::updateCount)
+        .register(registry);
+  }
+}
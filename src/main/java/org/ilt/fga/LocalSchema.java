@@ -0,0 +1,199 @@
+package org.ilt.fga;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The subset of a SpiceDB schema that {@link InMemoryPermissionsService} evaluates: relations and
+ * permissions built from unions ({@code +}), intersections ({@code &}), exclusions ({@code -}),
+ * arrows ({@code ->}), parentheses and {@code nil}. Caveats and relation type restrictions are not
+ * enforced.
+ */
+final class LocalSchema {
+
+  private static final Pattern DEFINITION = Pattern.compile("\\bdefinition\\s+([\\w/]+)\\s*\\{");
+  private static final Pattern MEMBER =
+      Pattern.compile("\\b(relation|permission)\\s+(\\w+)\\s*([:=])");
+  private static final Pattern COMMENT = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+  private static final Pattern TOKEN = Pattern.compile("\\s*(->|[+&\\-()]|\\w+)");
+
+  private final Map<String, Definition> definitions;
+
+  private LocalSchema(Map<String, Definition> definitions) {
+    this.definitions = definitions;
+  }
+
+  static LocalSchema parse(String schemaText) {
+    String schema = COMMENT.matcher(schemaText).replaceAll("");
+    Map<String, Definition> definitions = new HashMap<>();
+    Matcher definition = DEFINITION.matcher(schema);
+    while (definition.find()) {
+      String body = schema.substring(definition.end(), closingBrace(schema, definition.end()));
+      definitions.put(definition.group(1), parseDefinition(definition.group(1), body));
+    }
+    return new LocalSchema(definitions);
+  }
+
+  private static Definition parseDefinition(String type, String body) {
+    Set<String> relations = new HashSet<>();
+    Map<String, Node> permissions = new HashMap<>();
+    Matcher member = MEMBER.matcher(body);
+    boolean found = member.find();
+    while (found) {
+      String kind = member.group(1);
+      String name = member.group(2);
+      int start = member.end();
+      found = member.find();
+      if ("relation".equals(kind)) {
+        relations.add(name);
+      } else {
+        String expression = body.substring(start, found ? member.start() : body.length());
+        try {
+          permissions.put(name, new ExpressionParser(expression).parse());
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(
+              "Invalid permission " + type + "#" + name + ": " + e.getMessage(), e);
+        }
+      }
+    }
+    return new Definition(relations, permissions);
+  }
+
+  private static int closingBrace(String schema, int from) {
+    int depth = 1;
+    for (int i = from; i < schema.length(); i++) {
+      char c = schema.charAt(i);
+      if (c == '{') {
+        depth++;
+      } else if (c == '}' && --depth == 0) {
+        return i;
+      }
+    }
+    return schema.length();
+  }
+
+  Definition definition(String type) {
+    return definitions.get(type);
+  }
+
+  record Definition(Set<String> relations, Map<String, Node> permissions) {
+
+    boolean hasMember(String name) {
+      return relations.contains(name) || permissions.containsKey(name);
+    }
+  }
+
+  /** A node of a permission expression. */
+  interface Node {}
+
+  /** A relation or permission of the same object. */
+  record Ref(String name) implements Node {}
+
+  /** {@code tupleset->target}: {@code target} on every subject of the {@code tupleset} relation. */
+  record Arrow(String tupleset, String target) implements Node {}
+
+  record Union(Node left, Node right) implements Node {}
+
+  record Intersection(Node left, Node right) implements Node {}
+
+  record Exclusion(Node left, Node right) implements Node {}
+
+  record Nil() implements Node {}
+
+  /**
+   * Recursive descent over {@code union := intersection ('+' intersection)*}, {@code intersection
+   * := exclusion ('&' exclusion)*}, {@code exclusion := term ('-' term)*}.
+   */
+  private static final class ExpressionParser {
+
+    private final List<String> tokens = new ArrayList<>();
+    private int position;
+
+    ExpressionParser(String expression) {
+      Matcher token = TOKEN.matcher(expression);
+      int end = 0;
+      while (token.find() && token.start() == end) {
+        tokens.add(token.group(1));
+        end = token.end();
+      }
+      if (!expression.substring(end).isBlank()) {
+        throw new IllegalArgumentException("unexpected '" + expression.substring(end).trim() + "'");
+      }
+    }
+
+    Node parse() {
+      Node node = union();
+      if (position < tokens.size()) {
+        throw new IllegalArgumentException("unexpected '" + tokens.get(position) + "'");
+      }
+      return node;
+    }
+
+    private Node union() {
+      Node node = intersection();
+      while (accept("+")) {
+        node = new Union(node, intersection());
+      }
+      return node;
+    }
+
+    private Node intersection() {
+      Node node = exclusion();
+      while (accept("&")) {
+        node = new Intersection(node, exclusion());
+      }
+      return node;
+    }
+
+    private Node exclusion() {
+      Node node = term();
+      while (accept("-")) {
+        node = new Exclusion(node, term());
+      }
+      return node;
+    }
+
+    private Node term() {
+      if (accept("(")) {
+        Node node = union();
+        expect(")");
+        return node;
+      }
+      String name = next();
+      if (!name.matches("\\w+")) {
+        throw new IllegalArgumentException("unexpected '" + name + "'");
+      }
+      if (accept("->")) {
+        return new Arrow(name, next());
+      }
+      return "nil".equals(name) ? new Nil() : new Ref(name);
+    }
+
+    private boolean accept(String token) {
+      if (position < tokens.size() && tokens.get(position).equals(token)) {
+        position++;
+        return true;
+      }
+      return false;
+    }
+
+    private void expect(String token) {
+      if (!accept(token)) {
+        throw new IllegalArgumentException("expected '" + token + "'");
+      }
+    }
+
+    private String next() {
+      if (position >= tokens.size()) {
+        throw new IllegalArgumentException("unexpected end of expression");
+      }
+      return tokens.get(position++);
+    }
+  }
+}
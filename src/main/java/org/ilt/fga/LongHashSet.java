@@ -0,0 +1,111 @@
+package org.ilt.fga;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing set of non-negative {@code long}s with linear probing, eight bytes per slot and
+ * no per-entry objects. Not thread-safe.
+ */
+final class LongHashSet {
+
+  private static final long EMPTY = -1L;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] keys;
+  private int mask;
+  private int size;
+
+  LongHashSet() {
+    allocate(MIN_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    mask = capacity - 1;
+  }
+
+  boolean add(long key) {
+    int slot = slot(key);
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    // keep the load factor at or below one half so that probe sequences stay short
+    if (++size * 2 > keys.length) {
+      rehash(keys.length * 2);
+    }
+    return true;
+  }
+
+  boolean contains(long key) {
+    int slot = slot(key);
+    while (keys[slot] != EMPTY) {
+      if (keys[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  boolean remove(long key) {
+    int slot = slot(key);
+    while (keys[slot] != key) {
+      if (keys[slot] == EMPTY) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = EMPTY;
+    size--;
+    // shift later entries of the probe sequence back so that lookups never stop at the gap
+    int gap = slot;
+    for (int next = (gap + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+      int home = slot(keys[next]);
+      boolean reachable = gap <= next ? gap < home && home <= next : gap < home || home <= next;
+      if (!reachable) {
+        keys[gap] = keys[next];
+        keys[next] = EMPTY;
+        gap = next;
+      }
+    }
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Bytes held by the slot array. */
+  long footprint() {
+    return (long) keys.length * Long.BYTES;
+  }
+
+  void clear() {
+    allocate(MIN_CAPACITY);
+    size = 0;
+  }
+
+  private void rehash(int capacity) {
+    long[] old = keys;
+    allocate(capacity);
+    for (long key : old) {
+      if (key != EMPTY) {
+        int slot = slot(key);
+        while (keys[slot] != EMPTY) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+      }
+    }
+  }
+
+  private int slot(long key) {
+    long hash = key * 0x9E3779B97F4A7C15L;
+    return (int) (hash ^ (hash >>> 32)) & mask;
+  }
+}
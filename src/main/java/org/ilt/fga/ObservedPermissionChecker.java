@@ -0,0 +1,59 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.concurrent.CompletableFuture;
+
+/** Records a {@code spicedb.check} observation around every check that reaches SpiceDB. */
+public class ObservedPermissionChecker implements PermissionChecker {
+
+  private final PermissionChecker delegate;
+  private final ObservationRegistry registry;
+
+  public ObservedPermissionChecker(PermissionChecker delegate, ObservationRegistry registry) {
+    this.delegate = delegate;
+    this.registry = registry;
+  }
+
+  @Override
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    Observation observation = start(request);
+    try (Observation.Scope scope = observation.openScope()) {
+      CheckPermissionResponse response = delegate.check(request);
+      AuthorizationObservations.decided(observation, PermissionDecisions.isAllowed(response));
+      return response;
+    } catch (RuntimeException e) {
+      AuthorizationObservations.failed(observation, e);
+      throw e;
+    } finally {
+      observation.stop();
+    }
+  }
+
+  @Override
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    Observation observation = start(request);
+    CompletableFuture<CheckPermissionResponse> future =
+        observation.scoped(() -> delegate.checkAsync(request));
+    future.whenComplete(
+        (response, error) -> {
+          if (error != null) {
+            AuthorizationObservations.failed(observation, error);
+          } else {
+            AuthorizationObservations.decided(observation, PermissionDecisions.isAllowed(response));
+          }
+          observation.stop();
+        });
+    return future;
+  }
+
+  private Observation start(CheckPermissionRequest request) {
+    return Observation.createNotStarted(AuthorizationObservations.CHECK, registry)
+        .lowCardinalityKeyValue(AuthorizationObservations.PERMISSION, request.getPermission())
+        .lowCardinalityKeyValue(
+            AuthorizationObservations.RESOURCE_TYPE, request.getResource().getObjectType())
+        .start();
+  }
+}
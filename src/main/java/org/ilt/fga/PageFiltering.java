@@ -0,0 +1,20 @@
+package org.ilt.fga;
+
+import java.util.List;
+import java.util.function.Function;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+
+/** Spring Data {@code Page} support for {@link SpiceDbPostFilterAspect}, loaded on demand. */
+final class PageFiltering {
+
+  private PageFiltering() {}
+
+  static Page<Object> filter(Object result, Function<List<?>, List<Object>> filter) {
+    Page<?> page = (Page<?>) result;
+    // the total is kept: elements of the other pages have not been checked, so any adjustment
+    // limited to this page would be as approximate and inconsistent from one page to the next
+    List<Object> content = filter.apply(page.getContent());
+    return new PageImpl<>(content, page.getPageable(), page.getTotalElements());
+  }
+}
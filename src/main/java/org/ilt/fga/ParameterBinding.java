@@ -0,0 +1,57 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps the expression variable names of a method to argument positions. A parameter is addressed
+ * by the lower-cased simple name of its type, e.g. {@code user} for a {@code User} argument; when
+ * two parameters share a type the last one wins.
+ */
+public class ParameterBinding {
+
+  private final Map<String, Integer> indexes = new HashMap<>();
+  private final Class<?>[] types;
+
+  public ParameterBinding(Method method) {
+    this(method.getParameterTypes());
+  }
+
+  public ParameterBinding(Class<?>... types) {
+    this.types = types.clone();
+    for (int i = 0; i < types.length; i++) {
+      indexes.put(types[i].getSimpleName().toLowerCase(), i);
+    }
+  }
+
+  private ParameterBinding(ParameterBinding binding, String name, Class<?> type) {
+    indexes.putAll(binding.indexes);
+    types = Arrays.copyOf(binding.types, binding.types.length + 1);
+    types[binding.types.length] = type;
+    indexes.put(name, binding.types.length);
+  }
+
+  /**
+   * Returns a binding with an additional variable placed right after the method arguments, so the
+   * argument array passed to resolvers must be one slot longer.
+   */
+  public ParameterBinding with(String name, Class<?> type) {
+    return new ParameterBinding(this, name, type);
+  }
+
+  public int size() {
+    return types.length;
+  }
+
+  /** Returns the argument index bound to {@code name}, or {@code -1} when there is none. */
+  public int indexOf(String name) {
+    Integer index = indexes.get(name);
+    return index == null ? -1 : index;
+  }
+
+  public Class<?> typeAt(int index) {
+    return types[index];
+  }
+}
@@ -0,0 +1,26 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Performs a single SpiceDB permission check. Implementations are layered as decorators around
+ * {@link GrpcPermissionChecker}, which issues the actual RPC.
+ */
+@FunctionalInterface
+public interface PermissionChecker {
+  CheckPermissionResponse check(CheckPermissionRequest request);
+
+  /**
+   * Performs the check without blocking the calling thread. The default implementation runs the
+   * blocking {@link #check} on the caller and is only suitable for checkers that never do I/O.
+   */
+  default CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    try {
+      return CompletableFuture.completedFuture(check(request));
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.ZedToken;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded in-process cache of check decisions keyed by {@link CheckKey}. Each entry keeps the
+ * response, including its {@code checked_at} ZedToken, and is served only while it is younger than
+ * the configured maximum staleness and no relationship write to its resource has been recorded
+ * after it. Decisions that depend on a written relationship through another object, e.g. a
+ * document viewable by the members of a group that gained a member, are only refreshed once they
+ * exceed the maximum staleness. A write invalidates the decisions on its resources under every
+ * routing key.
+ *
+ * <p>Requests asking for full consistency always miss. Requests pinned to a ZedToken only hit an
+ * entry that was checked at exactly that token.
+ */
+public class PermissionDecisionCache {
+
+  private final Cache<CheckKey, Entry> cache;
+  /** When each recently written resource was last written, as {@code type:id}. */
+  private final Cache<String, Long> resourceFences;
+  private final long maxStalenessNanos;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private volatile long writeFenceNanos = System.nanoTime();
+  private volatile ZedToken lastWrite;
+
+  public PermissionDecisionCache(long maximumSize, Duration ttl, Duration maxStaleness) {
+    this.maxStalenessNanos = maxStaleness.toNanos();
+    this.cache =
+        Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttl)
+            .removalListener(
+                (CheckKey key, Entry entry, RemovalCause cause) -> {
+                  if (cause.wasEvicted()) {
+                    evictions.increment();
+                  }
+                })
+            .build();
+    // a decision requested before a write is too stale to be served once the fence expires; a
+    // fence evicted early for room instead fences every decision stored before it
+    this.resourceFences =
+        Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(maxStaleness)
+            .evictionListener(
+                (String resource, Long fence, RemovalCause cause) -> {
+                  if (cause == RemovalCause.SIZE && fence != null) {
+                    raiseWriteFence(fence);
+                  }
+                })
+            .build();
+  }
+
+  public CheckPermissionResponse get(CheckKey key, Consistency consistency) {
+    Entry entry = cache.getIfPresent(key);
+    if (entry == null || !isUsable(key, entry, consistency)) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.response();
+  }
+
+  /**
+   * Stores a decision. {@code requestedAtNanos} is the {@link System#nanoTime()} at which the check
+   * was sent, so a check racing with a write is never cached as if it happened after it.
+   */
+  public void put(CheckKey key, CheckPermissionResponse response, long requestedAtNanos) {
+    CheckPermissionResponse.Permissionship permissionship = response.getPermissionship();
+    if (requestedAtNanos - writeFenceNanos < 0 || isFenced(key, requestedAtNanos)) {
+      return;
+    }
+    if (permissionship == CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+        || permissionship == CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION) {
+      cache.put(key, new Entry(response, requestedAtNanos));
+    }
+  }
+
+  /**
+   * Records a relationship write to {@code resources}. Their decisions cached before the write are
+   * no longer served, since they may predate the change the token represents; decisions of other
+   * resources are kept. The hidden entries are left for expiry and size eviction to remove.
+   */
+  public void invalidate(ZedToken writtenAt, Collection<ObjectReference> resources) {
+    lastWrite = writtenAt;
+    long now = System.nanoTime();
+    for (ObjectReference resource : resources) {
+      resourceFences.put(resource.getObjectType() + ':' + resource.getObjectId(), now);
+    }
+  }
+
+  /**
+   * Records a relationship write whose resources are not known. Decisions cached before the write
+   * are no longer served, since they may predate the change the token represents.
+   */
+  public void invalidate(ZedToken writtenAt) {
+    lastWrite = writtenAt;
+    raiseWriteFence(System.nanoTime());
+    cache.invalidateAll();
+  }
+
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** The token of the most recent write passed to {@link #invalidate(ZedToken)}, if any. */
+  public ZedToken getLastWrite() {
+    return lastWrite;
+  }
+
+  public long hitCount() {
+    return hits.sum();
+  }
+
+  public long missCount() {
+    return misses.sum();
+  }
+
+  public long evictionCount() {
+    return evictions.sum();
+  }
+
+  public long size() {
+    return cache.estimatedSize();
+  }
+
+  private boolean isUsable(CheckKey key, Entry entry, Consistency consistency) {
+    long storedAt = entry.storedAtNanos();
+    if (storedAt - writeFenceNanos < 0
+        || System.nanoTime() - storedAt >= maxStalenessNanos
+        || isFenced(key, storedAt)) {
+      return false;
+    }
+    return switch (consistency.getRequirementCase()) {
+      case FULLY_CONSISTENT -> false;
+      case AT_EXACT_SNAPSHOT -> consistency.getAtExactSnapshot().equals(entry.checkedAt());
+      case AT_LEAST_AS_FRESH -> consistency.getAtLeastAsFresh().equals(entry.checkedAt());
+      default -> true;
+    };
+  }
+
+  private synchronized void raiseWriteFence(long nanos) {
+    if (nanos - writeFenceNanos > 0) {
+      writeFenceNanos = nanos;
+    }
+  }
+
+  /** Whether the resource of {@code key} was written after {@code nanos}. */
+  private boolean isFenced(CheckKey key, long nanos) {
+    Long fence = resourceFences.getIfPresent(resourceKey(key));
+    return fence != null && nanos - fence < 0;
+  }
+
+  private static String resourceKey(CheckKey key) {
+    return key.resourceType() + ':' + key.resourceId();
+  }
+
+  private record Entry(CheckPermissionResponse response, long storedAtNanos) {
+    ZedToken checkedAt() {
+      return response.getCheckedAt();
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package org.ilt.fga;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/** Publishes the hit, miss and eviction counters of a {@link PermissionDecisionCache}. */
+public class PermissionDecisionCacheMetrics implements MeterBinder {
+
+  private final PermissionDecisionCache cache;
+
+  public PermissionDecisionCacheMetrics(PermissionDecisionCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("spicedb.cache.requests", cache, PermissionDecisionCache::hitCount)
+        .tag("result", "hit")
+        .register(registry);
+    FunctionCounter.builder("spicedb.cache.requests", cache, PermissionDecisionCache::missCount)
+        .tag("result", "miss")
+        .register(registry);
+    FunctionCounter.builder(
+            "spicedb.cache.evictions", cache, PermissionDecisionCache::evictionCount)
+        .register(registry);
+    Gauge.builder("spicedb.cache.size", cache, PermissionDecisionCache::size).register(registry);
+  }
+}
@@ -0,0 +1,74 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Combines concurrently running checks into a single decision. The combined result completes as
+ * soon as it is known, a deny for {@code AND} or an allow for {@code OR}, and the checks still in
+ * flight are then cancelled. Every layer of the checker chain hands that cancellation down, so it
+ * reaches the RPC unless other callers still wait for the same check.
+ */
+final class PermissionDecisions {
+
+  private PermissionDecisions() {}
+
+  static boolean isAllowed(CheckPermissionResponse response) {
+    return response.getPermissionship()
+        == CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+  }
+
+  /**
+   * Returns {@code dependent}, a stage derived from {@code source}, cancelling {@code source} when
+   * {@code dependent} is cancelled; a dependent stage does not do that on its own.
+   */
+  static <T> CompletableFuture<T> forwardCancel(CompletableFuture<T> dependent, Future<?> source) {
+    dependent.whenComplete(
+        (value, error) -> {
+          if (dependent.isCancelled()) {
+            source.cancel(true);
+          }
+        });
+    return dependent;
+  }
+
+  static CompletableFuture<Boolean> combine(
+      List<CompletableFuture<CheckPermissionResponse>> checks, SpiceDbAuthorize.Operator operator) {
+    // the value that decides the outcome on its own: a deny for AND, an allow for OR
+    boolean decisive = operator == SpiceDbAuthorize.Operator.OR;
+    CompletableFuture<Boolean> result = new CompletableFuture<>();
+    AtomicInteger remaining = new AtomicInteger(checks.size());
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    for (CompletableFuture<CheckPermissionResponse> check : checks) {
+      check.whenComplete(
+          (response, error) -> {
+            if (result.isDone()) {
+              return;
+            }
+            if (error == null && isAllowed(response) == decisive) {
+              result.complete(decisive);
+            } else if (error != null && operator == SpiceDbAuthorize.Operator.AND) {
+              result.completeExceptionally(error);
+            } else {
+              if (error != null) {
+                failure.compareAndSet(null, error);
+              }
+              if (remaining.decrementAndGet() == 0) {
+                if (failure.get() != null) {
+                  result.completeExceptionally(failure.get());
+                } else {
+                  result.complete(!decisive);
+                }
+              }
+            }
+          });
+    }
+    result.whenComplete((allowed, error) -> checks.forEach(check -> check.cancel(true)));
+    return result;
+  }
+}
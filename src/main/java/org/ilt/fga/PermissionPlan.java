@@ -0,0 +1,177 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.ExpressionParser;
+
+/**
+ * Compiled form of a single {@link SpiceDbAuthorize} permission string. The permission is validated
+ * and split once, and the resource and subject ids are kept as ready-to-evaluate resolvers. The
+ * reference messages of recurring ids are reused, so a typical check allocates only the request.
+ */
+public class PermissionPlan {
+
+  private static final Pattern PERMISSION_PATTERN =
+      Pattern.compile(SpiceDbAuthorizeAspect.PERMISSION_VALIDATION_REGEX);
+
+  private static final Pattern ACCESSOR_PATTERN =
+      Pattern.compile("^([A-Za-z_$][\\w$]*)(?:\\.([A-Za-z_$][\\w$]*))?$");
+  private static final Pattern VARIABLE_PATTERN = Pattern.compile("^([A-Za-z_$][\\w$]*)(.*)$");
+
+  private final String objectType;
+  private final ValueResolver objectId;
+  private final String permission;
+  private final String subjectType;
+  private final ValueResolver subjectId;
+  private final ReferenceInterner<ObjectReference> objects;
+  private final ReferenceInterner<SubjectReference> subjects;
+
+  PermissionPlan(
+      String objectType,
+      ValueResolver objectId,
+      String permission,
+      String subjectType,
+      ValueResolver subjectId) {
+    this.objectType = objectType;
+    this.objectId = objectId;
+    this.permission = permission;
+    this.subjectType = subjectType;
+    this.subjectId = subjectId;
+    this.objects = ReferenceInterner.objects(objectType, ReferenceInterner.DEFAULT_MAXIMUM_SIZE);
+    this.subjects = ReferenceInterner.subjects(subjectType, ReferenceInterner.DEFAULT_MAXIMUM_SIZE);
+  }
+
+  public static PermissionPlan compile(
+      String permissionString,
+      ParameterBinding binding,
+      ExpressionParser parser,
+      EvaluationContext context) {
+    return compile(permissionString, binding, parser, context, body -> null);
+  }
+
+  /**
+   * @param precompiled returns a resolver generated ahead of time for an expression body, or
+   *     {@code null} to compile the expression at runtime
+   */
+  public static PermissionPlan compile(
+      String permissionString,
+      ParameterBinding binding,
+      ExpressionParser parser,
+      EvaluationContext context,
+      Function<String, ValueResolver> precompiled) {
+    if (!PERMISSION_PATTERN.matcher(permissionString).matches()) {
+      throw new UnauthorizedException("Invalid permission format");
+    }
+
+    String[] parts = permissionString.split("#|@");
+    if (parts.length != 3) {
+      throw new UnauthorizedException("Invalid permission format");
+    }
+
+    String[] object = parts[0].split(":");
+    String[] subject = parts[2].split(":");
+    return new PermissionPlan(
+        object[0],
+        compileExpression(object[1], binding, parser, context, precompiled),
+        parts[1],
+        subject[0],
+        compileExpression(subject[1], binding, parser, context, precompiled));
+  }
+
+  static ValueResolver compileExpression(
+      String expression,
+      ParameterBinding binding,
+      ExpressionParser parser,
+      EvaluationContext context) {
+    return compileExpression(expression, binding, parser, context, body -> null);
+  }
+
+  static ValueResolver compileExpression(
+      String expression,
+      ParameterBinding binding,
+      ExpressionParser parser,
+      EvaluationContext context,
+      Function<String, ValueResolver> precompiled) {
+    if (!expression.startsWith("{") || !expression.endsWith("}")) {
+      return ValueResolver.literal(expression);
+    }
+    String body = expression.substring(1, expression.length() - 1);
+    ValueResolver generated = precompiled.apply(body);
+    if (generated != null) {
+      return generated;
+    }
+
+    Matcher accessor = ACCESSOR_PATTERN.matcher(body);
+    if (accessor.matches()) {
+      int index = binding.indexOf(accessor.group(1));
+      if (index >= 0) {
+        ValueResolver resolver =
+            AccessorValueResolver.of(body, index, binding.typeAt(index), accessor.group(2));
+        if (resolver != null) {
+          return resolver;
+        }
+      }
+    }
+
+    // Parameters are addressed as indexes into the argument array, which is the evaluation root.
+    String spel = "#" + body;
+    Matcher variable = VARIABLE_PATTERN.matcher(body);
+    if (variable.matches() && binding.indexOf(variable.group(1)) >= 0) {
+      spel = "[" + binding.indexOf(variable.group(1)) + "]" + variable.group(2);
+    }
+    try {
+      return new SpelValueResolver(parser.parseExpression(spel), context);
+    } catch (Exception e) {
+      throw new FgaAuthorizationException("Error parsing expression: " + body, e);
+    }
+  }
+
+  public CheckPermissionRequest buildRequest(Object[] args) {
+    return requestBuilder(args).build();
+  }
+
+  public CheckPermissionRequest buildRequest(Object[] args, Consistency consistency) {
+    return requestBuilder(args).setConsistency(consistency).build();
+  }
+
+  private CheckPermissionRequest.Builder requestBuilder(Object[] args) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(buildResource(args))
+        .setPermission(permission)
+        .setSubject(buildSubject(args));
+  }
+
+  public ObjectReference buildResource(Object[] args) {
+    return objects.get(resolveObjectId(args));
+  }
+
+  public SubjectReference buildSubject(Object[] args) {
+    return subjects.get(resolveSubjectId(args));
+  }
+
+  public String getObjectType() {
+    return objectType;
+  }
+
+  public String resolveObjectId(Object[] args) {
+    return objectId.resolve(args);
+  }
+
+  public String getPermission() {
+    return permission;
+  }
+
+  public String getSubjectType() {
+    return subjectType;
+  }
+
+  public String resolveSubjectId(Object[] args) {
+    return subjectId.resolve(args);
+  }
+}
@@ -0,0 +1,52 @@
+package org.ilt.fga;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactor adapters for {@link SpiceDbAuthorizeAspect} and {@link AuthorizedResources}. The check
+ * starts on subscription and the annotated method is only invoked once it has allowed access. The
+ * {@link SpiceDbRouting} key and {@link ZedTokenContext} token bound when the publisher is
+ * assembled are bound again wherever it is subscribed to. Kept separate so that reactor-core is
+ * only loaded when a reactive type is actually used.
+ */
+final class ReactorAuthorization {
+
+  private ReactorAuthorization() {}
+
+  static Mono<?> mono(
+      Supplier<CompletableFuture<Boolean>> check, Function<Boolean, Object> proceed) {
+    return Mono.fromFuture(bind(check))
+        .flatMap(
+            allowed -> {
+              Mono<?> result = (Mono<?>) proceed.apply(allowed);
+              return result != null ? result : Mono.empty();
+            });
+  }
+
+  static Flux<?> flux(
+      Supplier<CompletableFuture<Boolean>> check, Function<Boolean, Object> proceed) {
+    return Mono.fromFuture(bind(check))
+        .flatMapMany(
+            allowed -> {
+              Flux<?> result = (Flux<?>) proceed.apply(allowed);
+              return result != null ? result : Flux.empty();
+            });
+  }
+
+  /** Pulls the blocking stream on demand, off the subscriber's thread, and closes it when done. */
+  static <T> Flux<T> stream(Supplier<Stream<T>> stream) {
+    Supplier<Stream<T>> bound = bind(stream);
+    return Flux.using(bound::get, Flux::fromStream, Stream::close)
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+
+  private static <T> Supplier<T> bind(Supplier<T> supplier) {
+    return ZedTokenContext.bind(SpiceDbRouting.bind(supplier));
+  }
+}
@@ -0,0 +1,52 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.util.function.Function;
+
+/**
+ * Reuses the reference messages of frequently checked ids of one object type. A hit costs a map
+ * lookup on the id string, whose hash is cached, instead of a builder and a message, and the reused
+ * message keeps its memoized hash code for the request maps further down the checker chain. The
+ * cache is size-bounded and keeps the ids seen most often.
+ */
+final class ReferenceInterner<T> {
+
+  static final int DEFAULT_MAXIMUM_SIZE = 1024;
+
+  private final Function<String, T> factory;
+  private final Cache<String, T> references;
+
+  private ReferenceInterner(Function<String, T> factory, int maximumSize) {
+    this.factory = factory;
+    this.references = Caffeine.newBuilder().maximumSize(maximumSize).build();
+  }
+
+  /** Interns the resource references of {@code objectType}. */
+  static ReferenceInterner<ObjectReference> objects(String objectType, int maximumSize) {
+    return new ReferenceInterner<>(
+        id -> ObjectReference.newBuilder().setObjectType(objectType).setObjectId(id).build(),
+        maximumSize);
+  }
+
+  /** Interns the subject references of {@code objectType}. */
+  static ReferenceInterner<SubjectReference> subjects(String objectType, int maximumSize) {
+    return new ReferenceInterner<>(
+        id ->
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType(objectType).setObjectId(id))
+                .build(),
+        maximumSize);
+  }
+
+  T get(String id) {
+    T reference = references.getIfPresent(id);
+    if (reference == null) {
+      reference = factory.apply(id);
+      references.put(id, reference);
+    }
+    return reference;
+  }
+}
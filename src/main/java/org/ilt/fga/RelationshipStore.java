@@ -0,0 +1,125 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.SubjectReference;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Relationships indexed by resource and relation, and resource ids indexed by type, for local
+ * evaluation. Every change advances a revision that stands in for a ZedToken.
+ */
+final class RelationshipStore {
+
+  /** {@code type:id#relation@type:id} with an optional {@code #relation} on the subject. */
+  private static final Pattern RELATIONSHIP =
+      Pattern.compile(
+          "^([\\w/]+):([^#@\\s]+)#(\\w+)@([\\w/]+):([^#@\\s]+)(?:#(\\w+|\\.\\.\\.))?$");
+
+  private final Map<String, Set<Subject>> subjects = new ConcurrentHashMap<>();
+  private final Map<String, NavigableSet<String>> resourceIds = new ConcurrentHashMap<>();
+  private final AtomicLong revision = new AtomicLong();
+
+  /** A subject of a relationship; {@code relation} is empty for a plain object. */
+  record Subject(String type, String id, String relation) {
+
+    static final String WILDCARD = "*";
+  }
+
+  /**
+   * Parses relationships in the {@code zed} text form, one per line. Blank lines and lines starting
+   * with {@code //} are skipped.
+   */
+  static RelationshipStore parse(String relationships) {
+    RelationshipStore store = new RelationshipStore();
+    int lineNumber = 0;
+    for (String line : relationships.split("\\R")) {
+      lineNumber++;
+      String trimmed = line.trim();
+      if (trimmed.isEmpty() || trimmed.startsWith("//")) {
+        continue;
+      }
+      Matcher matcher = RELATIONSHIP.matcher(trimmed);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException(
+            "Invalid relationship on line " + lineNumber + ": " + trimmed);
+      }
+      String subjectRelation = matcher.group(6);
+      store.add(
+          matcher.group(1),
+          matcher.group(2),
+          matcher.group(3),
+          new Subject(
+              matcher.group(4),
+              matcher.group(5),
+              subjectRelation == null || "...".equals(subjectRelation) ? "" : subjectRelation));
+    }
+    return store;
+  }
+
+  void write(Relationship relationship) {
+    ObjectReference resource = relationship.getResource();
+    add(
+        resource.getObjectType(),
+        resource.getObjectId(),
+        relationship.getRelation(),
+        subject(relationship.getSubject()));
+  }
+
+  void delete(Relationship relationship) {
+    ObjectReference resource = relationship.getResource();
+    Set<Subject> current =
+        subjects.get(
+            key(resource.getObjectType(), resource.getObjectId(), relationship.getRelation()));
+    if (current != null && current.remove(subject(relationship.getSubject()))) {
+      revision.incrementAndGet();
+    }
+  }
+
+  private void add(String type, String id, String relation, Subject subject) {
+    subjects
+        .computeIfAbsent(key(type, id, relation), k -> ConcurrentHashMap.newKeySet())
+        .add(subject);
+    ids(type).add(id);
+    if (!Subject.WILDCARD.equals(subject.id())) {
+      ids(subject.type()).add(subject.id());
+    }
+    revision.incrementAndGet();
+  }
+
+  private NavigableSet<String> ids(String type) {
+    return resourceIds.computeIfAbsent(type, k -> new ConcurrentSkipListSet<>());
+  }
+
+  Set<Subject> subjects(String type, String id, String relation) {
+    return subjects.getOrDefault(key(type, id, relation), Set.of());
+  }
+
+  /** Every id of {@code type} that appears in a relationship, in order. */
+  Set<String> resourceIds(String type) {
+    NavigableSet<String> ids = resourceIds.get(type);
+    return ids != null ? ids : Set.of();
+  }
+
+  long revision() {
+    return revision.get();
+  }
+
+  static Subject subject(SubjectReference subject) {
+    return new Subject(
+        subject.getObject().getObjectType(),
+        subject.getObject().getObjectId(),
+        subject.getOptionalRelation());
+  }
+
+  private static String key(String type, String id, String relation) {
+    return type + ':' + id + '#' + relation;
+  }
+}
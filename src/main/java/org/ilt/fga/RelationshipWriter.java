@@ -0,0 +1,344 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.Precondition;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.RelationshipUpdate;
+import com.authzed.api.v1.WriteRelationshipsRequest;
+import com.authzed.api.v1.WriteRelationshipsResponse;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Collects relationship writes from many threads and sends them as few {@code WriteRelationships}
+ * RPCs, completing each caller's future with the ZedToken its write was applied at. A batch is sent
+ * when the window elapses or when it holds the maximum number of updates, whichever comes first.
+ * The token is also recorded as {@link ZedTokenContext#written} in the context of the thread that
+ * made the write, before its future completes.
+ *
+ * <p>Each {@link #write(List, List)} call is an atomic unit: its updates and preconditions always
+ * travel in the same request. Units without preconditions are merged into one request as long as
+ * they touch distinct relationships; when a merged request is rejected, for example because a
+ * relationship to create already exists, its units are retried one request each so that only the
+ * offending unit fails. A unit with preconditions is always sent in a request of its own, after
+ * everything queued before it, since SpiceDB evaluates preconditions against the state before the
+ * whole request. Batches are sent in order on a single thread, so writes queued by one thread are
+ * applied in the order they were made.
+ *
+ * <p>With transactional writes enabled, writes made inside a Spring-managed transaction are queued
+ * only once it commits, and their futures are cancelled if it rolls back.
+ */
+public class RelationshipWriter implements AutoCloseable {
+
+  private static final String TRANSACTION_SYNCHRONIZATION_MANAGER =
+      "org.springframework.transaction.support.TransactionSynchronizationManager";
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final PermissionDecisionCache decisionCache;
+  private final long windowNanos;
+  private final int maxBatchSize;
+  private final boolean transactional;
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService sender;
+  private final Object lock = new Object();
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder updates = new LongAdder();
+  private List<Pending> batch = new ArrayList<>();
+  private int batchUpdates;
+  private boolean closed;
+
+  /**
+   * @param decisionCache whose decisions of written resources are invalidated after every
+   *     successful write, may be {@code null}
+   * @param transactional whether writes inside a transaction wait for it to commit
+   */
+  public RelationshipWriter(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      PermissionDecisionCache decisionCache,
+      Duration window,
+      int maxBatchSize,
+      boolean transactional) {
+    this.permissionsService = permissionsService;
+    this.decisionCache = decisionCache;
+    this.windowNanos = window.toNanos();
+    this.maxBatchSize = maxBatchSize;
+    this.transactional =
+        transactional
+            && ClassUtils.isPresent(
+                TRANSACTION_SYNCHRONIZATION_MANAGER, RelationshipWriter.class.getClassLoader());
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(daemonThread("spicedb-write-timer"));
+    this.sender = Executors.newSingleThreadExecutor(daemonThread("spicedb-write"));
+  }
+
+  public CompletableFuture<ZedToken> create(Relationship relationship) {
+    return write(RelationshipUpdate.Operation.OPERATION_CREATE, relationship);
+  }
+
+  public CompletableFuture<ZedToken> touch(Relationship relationship) {
+    return write(RelationshipUpdate.Operation.OPERATION_TOUCH, relationship);
+  }
+
+  public CompletableFuture<ZedToken> delete(Relationship relationship) {
+    return write(RelationshipUpdate.Operation.OPERATION_DELETE, relationship);
+  }
+
+  private CompletableFuture<ZedToken> write(
+      RelationshipUpdate.Operation operation, Relationship relationship) {
+    return write(
+        List.of(
+            RelationshipUpdate.newBuilder()
+                .setOperation(operation)
+                .setRelationship(relationship)
+                .build()),
+        List.of());
+  }
+
+  /**
+   * Queues {@code updates} to be applied atomically, only if every precondition holds.
+   *
+   * @return completes with the token the updates were written at, or exceptionally with the
+   *     failure of their request
+   */
+  public CompletableFuture<ZedToken> write(
+      List<RelationshipUpdate> updates, List<Precondition> preconditions) {
+    Pending pending =
+        new Pending(
+            List.copyOf(updates),
+            List.copyOf(preconditions),
+            SpiceDbRouting.get(),
+            ZedTokenContext.writtenLater(),
+            new CompletableFuture<>());
+    if (transactional && TransactionalWrites.isActive()) {
+      TransactionalWrites.afterCommit(
+          () -> enqueue(pending), () -> pending.future().cancel(false));
+    } else {
+      enqueue(pending);
+    }
+    return pending.future();
+  }
+
+  private void enqueue(Pending pending) {
+    List<Pending> full = null;
+    synchronized (lock) {
+      if (closed) {
+        pending.future().completeExceptionally(
+            new FgaAuthorizationException("Relationship writer is closed"));
+        return;
+      }
+      batch.add(pending);
+      batchUpdates += pending.updates().size();
+      if (batch.size() == 1) {
+        scheduler.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+      }
+      if (batchUpdates >= maxBatchSize) {
+        full = takeBatch();
+      }
+    }
+    if (full != null) {
+      List<Pending> toSend = full;
+      sender.execute(() -> send(toSend));
+    }
+  }
+
+  /** Sends whatever is queued without waiting for the window to elapse. */
+  public void flush() {
+    List<Pending> toSend;
+    synchronized (lock) {
+      if (batch.isEmpty()) {
+        return;
+      }
+      toSend = takeBatch();
+    }
+    sender.execute(() -> send(toSend));
+  }
+
+  private List<Pending> takeBatch() {
+    List<Pending> taken = batch;
+    batch = new ArrayList<>();
+    batchUpdates = 0;
+    return taken;
+  }
+
+  public long requestCount() {
+    return requests.sum();
+  }
+
+  public long updateCount() {
+    return updates.sum();
+  }
+
+  /**
+   * Stops accepting writes, sends the queued ones and waits a few seconds for every batch to be
+   * sent. Writes still unsent by then fail.
+   */
+  @Override
+  public void close() {
+    List<Pending> queued;
+    synchronized (lock) {
+      closed = true;
+      queued = takeBatch();
+    }
+    scheduler.shutdownNow();
+    if (!queued.isEmpty()) {
+      sender.execute(() -> send(queued));
+    }
+    sender.shutdown();
+    try {
+      if (!sender.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        // interrupts the blocking call, which fails its writes
+        sender.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      sender.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void send(List<Pending> pending) {
+    List<Pending> group = new ArrayList<>();
+    Set<String> relationships = new HashSet<>();
+    int groupUpdates = 0;
+    for (Pending p : pending) {
+      if (!p.preconditions().isEmpty()) {
+        if (!group.isEmpty()) {
+          sendRouted(group);
+          group = new ArrayList<>();
+          relationships.clear();
+          groupUpdates = 0;
+        }
+        sendRouted(List.of(p));
+        continue;
+      }
+      // SpiceDB rejects a request that updates the same relationship twice, and writes routed to
+      // different clusters cannot share a request
+      if (!group.isEmpty()
+          && (groupUpdates + p.updates().size() > maxBatchSize
+              || overlaps(relationships, p)
+              || !Objects.equals(group.get(0).routingKey(), p.routingKey()))) {
+        sendRouted(group);
+        group = new ArrayList<>();
+        relationships.clear();
+        groupUpdates = 0;
+      }
+      for (RelationshipUpdate update : p.updates()) {
+        relationships.add(key(update.getRelationship()));
+      }
+      group.add(p);
+      groupUpdates += p.updates().size();
+    }
+    if (!group.isEmpty()) {
+      sendRouted(group);
+    }
+  }
+
+  private void sendRouted(List<Pending> group) {
+    SpiceDbRouting.with(
+        group.get(0).routingKey(),
+        () -> {
+          sendGroup(group);
+          return null;
+        });
+  }
+
+  private static boolean overlaps(Set<String> relationships, Pending pending) {
+    for (RelationshipUpdate update : pending.updates()) {
+      if (relationships.contains(key(update.getRelationship()))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void sendGroup(List<Pending> group) {
+    WriteRelationshipsRequest.Builder request = WriteRelationshipsRequest.newBuilder();
+    for (Pending p : group) {
+      request.addAllUpdates(p.updates()).addAllOptionalPreconditions(p.preconditions());
+    }
+
+    WriteRelationshipsResponse response;
+    try {
+      response = permissionsService.writeRelationships(request.build());
+    } catch (RuntimeException e) {
+      if (group.size() > 1 && isCausedByContent(e)) {
+        for (Pending p : group) {
+          sendGroup(List.of(p));
+        }
+      } else {
+        group.forEach(p -> p.future().completeExceptionally(e));
+      }
+      return;
+    }
+
+    requests.increment();
+    updates.add(request.getUpdatesCount());
+    ZedToken writtenAt = response.getWrittenAt();
+    if (decisionCache != null) {
+      Set<ObjectReference> resources = new LinkedHashSet<>();
+      for (RelationshipUpdate update : request.getUpdatesList()) {
+        resources.add(update.getRelationship().getResource());
+      }
+      decisionCache.invalidate(writtenAt, resources);
+    }
+    for (Pending p : group) {
+      p.written().accept(writtenAt);
+      p.future().complete(writtenAt);
+    }
+  }
+
+  /** Whether the request was rejected for what it contains rather than failing to be served. */
+  private static boolean isCausedByContent(RuntimeException e) {
+    Status.Code code = Status.fromThrowable(e).getCode();
+    return code == Status.Code.FAILED_PRECONDITION
+        || code == Status.Code.ALREADY_EXISTS
+        || code == Status.Code.INVALID_ARGUMENT;
+  }
+
+  private static String key(Relationship relationship) {
+    return relationship.getResource().getObjectType()
+        + ':'
+        + relationship.getResource().getObjectId()
+        + '#'
+        + relationship.getRelation()
+        + '@'
+        + relationship.getSubject().getObject().getObjectType()
+        + ':'
+        + relationship.getSubject().getObject().getObjectId()
+        + '#'
+        + relationship.getSubject().getOptionalRelation();
+  }
+
+  private static ThreadFactory daemonThread(String name) {
+    return runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private record Pending(
+      List<RelationshipUpdate> updates,
+      List<Precondition> preconditions,
+      String routingKey,
+      Consumer<ZedToken> written,
+      CompletableFuture<ZedToken> future) {}
+}
@@ -0,0 +1,84 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Memoizes check results for the lifetime of the current web request, so nested calls that check
+ * the same tuple under the same {@link SpiceDbRouting} key only pay for it once. Outside of a
+ * request, and for fully consistent checks, the call goes straight to the delegate.
+ */
+public class RequestScopedPermissionChecker implements PermissionChecker {
+
+  static final String MEMO_ATTRIBUTE = RequestScopedPermissionChecker.class.getName() + ".MEMO";
+
+  private final PermissionChecker delegate;
+
+  public RequestScopedPermissionChecker(PermissionChecker delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public CheckPermissionResponse check(CheckPermissionRequest request) {
+    Map<MemoKey, CheckPermissionResponse> memo = currentMemo();
+    if (memo == null
+        || request.getConsistency().getRequirementCase()
+            == Consistency.RequirementCase.FULLY_CONSISTENT) {
+      return delegate.check(request);
+    }
+
+    MemoKey key = new MemoKey(request, SpiceDbRouting.get());
+    CheckPermissionResponse response = memo.get(key);
+    if (response == null) {
+      response = delegate.check(request);
+      memo.put(key, response);
+    }
+    return response;
+  }
+
+  @Override
+  public CompletableFuture<CheckPermissionResponse> checkAsync(CheckPermissionRequest request) {
+    Map<MemoKey, CheckPermissionResponse> memo = currentMemo();
+    if (memo == null
+        || request.getConsistency().getRequirementCase()
+            == Consistency.RequirementCase.FULLY_CONSISTENT) {
+      return delegate.checkAsync(request);
+    }
+
+    MemoKey key = new MemoKey(request, SpiceDbRouting.get());
+    CheckPermissionResponse response = memo.get(key);
+    if (response != null) {
+      return CompletableFuture.completedFuture(response);
+    }
+    CompletableFuture<CheckPermissionResponse> check = delegate.checkAsync(request);
+    return PermissionDecisions.forwardCancel(
+        check.thenApply(
+            result -> {
+              memo.put(key, result);
+              return result;
+            }),
+        check);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<MemoKey, CheckPermissionResponse> currentMemo() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return null;
+    }
+    Object memo = attributes.getAttribute(MEMO_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (memo == null) {
+      memo = new ConcurrentHashMap<MemoKey, CheckPermissionResponse>();
+      attributes.setAttribute(MEMO_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+    }
+    return (Map<MemoKey, CheckPermissionResponse>) memo;
+  }
+
+  private record MemoKey(CheckPermissionRequest request, String routingKey) {}
+}
@@ -0,0 +1,37 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.SubjectReference;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * Resolves the subject once per web request and reuses it for every check made while serving it.
+ * Outside of a request, and while no subject is known, every call goes to the delegate.
+ */
+public class RequestScopedSubjectResolver implements SubjectResolver {
+
+  static final String SUBJECT_ATTRIBUTE = RequestScopedSubjectResolver.class.getName() + ".SUBJECT";
+
+  private final SubjectResolver delegate;
+
+  public RequestScopedSubjectResolver(SubjectResolver delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public SubjectReference resolve() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+    if (attributes == null) {
+      return delegate.resolve();
+    }
+    Object cached = attributes.getAttribute(SUBJECT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (cached != null) {
+      return (SubjectReference) cached;
+    }
+    SubjectReference subject = delegate.resolve();
+    if (subject != null) {
+      attributes.setAttribute(SUBJECT_ATTRIBUTE, subject, RequestAttributes.SCOPE_REQUEST);
+    }
+    return subject;
+  }
+}
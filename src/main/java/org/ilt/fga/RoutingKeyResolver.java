@@ -0,0 +1,13 @@
+package org.ilt.fga;
+
+/**
+ * Supplies the {@link SpiceDbRouting} key of the current caller, such as its tenant, from what the
+ * server knows about it rather than from anything the client sends. {@link SpiceDbRoutingFilter}
+ * binds it for the whole web request.
+ */
+@FunctionalInterface
+public interface RoutingKeyResolver {
+
+  /** The routing key of the current caller, or {@code null} when there is none. */
+  String resolve();
+}
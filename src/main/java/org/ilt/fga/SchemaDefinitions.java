@@ -0,0 +1,64 @@
+package org.ilt.fga;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The object definitions of a SpiceDB schema with the names of their relations and permissions,
+ * read from the schema text just closely enough to validate annotations against.
+ */
+final class SchemaDefinitions {
+
+  private static final Pattern DEFINITION = Pattern.compile("\\bdefinition\\s+([\\w/]+)\\s*\\{");
+  private static final Pattern MEMBER = Pattern.compile("\\b(?:relation|permission)\\s+(\\w+)");
+  private static final Pattern COMMENT = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+
+  private final Map<String, Set<String>> definitions;
+
+  private SchemaDefinitions(Map<String, Set<String>> definitions) {
+    this.definitions = definitions;
+  }
+
+  static SchemaDefinitions parse(String schemaText) {
+    String schema = COMMENT.matcher(schemaText).replaceAll("");
+    Map<String, Set<String>> definitions = new HashMap<>();
+    Matcher definition = DEFINITION.matcher(schema);
+    while (definition.find()) {
+      int end = closingBrace(schema, definition.end());
+      Set<String> members = new HashSet<>();
+      Matcher member = MEMBER.matcher(schema.substring(definition.end(), end));
+      while (member.find()) {
+        members.add(member.group(1));
+      }
+      definitions.put(definition.group(1), members);
+    }
+    return new SchemaDefinitions(definitions);
+  }
+
+  private static int closingBrace(String schema, int from) {
+    int depth = 1;
+    for (int i = from; i < schema.length(); i++) {
+      char c = schema.charAt(i);
+      if (c == '{') {
+        depth++;
+      } else if (c == '}' && --depth == 0) {
+        return i;
+      }
+    }
+    return schema.length();
+  }
+
+  boolean hasDefinition(String type) {
+    return definitions.containsKey(type);
+  }
+
+  /** Whether {@code type} defines a relation or permission called {@code name}. */
+  boolean hasMember(String type, String name) {
+    Set<String> members = definitions.get(type);
+    return members != null && members.contains(name);
+  }
+}
@@ -0,0 +1,48 @@
+package org.ilt.fga;
+
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Resolves the routing key from a claim of Spring Security's current {@link Authentication}, such
+ * as the tenant of a JWT. Anonymous and unauthenticated callers, and principals without the claim,
+ * have no key.
+ */
+public class SecurityContextRoutingKeyResolver implements RoutingKeyResolver {
+
+  private static final boolean CLAIMS_PRESENT =
+      ClassUtils.isPresent(
+          "org.springframework.security.oauth2.core.ClaimAccessor",
+          SecurityContextRoutingKeyResolver.class.getClassLoader());
+
+  private final String claim;
+
+  /** @param claim the claim holding the routing key, e.g. {@code tenant} */
+  public SecurityContextRoutingKeyResolver(String claim) {
+    this.claim = claim;
+  }
+
+  @Override
+  public String resolve() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (!CLAIMS_PRESENT
+        || authentication == null
+        || !authentication.isAuthenticated()
+        || authentication instanceof AnonymousAuthenticationToken) {
+      return null;
+    }
+    String key = Claims.get(authentication.getPrincipal(), claim);
+    return key == null || key.isBlank() ? null : key;
+  }
+
+  /** Kept separate so that spring-security-oauth2-core is only loaded when present. */
+  private static final class Claims {
+
+    static String get(Object principal, String claim) {
+      return principal instanceof ClaimAccessor claims ? claims.getClaimAsString(claim) : null;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Resolves the subject from Spring Security's current {@link Authentication}. The id is read from
+ * the configured claim when the principal carries claims, such as a JWT or an OIDC user, and is the
+ * authentication's name otherwise. Anonymous and unauthenticated callers have no subject.
+ */
+public class SecurityContextSubjectResolver implements SubjectResolver {
+
+  private static final boolean CLAIMS_PRESENT =
+      ClassUtils.isPresent(
+          "org.springframework.security.oauth2.core.ClaimAccessor",
+          SecurityContextSubjectResolver.class.getClassLoader());
+
+  private final String subjectType;
+  private final String claim;
+
+  /**
+   * @param subjectType the SpiceDB object type of resolved subjects, e.g. {@code user}
+   * @param claim the claim holding the subject id, e.g. {@code sub}
+   */
+  public SecurityContextSubjectResolver(String subjectType, String claim) {
+    this.subjectType = subjectType;
+    this.claim = claim;
+  }
+
+  @Override
+  public SubjectReference resolve() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null
+        || !authentication.isAuthenticated()
+        || authentication instanceof AnonymousAuthenticationToken) {
+      return null;
+    }
+    String id = CLAIMS_PRESENT ? Claims.get(authentication.getPrincipal(), claim) : null;
+    if (id == null) {
+      id = authentication.getName();
+    }
+    if (id == null || id.isEmpty()) {
+      return null;
+    }
+    return SubjectReference.newBuilder()
+        .setObject(ObjectReference.newBuilder().setObjectType(subjectType).setObjectId(id))
+        .build();
+  }
+
+  /** Kept separate so that spring-security-oauth2-core is only loaded when present. */
+  private static final class Claims {
+
+    static String get(Object principal, String claim) {
+      return principal instanceof ClaimAccessor claims ? claims.getClaimAsString(claim) : null;
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.ilt.fga;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+
+/**
+ * Evaluates a pre-parsed SpEL expression against the method arguments. Parameters are rewritten to
+ * indexes into the argument array at compile time, so a single shared context serves every call.
+ */
+public class SpelValueResolver implements ValueResolver {
+
+  private final Expression expression;
+  private final EvaluationContext context;
+
+  public SpelValueResolver(Expression expression, EvaluationContext context) {
+    this.expression = expression;
+    this.context = context;
+  }
+
+  @Override
+  public String resolve(Object[] args) {
+    Object value;
+    try {
+      value = expression.getValue(context, args);
+    } catch (Exception e) {
+      throw new FgaAuthorizationException(
+          "Error resolving expression: " + expression.getExpressionString(), e);
+    }
+    if (value == null) {
+      throw new FgaAuthorizationException(
+          "Unable to resolve expression: " + expression.getExpressionString());
+    }
+    return value.toString();
+  }
+}
@@ -0,0 +1,78 @@
+package org.ilt.fga;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.ExecutableMode;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.ReflectionHints;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Registers the reflection the aspects need at runtime for beans with authorization annotations:
+ * the annotated methods, the types their expressions navigate, which are read through getters,
+ * fields or SpEL, and any resolvers generated by {@link SpiceDbAuthorizeProcessor}.
+ */
+public class SpiceDbAuthorizationAotProcessor implements BeanRegistrationAotProcessor {
+
+  private final BindingReflectionHintsRegistrar bindingRegistrar =
+      new BindingReflectionHintsRegistrar();
+
+  @Override
+  public BeanRegistrationAotContribution processAheadOfTime(RegisteredBean registeredBean) {
+    Class<?> beanClass = ClassUtils.getUserClass(registeredBean.getBeanClass());
+    Set<Method> methods = new LinkedHashSet<>();
+    ReflectionUtils.doWithMethods(
+        beanClass,
+        methods::add,
+        method ->
+            method.isAnnotationPresent(SpiceDbAuthorize.class)
+                || method.isAnnotationPresent(SpiceDbPostFilter.class)
+                || method.isAnnotationPresent(FgaAuthorize.class));
+    if (methods.isEmpty()) {
+      return null;
+    }
+    return (generationContext, beanRegistrationCode) ->
+        registerHints(generationContext.getRuntimeHints().reflection(), methods);
+  }
+
+  void registerHints(ReflectionHints hints, Set<Method> methods) {
+    Set<Class<?>> declaringClasses = new LinkedHashSet<>();
+    for (Method method : methods) {
+      hints.registerMethod(method, ExecutableMode.INVOKE);
+      declaringClasses.add(method.getDeclaringClass());
+      for (Class<?> type : method.getParameterTypes()) {
+        registerArgumentType(hints, type);
+      }
+      if (method.isAnnotationPresent(SpiceDbPostFilter.class)) {
+        Class<?> elementType = ResolvableType.forMethodReturnType(method).resolveGeneric(0);
+        if (elementType != null) {
+          registerArgumentType(hints, elementType);
+        }
+      }
+    }
+    for (Class<?> type : declaringClasses) {
+      String generated = type.getName().replace('$', '_') + GeneratedResolvers.CLASS_SUFFIX;
+      if (ClassUtils.isPresent(generated, type.getClassLoader())) {
+        hints.registerType(
+            ClassUtils.resolveClassName(generated, type.getClassLoader()),
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+      }
+    }
+  }
+
+  private void registerArgumentType(ReflectionHints hints, Class<?> type) {
+    if (type.isPrimitive() || type.getName().startsWith("java.")) {
+      return;
+    }
+    // properties, recursively, for accessor resolvers; public methods for SpEL method calls
+    bindingRegistrar.registerReflectionHints(hints, type);
+    hints.registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS);
+  }
+}
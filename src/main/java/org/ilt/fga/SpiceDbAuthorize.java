@@ -8,5 +8,34 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(ElementType.METHOD)
 public @interface SpiceDbAuthorize {
-  String permission();
+  String permission() default "";
+
+  /** Further permissions to check alongside {@link #permission()}, combined by {@link #operator}. */
+  String[] permissions() default {};
+
+  Operator operator() default Operator.AND;
+
+  /** Consistency of the checks; {@code DEFAULT} uses {@code spicedb.consistency.mode}. */
+  ConsistencyMode consistency() default ConsistencyMode.DEFAULT;
+
+  /**
+   * Runs the method while its check is still in flight instead of after it, for methods without
+   * side effects. The result is returned only once the check allows it and is discarded otherwise.
+   * Methods returning {@code Mono} or {@code Flux} are always checked before being subscribed to.
+   */
+  boolean speculative() default false;
+
+  /**
+   * Key, such as a tenant or a region, selecting the SpiceDB cluster the checks go to when {@code
+   * spicedb.routing.enabled} is set; either a literal or an expression like {@code
+   * {document.tenantId}}. Empty keeps the key bound to the request, if any.
+   */
+  String routingKey() default "";
+
+  enum Operator {
+    /** Every permission must be granted. */
+    AND,
+    /** At least one permission must be granted. */
+    OR
+  }
 }
@@ -2,20 +2,22 @@ package org.ilt.fga;
 
 import com.authzed.api.v1.CheckPermissionRequest;
 import com.authzed.api.v1.CheckPermissionResponse;
-import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.Consistency;
 import com.authzed.api.v1.PermissionsServiceGrpc;
 import com.authzed.api.v1.SubjectReference;
-import java.lang.reflect.Method;
-import java.lang.reflect.Parameter;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
-import org.springframework.expression.ExpressionParser;
-import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 @Aspect
@@ -26,88 +28,297 @@ public class SpiceDbAuthorizeAspect {
       "^[\\w-]+:\\{[\\w.]+}#[\\w-]+@[\\w-]+:\\{[\\w.]+}$";
   //  private static final String PERMISSION_VALIDATION_REGEX =
   //      "^([^:#@]+):(#\\{[^}]+\\}|[^#@]+)#([^:#@]+)@([^:#@]+):(#\\{[^}]+\\}|[^#@]+)$";
-  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final PermissionChecker permissionChecker;
+  private final AuthorizationPlans plans;
+  private final ObservationRegistry observationRegistry;
+  private final DecisionAuditLog auditLog;
+  private final SubjectResolver subjectResolver;
 
+  @Autowired
   public SpiceDbAuthorizeAspect(
       PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService) {
-    this.permissionsService = permissionsService;
+    this(new GrpcPermissionChecker(permissionsService), new AuthorizationPlans());
+  }
+
+  public SpiceDbAuthorizeAspect(PermissionChecker permissionChecker, AuthorizationPlans plans) {
+    this(permissionChecker, plans, ObservationRegistry.NOOP);
+  }
+
+  public SpiceDbAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      AuthorizationPlans plans,
+      ObservationRegistry observationRegistry) {
+    this(permissionChecker, plans, observationRegistry, null);
+  }
+
+  /** @param auditLog receives every decision, may be {@code null} */
+  public SpiceDbAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      AuthorizationPlans plans,
+      ObservationRegistry observationRegistry,
+      DecisionAuditLog auditLog) {
+    this(permissionChecker, plans, observationRegistry, auditLog, null);
+  }
+
+  /**
+   * @param auditLog receives every decision, may be {@code null}
+   * @param subjectResolver supplies the {@code {subject}} expression variable, may be {@code null}
+   */
+  public SpiceDbAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      AuthorizationPlans plans,
+      ObservationRegistry observationRegistry,
+      DecisionAuditLog auditLog,
+      SubjectResolver subjectResolver) {
+    this.permissionChecker = permissionChecker;
+    this.plans = plans;
+    this.observationRegistry = observationRegistry;
+    this.auditLog = auditLog;
+    this.subjectResolver = subjectResolver;
   }
 
   @Around("@annotation(org.ilt.fga.SpiceDbAuthorize)")
   public Object authorize(ProceedingJoinPoint joinPoint) throws Throwable {
     MethodSignature signature = (MethodSignature) joinPoint.getSignature();
-    Method method = signature.getMethod();
-    SpiceDbAuthorize spiceDbAuthorize = method.getAnnotation(SpiceDbAuthorize.class);
-    String permission = spiceDbAuthorize.permission();
-    validatePermissionFormat(permission);
-    Object[] args = joinPoint.getArgs();
-
-    String[] parts = permission.split("#|@");
-    if (parts.length != 3) {
-      throw new UnauthorizedException("Invalid permission format");
-    }
-
-    String objectType = parts[0].split(":")[0];
-    String objectId = resolveExpression(parts[0].split(":")[1], method, args);
-    String action = parts[1];
-    String subjectType = parts[2].split(":")[0];
-    String subjectId = resolveExpression(parts[2].split(":")[1], method, args);
-
-    CheckPermissionRequest request =
-        CheckPermissionRequest.newBuilder()
-            .setResource(
-                ObjectReference.newBuilder().setObjectType(objectType).setObjectId(objectId))
-            .setPermission(action)
-            .setSubject(
-                SubjectReference.newBuilder()
-                    .setObject(
-                        ObjectReference.newBuilder()
-                            .setObjectType(subjectType)
-                            .setObjectId(subjectId)))
-            .build();
-
-    CheckPermissionResponse response = permissionsService.checkPermission(request);
-
-    if (response.getPermissionship()
-        != CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION) {
-      throw new UnauthorizedException("Access denied");
+    AuthorizationPlan plan = plans.get(signature.getMethod());
+    // resolved on the calling thread, where the security context is available
+    Object[] args = withSubject(plan, joinPoint.getArgs());
+
+    switch (plan.getReturnKind()) {
+      case COMPLETION_STAGE:
+        if (plan.isSpeculative()) {
+          return proceedSpeculativelyAsync(evaluateAsync(plan, args), joinPoint);
+        }
+        return evaluateAsync(plan, args).thenCompose(allowed -> proceedAsync(allowed, joinPoint));
+      case MONO:
+        return ReactorAuthorization.mono(
+            () -> evaluateAsync(plan, args), allowed -> proceedAfter(allowed, joinPoint));
+      case FLUX:
+        return ReactorAuthorization.flux(
+            () -> evaluateAsync(plan, args), allowed -> proceedAfter(allowed, joinPoint));
+      default:
+        if (plan.isSpeculative()) {
+          return proceedSpeculatively(evaluateAsync(plan, args), joinPoint);
+        }
+        requireAllowed(evaluate(plan, args));
+        return joinPoint.proceed();
     }
+  }
 
-    return joinPoint.proceed();
+  private Object[] withSubject(AuthorizationPlan plan, Object[] args) {
+    int index = plan.getSubjectIndex();
+    if (index < 0) {
+      return args;
+    }
+    Object[] extended = Arrays.copyOf(args, index + 1);
+    SubjectReference subject = subjectResolver != null ? subjectResolver.resolve() : null;
+    if (subject != null) {
+      extended[index] = subject.getObject().getObjectId();
+    }
+    return extended;
   }
 
-  private void validatePermissionFormat(String permission) {
-    Pattern pattern = Pattern.compile(PERMISSION_VALIDATION_REGEX);
-    Matcher matcher = pattern.matcher(permission);
-    if (!matcher.matches()) {
-      throw new UnauthorizedException("Invalid permission format");
+  private boolean evaluate(AuthorizationPlan plan, Object[] args) {
+    if (!plan.isSinglePermission()) {
+      return await(evaluateAsync(plan, args));
+    }
+
+    Observation observation =
+        AuthorizationObservations.authorize(
+            observationRegistry, plan.getMethod(), plan.getPermissionNames());
+    try (Observation.Scope scope = observation.openScope()) {
+      CheckPermissionRequest request = buildRequest(plan, args, observation);
+      String routingKey = plan.resolveRoutingKey(args);
+      long start = System.nanoTime();
+      CheckPermissionResponse response =
+          routingKey == null
+              ? permissionChecker.check(request)
+              : SpiceDbRouting.with(routingKey, () -> permissionChecker.check(request));
+      if (auditLog != null) {
+        auditLog.record(plan.getMethod(), request, response, System.nanoTime() - start);
+      }
+      boolean allowed = PermissionDecisions.isAllowed(response);
+      AuthorizationObservations.decided(observation, allowed);
+      return allowed;
+    } catch (RuntimeException e) {
+      AuthorizationObservations.failed(observation, e);
+      throw e;
+    } finally {
+      observation.stop();
     }
   }
 
-  private String resolveExpression(String expression, Method method, Object[] args) {
-    if (!expression.startsWith("{") || !expression.endsWith("}")) {
-      return expression;
+  /**
+   * Starts the checks of every permission in the plan concurrently and combines their results
+   * according to the plan's operator.
+   */
+  private CompletableFuture<Boolean> evaluateAsync(AuthorizationPlan plan, Object[] args) {
+    Observation observation =
+        AuthorizationObservations.authorize(
+            observationRegistry, plan.getMethod(), plan.getPermissionNames());
+    CompletableFuture<Boolean> decision;
+    try (Observation.Scope scope = observation.openScope()) {
+      String routingKey = plan.resolveRoutingKey(args);
+      if (plan.isSinglePermission()) {
+        decision =
+            check(plan, buildRequest(plan, args, observation), routingKey)
+                .thenApply(PermissionDecisions::isAllowed);
+      } else {
+        List<CheckPermissionRequest> requests = buildRequests(plan, args, observation);
+        List<CompletableFuture<CheckPermissionResponse>> checks =
+            new ArrayList<>(requests.size());
+        for (CheckPermissionRequest request : requests) {
+          checks.add(check(plan, request, routingKey));
+        }
+        decision = PermissionDecisions.combine(checks, plan.getOperator());
+      }
+    } catch (RuntimeException e) {
+      AuthorizationObservations.failed(observation, e);
+      observation.stop();
+      return CompletableFuture.failedFuture(e);
     }
-    StandardEvaluationContext context = new StandardEvaluationContext();
 
-    Parameter[] parameters = method.getParameters();
-    String[] parameterNames = new String[parameters.length];
-    for (int i = 0; i < parameters.length; i++) {
-      parameterNames[i] = parameters[i].getType().getSimpleName().toLowerCase();
-      context.setVariable(parameterNames[i], args[i]);
+    decision.whenComplete(
+        (allowed, error) -> {
+          if (error != null) {
+            AuthorizationObservations.failed(observation, error);
+          } else {
+            AuthorizationObservations.decided(observation, allowed);
+          }
+          observation.stop();
+        });
+    return decision;
+  }
+
+  private CompletableFuture<CheckPermissionResponse> check(
+      AuthorizationPlan plan, CheckPermissionRequest request, String routingKey) {
+    long start = System.nanoTime();
+    CompletableFuture<CheckPermissionResponse> check =
+        routingKey == null
+            ? permissionChecker.checkAsync(request)
+            : SpiceDbRouting.with(routingKey, () -> permissionChecker.checkAsync(request));
+    if (auditLog == null) {
+      return check;
+    }
+    return PermissionDecisions.forwardCancel(
+        check.whenComplete(
+            (response, error) -> {
+              if (response != null) {
+                auditLog.record(plan.getMethod(), request, response, System.nanoTime() - start);
+              }
+            }),
+        check);
+  }
+
+  private CheckPermissionRequest buildRequest(
+      AuthorizationPlan plan, Object[] args, Observation parent) {
+    Observation observation = AuthorizationObservations.resolve(observationRegistry, parent);
+    try {
+      return plan.getPermissions().get(0).buildRequest(args, plan.getConsistency().toConsistency());
+    } catch (RuntimeException e) {
+      observation.error(e);
+      throw e;
+    } finally {
+      observation.stop();
     }
+  }
 
-    ExpressionParser parser = new SpelExpressionParser();
+  private List<CheckPermissionRequest> buildRequests(
+      AuthorizationPlan plan, Object[] args, Observation parent) {
+    Observation observation = AuthorizationObservations.resolve(observationRegistry, parent);
+    try {
+      Consistency consistency = plan.getConsistency().toConsistency();
+      List<CheckPermissionRequest> requests = new ArrayList<>(plan.getPermissions().size());
+      for (PermissionPlan permission : plan.getPermissions()) {
+        requests.add(permission.buildRequest(args, consistency));
+      }
+      return requests;
+    } catch (RuntimeException e) {
+      observation.error(e);
+      throw e;
+    } finally {
+      observation.stop();
+    }
+  }
 
+  private static boolean await(CompletableFuture<Boolean> decision) {
     try {
-      expression = String.format("#%s", expression.replaceAll("\\{(.*)\\}$", "$1"));
-      Object value = parser.parseExpression(expression).getValue(context);
-      if (value == null) {
-        throw new FgaAuthorizationException("Unable to resolve expression: " + expression);
+      return decision.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
       }
-      return value.toString();
-    } catch (Exception e) {
-      throw new FgaAuthorizationException("Error resolving expression: " + expression, e);
+      throw e;
+    }
+  }
+
+  /**
+   * Invokes the annotated method while the check is in flight and hands back its outcome, result
+   * or exception, only once the check has allowed it.
+   */
+  private static Object proceedSpeculatively(
+      CompletableFuture<Boolean> decision, ProceedingJoinPoint joinPoint) throws Throwable {
+    if (decision.isDone()) {
+      requireAllowed(await(decision));
+      return joinPoint.proceed();
+    }
+    Object result = null;
+    Throwable failure = null;
+    try {
+      result = joinPoint.proceed();
+    } catch (Throwable e) {
+      failure = e;
+    }
+    requireAllowed(await(decision));
+    if (failure != null) {
+      throw failure;
+    }
+    return result;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static CompletionStage<Object> proceedSpeculativelyAsync(
+      CompletableFuture<Boolean> decision, ProceedingJoinPoint joinPoint) {
+    if (decision.isDone()) {
+      return decision.thenCompose(allowed -> proceedAsync(allowed, joinPoint));
+    }
+    CompletionStage<Object> result;
+    try {
+      result = (CompletionStage<Object>) joinPoint.proceed();
+    } catch (Throwable e) {
+      result = CompletableFuture.failedFuture(e);
+    }
+    CompletionStage<Object> outcome =
+        result != null ? result : CompletableFuture.completedFuture(null);
+    return decision.thenCompose(
+        allowed -> {
+          requireAllowed(allowed);
+          return outcome;
+        });
+  }
+
+  /** Invokes the annotated method once an asynchronous check has completed. */
+  private static Object proceedAfter(boolean allowed, ProceedingJoinPoint joinPoint) {
+    requireAllowed(allowed);
+    try {
+      return joinPoint.proceed();
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (Throwable e) {
+      throw new CompletionException(e);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static CompletionStage<Object> proceedAsync(
+      boolean allowed, ProceedingJoinPoint joinPoint) {
+    CompletionStage<Object> result = (CompletionStage<Object>) proceedAfter(allowed, joinPoint);
+    return result != null ? result : CompletableFuture.completedFuture(null);
+  }
+
+  private static void requireAllowed(boolean allowed) {
+    if (!allowed) {
+      throw new UnauthorizedException("Access denied");
     }
   }
 }
@@ -0,0 +1,315 @@
+package org.ilt.fga;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a {@link GeneratedResolvers} class next to every class with {@link SpiceDbAuthorize}
+ * methods, and reports malformed permission strings as compile errors. Register it with {@code
+ * annotationProcessor 'org.ilt:spicedb-spring-starter:<version>:processor'}; the runtime jar does
+ * not register it.
+ *
+ * <p>{@code {param}} and {@code {param.property...}} expressions are translated when every step is
+ * a public no-argument {@code get}/{@code is} method or a public field; anything else, e.g. method
+ * calls or SpEL operators, is left to the runtime resolvers.
+ */
+@SupportedAnnotationTypes("org.ilt.fga.SpiceDbAuthorize")
+public class SpiceDbAuthorizeProcessor extends AbstractProcessor {
+
+  private static final Pattern PERMISSION_PATTERN =
+      Pattern.compile(SpiceDbAuthorizeAspect.PERMISSION_VALIDATION_REGEX);
+  private static final Pattern PATH_PATTERN =
+      Pattern.compile("^[A-Za-z_$][\\w$]*(\\.[A-Za-z_$][\\w$]*)*$");
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+    Map<TypeElement, List<ExecutableElement>> methodsByType = new LinkedHashMap<>();
+    for (Element element : round.getElementsAnnotatedWith(SpiceDbAuthorize.class)) {
+      if (element.getKind() == ElementKind.METHOD) {
+        methodsByType
+            .computeIfAbsent((TypeElement) element.getEnclosingElement(), t -> new ArrayList<>())
+            .add((ExecutableElement) element);
+      }
+    }
+    methodsByType.forEach(this::generate);
+    return false;
+  }
+
+  private void generate(TypeElement type, List<ExecutableElement> methods) {
+    PackageElement pkg = processingEnv.getElementUtils().getPackageOf(type);
+    String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+    String className =
+        binaryName.substring(binaryName.lastIndexOf('.') + 1).replace('$', '_')
+            + GeneratedResolvers.CLASS_SUFFIX;
+
+    Map<String, String> cases = new LinkedHashMap<>();
+    for (ExecutableElement method : methods) {
+      SpiceDbAuthorize annotation = method.getAnnotation(SpiceDbAuthorize.class);
+      Set<String> permissions = new LinkedHashSet<>();
+      if (!annotation.permission().isEmpty()) {
+        permissions.add(annotation.permission());
+      }
+      permissions.addAll(List.of(annotation.permissions()));
+
+      for (String permission : permissions) {
+        if (!PERMISSION_PATTERN.matcher(permission).matches()) {
+          processingEnv
+              .getMessager()
+              .printMessage(
+                  Diagnostic.Kind.ERROR, "Invalid permission format: " + permission, method);
+          continue;
+        }
+        String[] parts = permission.split("#|@");
+        for (String reference : new String[] {parts[0], parts[2]}) {
+          String expression = reference.substring(reference.indexOf(':') + 1);
+          if (expression.startsWith("{") && expression.endsWith("}")) {
+            String body = expression.substring(1, expression.length() - 1);
+            String code = resolverCode(method, pkg, body);
+            if (code != null) {
+              cases.putIfAbsent(methodKey(method) + " " + body, code);
+            }
+          }
+        }
+      }
+    }
+
+    try (Writer writer =
+        processingEnv
+            .getFiler()
+            .createSourceFile(
+                pkg.isUnnamed() ? className : pkg.getQualifiedName() + "." + className, type)
+            .openWriter()) {
+      writer.write(source(pkg, className, cases));
+    } catch (IOException e) {
+      processingEnv
+          .getMessager()
+          .printMessage(Diagnostic.Kind.ERROR, "Unable to write " + className + ": " + e, type);
+    }
+  }
+
+  /** Returns the body of a resolver lambda for {@code path}, or {@code null} if unsupported. */
+  private String resolverCode(ExecutableElement method, PackageElement pkg, String path) {
+    if (!PATH_PATTERN.matcher(path).matches()) {
+      return null;
+    }
+    String[] segments = path.split("\\.");
+
+    // parameters are named after their type, the last one of a type wins, as in ParameterBinding
+    Map<String, Integer> indexes = new HashMap<>();
+    List<? extends VariableElement> parameters = method.getParameters();
+    for (int i = 0; i < parameters.size(); i++) {
+      String name = simpleName(parameters.get(i).asType());
+      if (name != null) {
+        indexes.put(name.toLowerCase(), i);
+      }
+    }
+    Integer index = indexes.get(segments[0]);
+    if (index == null) {
+      return null;
+    }
+
+    TypeMirror type = boxed(parameters.get(index).asType());
+    if (!isAccessible(type, pkg)) {
+      return null;
+    }
+    StringBuilder code = new StringBuilder();
+    String variable = "v0";
+    code.append(
+        String.format("          %s %s = (%1$s) args[%d];%n", typeName(type), variable, index));
+    for (int i = 1; i < segments.length; i++) {
+      code.append(nullCheck(variable, path));
+      Accessor accessor = accessor(type, segments[i], pkg);
+      if (accessor == null) {
+        return null;
+      }
+      type = accessor.type();
+      if (type.getKind().isPrimitive()) {
+        if (i != segments.length - 1) {
+          return null;
+        }
+        code.append(
+            String.format("          return String.valueOf(%s.%s);%n", variable, accessor.code()));
+        return code.toString();
+      }
+      if (!isAccessible(type, pkg)) {
+        return null;
+      }
+      String next = "v" + i;
+      code.append(
+          String.format(
+              "          %s %s = %s.%s;%n", typeName(type), next, variable, accessor.code()));
+      variable = next;
+    }
+    code.append(nullCheck(variable, path));
+    code.append(String.format("          return %s.toString();%n", variable));
+    return code.toString();
+  }
+
+  /** Java code reading a property, and the erased type it yields. */
+  private record Accessor(String code, TypeMirror type) {}
+
+  private Accessor accessor(TypeMirror type, String property, PackageElement pkg) {
+    if (!(type instanceof DeclaredType declared)) {
+      return null;
+    }
+    TypeElement element = (TypeElement) declared.asElement();
+    String suffix = Character.toUpperCase(property.charAt(0)) + property.substring(1);
+    List<? extends Element> members = processingEnv.getElementUtils().getAllMembers(element);
+    for (String name : new String[] {"get" + suffix, "is" + suffix}) {
+      for (Element member : members) {
+        if (member.getKind() == ElementKind.METHOD
+            && member.getSimpleName().contentEquals(name)
+            && ((ExecutableElement) member).getParameters().isEmpty()
+            && isReadable(member, pkg)) {
+          return new Accessor(name + "()", erasure(((ExecutableElement) member).getReturnType()));
+        }
+      }
+    }
+    for (Element member : members) {
+      if (member.getKind() == ElementKind.FIELD
+          && member.getSimpleName().contentEquals(property)
+          && isReadable(member, pkg)) {
+        return new Accessor(property, erasure(member.asType()));
+      }
+    }
+    return null;
+  }
+
+  private TypeMirror erasure(TypeMirror type) {
+    return processingEnv.getTypeUtils().erasure(type);
+  }
+
+  private static boolean isReadable(Element member, PackageElement pkg) {
+    Set<Modifier> modifiers = member.getModifiers();
+    return !modifiers.contains(Modifier.STATIC)
+        && (modifiers.contains(Modifier.PUBLIC)
+            || (!modifiers.contains(Modifier.PRIVATE) && samePackage(member, pkg)));
+  }
+
+  /** Whether generated code in {@code pkg} may name {@code type}. */
+  private static boolean isAccessible(TypeMirror type, PackageElement pkg) {
+    if (type.getKind() != TypeKind.DECLARED) {
+      return type.getKind().isPrimitive();
+    }
+    for (Element e = ((DeclaredType) type).asElement();
+        e != null && e.getKind() != ElementKind.PACKAGE;
+        e = e.getEnclosingElement()) {
+      Set<Modifier> modifiers = e.getModifiers();
+      if (modifiers.contains(Modifier.PRIVATE)
+          || (!modifiers.contains(Modifier.PUBLIC) && !samePackage(e, pkg))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean samePackage(Element element, PackageElement pkg) {
+    Element e = element;
+    while (e != null && e.getKind() != ElementKind.PACKAGE) {
+      e = e.getEnclosingElement();
+    }
+    return pkg.equals(e);
+  }
+
+  private TypeMirror boxed(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return processingEnv
+          .getTypeUtils()
+          .boxedClass(processingEnv.getTypeUtils().getPrimitiveType(type.getKind()))
+          .asType();
+    }
+    return erasure(type);
+  }
+
+  private String methodKey(ExecutableElement method) {
+    List<String> types = new ArrayList<>();
+    for (VariableElement parameter : method.getParameters()) {
+      types.add(typeName(erasure(parameter.asType())));
+    }
+    return method.getSimpleName() + "(" + String.join(",", types) + ")";
+  }
+
+  private static String simpleName(TypeMirror type) {
+    if (type.getKind().isPrimitive()) {
+      return type.getKind().name();
+    }
+    if (type instanceof DeclaredType declared) {
+      return declared.asElement().getSimpleName().toString();
+    }
+    return null;
+  }
+
+  private String typeName(TypeMirror type) {
+    if (type instanceof DeclaredType declared) {
+      return ((TypeElement) declared.asElement()).getQualifiedName().toString();
+    }
+    return type.toString();
+  }
+
+  private static String nullCheck(String variable, String path) {
+    return String.format(
+        "          if (%s == null) {%n"
+            + "            throw GeneratedResolvers.unresolved(\"%s\");%n"
+            + "          }%n",
+        variable, path);
+  }
+
+  private static String source(PackageElement pkg, String className, Map<String, String> cases) {
+    StringBuilder source = new StringBuilder();
+    if (!pkg.isUnnamed()) {
+      source.append("package ").append(pkg.getQualifiedName()).append(";\n\n");
+    }
+    source
+        .append("import javax.annotation.processing.Generated;\n")
+        .append("import org.ilt.fga.GeneratedResolvers;\n")
+        .append("import org.ilt.fga.ValueResolver;\n\n")
+        .append("@Generated(\"").append(SpiceDbAuthorizeProcessor.class.getName()).append("\")\n")
+        .append("public final class ").append(className)
+        .append(" implements GeneratedResolvers {\n\n")
+        .append("  @Override\n")
+        .append("  public ValueResolver resolver(String methodKey, String expression) {\n")
+        .append("    switch (methodKey + \" \" + expression) {\n");
+    cases.forEach(
+        (key, code) ->
+            source
+                .append("      case \"").append(key).append("\":\n")
+                .append("        return args -> {\n")
+                .append(code)
+                .append("        };\n"));
+    source
+        .append("      default:\n")
+        .append("        return null;\n")
+        .append("    }\n")
+        .append("  }\n")
+        .append("}\n");
+    return source.toString();
+  }
+}
@@ -1,19 +1,354 @@
 package org.ilt.fga;
 
 import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SchemaServiceGrpc;
+import com.authzed.api.v1.WatchServiceGrpc;
+import io.micrometer.observation.ObservationRegistry;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.util.ClassUtils;
 
-@Configuration
+@AutoConfiguration
 @ConditionalOnProperty(name = "spicedb.authorization.enabled", havingValue = "true")
 @Import({SpiceDbConfig.class})
 public class SpiceDbAutoConfiguration {
 
+  private static final String REQUEST_CONTEXT_HOLDER =
+      "org.springframework.web.context.request.RequestContextHolder";
+
+  @Bean
+  @ConditionalOnMissingBean
+  public AuthorizationPlans authorizationPlans(
+      @Value("${spicedb.expression.compiler-mode:OFF}") SpelCompilerMode compilerMode,
+      @Value("${spicedb.consistency.mode:MINIMIZE_LATENCY}") ConsistencyMode consistency) {
+    return new AuthorizationPlans(compilerMode, consistency);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.cache.enabled", havingValue = "true")
+  public PermissionDecisionCache permissionDecisionCache(
+      @Value("${spicedb.cache.maximum-size:10000}") long maximumSize,
+      @Value("${spicedb.cache.ttl:5s}") Duration ttl,
+      @Value("${spicedb.cache.max-staleness:5s}") Duration maxStaleness) {
+    return new PermissionDecisionCache(maximumSize, ttl, maxStaleness);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.batching.enabled", havingValue = "true")
+  public BulkCheckDispatcher bulkCheckDispatcher(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      @Value("${spicedb.batching.window:2ms}") Duration window,
+      @Value("${spicedb.batching.max-size:100}") int maxBatchSize,
+      @Value("${spicedb.batching.fallback-to-unary:true}") boolean fallbackToUnary,
+      @Value("${spicedb.batching.sender-threads:4}") int senderThreads,
+      @Value("${spicedb.batching.max-wait:30s}") Duration maxWait) {
+    return new BulkCheckDispatcher(
+        permissionsService, window, maxBatchSize, fallbackToUnary, senderThreads, maxWait);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.resilience.enabled", havingValue = "true")
+  public CheckResilience checkResilience(
+      @Value("${spicedb.resilience.timeout:1s}") Duration timeout,
+      @Value("${spicedb.resilience.hedge-percentile:0.95}") double hedgePercentile,
+      @Value("${spicedb.resilience.hedge-min-delay:10ms}") Duration minHedgeDelay,
+      @Value("${spicedb.resilience.failure-threshold:5}") int failureThreshold,
+      @Value("${spicedb.resilience.open-duration:10s}") Duration openDuration,
+      @Value("${spicedb.resilience.max-concurrent:256}") int maxConcurrent) {
+    return new CheckResilience(
+        timeout, hedgePercentile, minHedgeDelay, failureThreshold, openDuration, maxConcurrent);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.local-index.enabled", havingValue = "true")
+  public LocalRelationIndex localRelationIndex(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      WatchServiceGrpc.WatchServiceStub watchService,
+      @Value("${spicedb.local-index.relations}") String[] relations,
+      @Value("${spicedb.local-index.retry-backoff:1s}") Duration retryBackoff) {
+    LocalRelationIndex index =
+        new LocalRelationIndex(permissionsService, watchService, List.of(relations), retryBackoff);
+    index.start();
+    return index;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public PermissionChecker permissionChecker(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      ObjectProvider<BulkCheckDispatcher> bulkCheckDispatcher,
+      ObjectProvider<PermissionDecisionCache> decisionCache,
+      ObjectProvider<CheckResilience> checkResilience,
+      ObjectProvider<LocalRelationIndex> localRelationIndex,
+      ObjectProvider<ObservationRegistry> observationRegistry,
+      @Value("${spicedb.coalescing.enabled:true}") boolean coalescing,
+      @Value("${spicedb.request-memo.enabled:true}") boolean requestMemo) {
+    BulkCheckDispatcher dispatcher = bulkCheckDispatcher.getIfAvailable();
+    PermissionChecker checker =
+        dispatcher != null
+            ? dispatcher.asPermissionChecker()
+            : new GrpcPermissionChecker(permissionsService);
+    checker =
+        new ObservedPermissionChecker(
+            checker, observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP));
+    CheckResilience resilience = checkResilience.getIfAvailable();
+    if (resilience != null) {
+      checker = resilience.wrap(checker);
+    }
+    if (coalescing) {
+      checker = new CoalescingPermissionChecker(checker);
+    }
+    PermissionDecisionCache cache = decisionCache.getIfAvailable();
+    if (cache != null) {
+      checker = new CachingPermissionChecker(checker, cache);
+    }
+    LocalRelationIndex index = localRelationIndex.getIfAvailable();
+    if (index != null) {
+      checker = index.wrap(checker);
+    }
+    if (requestMemo && ClassUtils.isPresent(REQUEST_CONTEXT_HOLDER, null)) {
+      checker = new RequestScopedPermissionChecker(checker);
+    }
+    return checker;
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.audit.enabled", havingValue = "true")
+  public DecisionAuditLog decisionAuditLog(
+      ObjectProvider<DecisionAuditSink> sinks,
+      ApplicationEventPublisher eventPublisher,
+      @Value("${spicedb.audit.file:}") String file,
+      @Value("${spicedb.audit.spring-events:false}") boolean springEvents,
+      @Value("${spicedb.audit.buffer-size:8192}") int bufferSize,
+      @Value("${spicedb.audit.batch-size:256}") int batchSize,
+      @Value("${spicedb.audit.allow-sample-rate:1.0}") double allowSampleRate) {
+    List<DecisionAuditSink> auditSinks = new ArrayList<>(sinks.orderedStream().toList());
+    if (!file.isEmpty()) {
+      auditSinks.add(new FileDecisionAuditSink(Path.of(file)));
+    }
+    if (springEvents) {
+      auditSinks.add(new ApplicationEventDecisionAuditSink(eventPublisher));
+    }
+    return new DecisionAuditLog(auditSinks, bufferSize, batchSize, allowSampleRate);
+  }
+
   @Bean
   public SpiceDbAuthorizeAspect spiceDbAuthorizationAspect(
-      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService) {
-    return new SpiceDbAuthorizeAspect(permissionsService);
+      PermissionChecker permissionChecker,
+      AuthorizationPlans authorizationPlans,
+      ObjectProvider<ObservationRegistry> observationRegistry,
+      ObjectProvider<DecisionAuditLog> decisionAuditLog,
+      ObjectProvider<SubjectResolver> subjectResolver) {
+    return new SpiceDbAuthorizeAspect(
+        permissionChecker,
+        authorizationPlans,
+        observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP),
+        decisionAuditLog.getIfAvailable(),
+        requestScoped(subjectResolver.getIfAvailable()));
+  }
+
+  /** Off by default: {@code @FgaAuthorize} was not enforced before, turning it on is explicit. */
+  @Bean
+  @ConditionalOnProperty(name = "spicedb.fga-authorize.enabled", havingValue = "true")
+  public FgAuthorizeAspect fgAuthorizeAspect(
+      PermissionChecker permissionChecker,
+      AuthorizationPlans authorizationPlans,
+      ObjectProvider<ObservationRegistry> observationRegistry,
+      ObjectProvider<DecisionAuditLog> decisionAuditLog,
+      ObjectProvider<SubjectResolver> subjectResolver) {
+    return new FgAuthorizeAspect(
+        permissionChecker,
+        observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP),
+        authorizationPlans,
+        decisionAuditLog.getIfAvailable(),
+        requestScoped(subjectResolver.getIfAvailable()));
+  }
+
+  /** Caches the resolved subject for the rest of the web request, when running in one. */
+  private static SubjectResolver requestScoped(SubjectResolver subjectResolver) {
+    if (subjectResolver != null && ClassUtils.isPresent(REQUEST_CONTEXT_HOLDER, null)) {
+      return new RequestScopedSubjectResolver(subjectResolver);
+    }
+    return subjectResolver;
+  }
+
+  @Bean
+  public SpiceDbPostFilterAspect spiceDbPostFilterAspect(
+      PermissionChecker permissionChecker,
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      AuthorizationPlans authorizationPlans,
+      ObjectProvider<ObservationRegistry> observationRegistry,
+      ObjectProvider<DecisionAuditLog> decisionAuditLog,
+      ObjectProvider<SubjectResolver> subjectResolver,
+      @Value("${spicedb.filter.lookup-threshold:100}") int lookupThreshold,
+      @Value("${spicedb.filter.bulk-batch-size:100}") int bulkBatchSize) {
+    return new SpiceDbPostFilterAspect(
+        permissionChecker,
+        permissionsService,
+        authorizationPlans,
+        observationRegistry.getIfAvailable(() -> ObservationRegistry.NOOP),
+        decisionAuditLog.getIfAvailable(),
+        requestScoped(subjectResolver.getIfAvailable()),
+        lookupThreshold,
+        bulkBatchSize);
+  }
+
+  @Bean
+  @ConditionalOnMissingBean
+  public AuthorizedResources authorizedResources(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      AuthorizationPlans authorizationPlans) {
+    return new AuthorizedResources(permissionsService, authorizationPlans);
+  }
+
+  /** Off by default: it starts its own threads, which read-only applications do not need. */
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.writer.enabled", havingValue = "true")
+  public RelationshipWriter relationshipWriter(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      ObjectProvider<PermissionDecisionCache> decisionCache,
+      @Value("${spicedb.writer.window:10ms}") Duration window,
+      @Value("${spicedb.writer.max-batch-size:1000}") int maxBatchSize,
+      @Value("${spicedb.writer.transactional:false}") boolean transactional) {
+    return new RelationshipWriter(
+        permissionsService, decisionCache.getIfAvailable(), window, maxBatchSize, transactional);
+  }
+
+  /** Off by default: it sends checks to SpiceDB while the context starts. */
+  @Bean
+  @ConditionalOnMissingBean
+  @ConditionalOnProperty(name = "spicedb.startup.enabled", havingValue = "true")
+  public AuthorizationWarmup authorizationWarmup(
+      ListableBeanFactory beanFactory,
+      AuthorizationPlans authorizationPlans,
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      ObjectProvider<SpiceDbChannelPool> channelPool,
+      ObjectProvider<SchemaServiceGrpc.SchemaServiceBlockingStub> schemaService,
+      @Value("${spicedb.startup.validate-schema:false}") boolean validateSchema,
+      @Value("${spicedb.startup.warmup-requests:8}") int warmupRequests) {
+    return new AuthorizationWarmup(
+        beanFactory,
+        authorizationPlans,
+        new GrpcPermissionChecker(permissionsService),
+        channelPool.getIfAvailable(),
+        validateSchema ? schemaService.getIfAvailable() : null,
+        warmupRequests);
+  }
+
+  @Configuration
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  @ConditionalOnClass(name = "org.springframework.web.filter.OncePerRequestFilter")
+  static class ZedTokenFilterConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(
+        name = "spicedb.consistency.filter.enabled",
+        havingValue = "true",
+        matchIfMissing = true)
+    public ZedTokenFilter zedTokenFilter(
+        @Value("${spicedb.consistency.header:" + ZedTokenFilter.DEFAULT_HEADER + "}")
+            String header) {
+      return new ZedTokenFilter(header);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+  @ConditionalOnClass(name = "org.springframework.web.filter.OncePerRequestFilter")
+  @ConditionalOnProperty(name = "spicedb.routing.enabled", havingValue = "true")
+  static class RoutingFilterConfiguration {
+
+    /** The header is ignored unless {@code spicedb.routing.trust-header} is set explicitly. */
+    @Bean
+    @ConditionalOnMissingBean
+    public SpiceDbRoutingFilter spiceDbRoutingFilter(
+        ObjectProvider<RoutingKeyResolver> routingKeyResolver,
+        @Value("${spicedb.routing.trust-header:false}") boolean trustHeader,
+        @Value("${spicedb.routing.header:" + SpiceDbRoutingFilter.DEFAULT_HEADER + "}")
+            String header) {
+      return new SpiceDbRoutingFilter(
+          routingKeyResolver.getIfAvailable(() -> () -> null), trustHeader ? header : null);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(
+      name = "org.springframework.security.core.context.SecurityContextHolder")
+  static class SecurityConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SubjectResolver subjectResolver(
+        @Value("${spicedb.subject.type:user}") String subjectType,
+        @Value("${spicedb.subject.claim:sub}") String claim) {
+      return new SecurityContextSubjectResolver(subjectType, claim);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(name = "spicedb.routing.enabled", havingValue = "true")
+    public RoutingKeyResolver routingKeyResolver(
+        @Value("${spicedb.routing.claim:tenant}") String claim) {
+      return new SecurityContextRoutingKeyResolver(claim);
+    }
+  }
+
+  @Configuration
+  @ConditionalOnClass(name = "io.micrometer.core.instrument.binder.MeterBinder")
+  static class MetricsConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(name = "spicedb.cache.enabled", havingValue = "true")
+    public PermissionDecisionCacheMetrics permissionDecisionCacheMetrics(
+        PermissionDecisionCache permissionDecisionCache) {
+      return new PermissionDecisionCacheMetrics(permissionDecisionCache);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "spicedb.resilience.enabled", havingValue = "true")
+    public CheckResilienceMetrics checkResilienceMetrics(CheckResilience checkResilience) {
+      return new CheckResilienceMetrics(checkResilience);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "spicedb.local-index.enabled", havingValue = "true")
+    public LocalRelationIndexMetrics localRelationIndexMetrics(
+        LocalRelationIndex localRelationIndex) {
+      return new LocalRelationIndexMetrics(localRelationIndex);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "spicedb.audit.enabled", havingValue = "true")
+    public DecisionAuditMetrics decisionAuditMetrics(DecisionAuditLog decisionAuditLog) {
+      return new DecisionAuditMetrics(decisionAuditLog);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "spicedb.routing.enabled", havingValue = "true")
+    public SpiceDbClusterMetrics spiceDbClusterMetrics(SpiceDbClusterRouter spiceDbClusterRouter) {
+      return new SpiceDbClusterMetrics(spiceDbClusterRouter);
+    }
   }
 }
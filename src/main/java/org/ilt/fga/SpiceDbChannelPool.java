@@ -0,0 +1,103 @@
+package org.ilt.fga;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of channels to the same SpiceDB endpoint. Calls are spread round-robin over the
+ * channels, so checks are not limited by the concurrent stream limit of a single HTTP/2 connection,
+ * and each unary call without an explicit deadline gets the configured default one.
+ */
+public class SpiceDbChannelPool implements AutoCloseable {
+
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+  private final List<ManagedChannel> channels;
+  private final ExecutorService executor;
+  private final Channel channel;
+
+  public SpiceDbChannelPool(List<ManagedChannel> channels, Duration deadline) {
+    this(channels, deadline, null);
+  }
+
+  public SpiceDbChannelPool(
+      List<ManagedChannel> channels, Duration deadline, ExecutorService executor) {
+    if (channels.isEmpty()) {
+      throw new IllegalArgumentException("At least one channel is required");
+    }
+    this.channels = List.copyOf(channels);
+    this.executor = executor;
+    Channel pooled = this.channels.size() == 1 ? this.channels.get(0) : new RoundRobin();
+    this.channel =
+        deadline.isZero() || deadline.isNegative()
+            ? pooled
+            : ClientInterceptors.intercept(pooled, new DefaultDeadline(deadline));
+  }
+
+  /** The channel stubs should be built on. */
+  public Channel channel() {
+    return channel;
+  }
+
+  public List<ManagedChannel> getChannels() {
+    return channels;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    channels.forEach(ManagedChannel::shutdown);
+    for (ManagedChannel managedChannel : channels) {
+      if (!managedChannel.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        managedChannel.shutdownNow();
+      }
+    }
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private class RoundRobin extends Channel {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+      int index = Math.floorMod(next.getAndIncrement(), channels.size());
+      return channels.get(index).newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+      return channels.get(0).authority();
+    }
+  }
+
+  private static class DefaultDeadline implements ClientInterceptor {
+    private final long deadlineNanos;
+
+    private DefaultDeadline(Duration deadline) {
+      this.deadlineNanos = deadline.toNanos();
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      // streams such as Watch or LookupResources legitimately outlive any per-call deadline
+      if (method.getType() == MethodDescriptor.MethodType.UNARY
+          && callOptions.getDeadline() == null) {
+        callOptions = callOptions.withDeadlineAfter(deadlineNanos, TimeUnit.NANOSECONDS);
+      }
+      return next.newCall(method, callOptions);
+    }
+  }
+}
@@ -0,0 +1,164 @@
+package org.ilt.fga;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * One SpiceDB cluster of a {@link SpiceDbClusterRouter}, with the health and latency of the calls
+ * made to it. A cluster is unhealthy after a number of consecutive transport failures, and is
+ * tried again once the retry interval has passed; any response, even an error one, makes it
+ * healthy again.
+ */
+public class SpiceDbCluster implements AutoCloseable {
+
+  private static final long UNKNOWN_LATENCY = -1;
+
+  private final String name;
+  private final String region;
+  private final Set<String> tenants;
+  private final SpiceDbChannelPool pool;
+  private final Channel channel;
+  private final int failureThreshold;
+  private final long retryNanos;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private final AtomicLong latencyNanos = new AtomicLong(UNKNOWN_LATENCY);
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+  private volatile long failedAtNanos;
+
+  /**
+   * @param tenants routing keys served by this cluster; a cluster without tenants serves every key
+   *     that no other cluster claims
+   * @param failureThreshold consecutive transport failures after which the cluster is unhealthy
+   * @param retryAfter how long an unhealthy cluster is avoided before it is tried again
+   * @param interceptors applied to the calls made to this cluster only, such as its credentials
+   */
+  public SpiceDbCluster(
+      String name,
+      String region,
+      Collection<String> tenants,
+      SpiceDbChannelPool pool,
+      int failureThreshold,
+      Duration retryAfter,
+      ClientInterceptor... interceptors) {
+    this.name = name;
+    this.region = region;
+    this.tenants = Set.copyOf(tenants);
+    this.pool = pool;
+    this.channel =
+        ClientInterceptors.intercept(
+            ClientInterceptors.intercept(pool.channel(), interceptors), new Tracking());
+    this.failureThreshold = failureThreshold;
+    this.retryNanos = retryAfter.toNanos();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /** The region the cluster runs in, or {@code null}. */
+  public String getRegion() {
+    return region;
+  }
+
+  public Set<String> getTenants() {
+    return tenants;
+  }
+
+  /** The channel calls to this cluster are made on; their outcome is tracked. */
+  public Channel channel() {
+    return channel;
+  }
+
+  public boolean isHealthy() {
+    return consecutiveFailures.get() < failureThreshold
+        || System.nanoTime() - failedAtNanos >= retryNanos;
+  }
+
+  /** Moving average of recent call latencies, or {@code -1} before the first response. */
+  public long latencyNanos() {
+    return latencyNanos.get();
+  }
+
+  public long callCount() {
+    return calls.sum();
+  }
+
+  public long failureCount() {
+    return failures.sum();
+  }
+
+  /** @param nanos duration of the call, or {@code -1} when it is not a latency sample */
+  void record(Status status, long nanos) {
+    calls.increment();
+    if (isTransportFailure(status.getCode())) {
+      failures.increment();
+      failedAtNanos = System.nanoTime();
+      consecutiveFailures.incrementAndGet();
+      return;
+    }
+    consecutiveFailures.set(0);
+    if (nanos < 0) {
+      return;
+    }
+    // exponentially weighted, each response counting for a fifth
+    latencyNanos.getAndUpdate(previous -> previous < 0 ? nanos : previous + (nanos - previous) / 5);
+  }
+
+  private static boolean isTransportFailure(Status.Code code) {
+    return code == Status.Code.UNAVAILABLE
+        || code == Status.Code.DEADLINE_EXCEEDED
+        || code == Status.Code.INTERNAL
+        || code == Status.Code.UNKNOWN;
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    pool.close();
+  }
+
+  @Override
+  public String toString() {
+    return "SpiceDbCluster[" + name + "]";
+  }
+
+  private class Tracking implements ClientInterceptor {
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      return new ForwardingClientCall.SimpleForwardingClientCall<>(
+          next.newCall(method, callOptions)) {
+        @Override
+        public void start(Listener<RespT> listener, Metadata headers) {
+          // streaming calls such as Watch stay open, their duration says nothing about latency
+          long start =
+              method.getType() == MethodDescriptor.MethodType.UNARY ? System.nanoTime() : -1;
+          super.start(
+              new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(listener) {
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                  record(status, start < 0 ? -1 : System.nanoTime() - start);
+                  super.onClose(status, trailers);
+                }
+              },
+              headers);
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package org.ilt.fga;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes, per cluster of a {@link SpiceDbClusterRouter}, whether it is healthy, its recent call
+ * latency, and how many calls it served and how many of them failed in transport.
+ */
+public class SpiceDbClusterMetrics implements MeterBinder {
+
+  private final SpiceDbClusterRouter router;
+
+  public SpiceDbClusterMetrics(SpiceDbClusterRouter router) {
+    this.router = router;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    for (SpiceDbCluster cluster : router.getClusters()) {
+      String name = cluster.getName();
+      Gauge.builder("spicedb.cluster.healthy", cluster, c -> c.isHealthy() ? 1 : 0)
+          .tag("cluster", name)
+          .register(registry);
+      TimeGauge.builder(
+              "spicedb.cluster.latency",
+              cluster,
+              TimeUnit.NANOSECONDS,
+              c -> c.latencyNanos() < 0 ? Double.NaN : c.latencyNanos())
+          .tag("cluster", name)
+          .register(registry);
+      FunctionCounter.builder("spicedb.cluster.calls", cluster, SpiceDbCluster::callCount)
+          .tag("cluster", name)
+          .register(registry);
+      FunctionCounter.builder("spicedb.cluster.failures", cluster, SpiceDbCluster::failureCount)
+          .tag("cluster", name)
+          .register(registry);
+    }
+  }
+}
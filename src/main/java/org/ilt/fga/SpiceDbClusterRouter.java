@@ -0,0 +1,142 @@
+package org.ilt.fga;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.MethodDescriptor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Spreads calls over several SpiceDB clusters, for example one per region plus dedicated clusters
+ * for large tenants. Each call goes to a cluster serving the {@link SpiceDbRouting} key bound when
+ * it is made: the clusters listing the key as a tenant or as their region, or the clusters without
+ * tenants when no cluster claims the key.
+ *
+ * <p>Reads go to the nearest healthy candidate: one in the local region if any, otherwise the one
+ * with the lowest recent latency. Writes go to the first healthy candidate in declaration order, so
+ * that the writes for a key are not spread over clusters. Clusters serving the same key are
+ * expected to share a datastore, so that ZedTokens from one are valid at the others.
+ */
+public class SpiceDbClusterRouter implements AutoCloseable {
+
+  private static final Set<String> WRITE_METHODS =
+      Set.of(
+          "WriteRelationships",
+          "DeleteRelationships",
+          "ImportBulkRelationships",
+          "BulkImportRelationships",
+          "WriteSchema");
+
+  private final List<SpiceDbCluster> clusters;
+  private final String localRegion;
+  private final Map<String, List<SpiceDbCluster>> byTenant = new HashMap<>();
+  private final Map<String, List<SpiceDbCluster>> byRegion = new HashMap<>();
+  private final List<SpiceDbCluster> shared = new ArrayList<>();
+  private final Channel channel = new Routing();
+
+  /** @param localRegion the region this application runs in, or {@code null} */
+  public SpiceDbClusterRouter(List<SpiceDbCluster> clusters, String localRegion) {
+    if (clusters.isEmpty()) {
+      throw new IllegalArgumentException("At least one cluster is required");
+    }
+    this.clusters = List.copyOf(clusters);
+    this.localRegion = localRegion;
+    for (SpiceDbCluster cluster : this.clusters) {
+      if (cluster.getTenants().isEmpty()) {
+        shared.add(cluster);
+      }
+      for (String tenant : cluster.getTenants()) {
+        byTenant.computeIfAbsent(tenant, k -> new ArrayList<>()).add(cluster);
+      }
+    }
+    for (SpiceDbCluster cluster : shared) {
+      if (cluster.getRegion() != null) {
+        byRegion.computeIfAbsent(cluster.getRegion(), k -> new ArrayList<>()).add(cluster);
+      }
+    }
+    if (shared.isEmpty()) {
+      throw new IllegalArgumentException(
+          "At least one cluster without tenants is required for keys no cluster claims");
+    }
+  }
+
+  /** The channel stubs should be built on. */
+  public Channel channel() {
+    return channel;
+  }
+
+  public List<SpiceDbCluster> getClusters() {
+    return clusters;
+  }
+
+  /** Picks the cluster for a call made with {@code key} bound, which may be {@code null}. */
+  public SpiceDbCluster select(String key, boolean write) {
+    List<SpiceDbCluster> candidates = candidates(key);
+    SpiceDbCluster best = null;
+    for (SpiceDbCluster cluster : candidates) {
+      if (!cluster.isHealthy()) {
+        continue;
+      }
+      if (write) {
+        return cluster;
+      }
+      if (best == null || isNearer(cluster, best)) {
+        best = cluster;
+      }
+    }
+    // with every candidate unhealthy, keep trying the preferred one rather than failing outright
+    return best != null ? best : candidates.get(0);
+  }
+
+  private List<SpiceDbCluster> candidates(String key) {
+    if (key == null) {
+      return shared;
+    }
+    // a tenant claimed by a cluster wins over a region of the same name
+    List<SpiceDbCluster> candidates = byTenant.get(key);
+    if (candidates == null) {
+      candidates = byRegion.getOrDefault(key, shared);
+    }
+    return candidates;
+  }
+
+  private boolean isNearer(SpiceDbCluster cluster, SpiceDbCluster than) {
+    boolean local = isLocal(cluster);
+    if (local != isLocal(than)) {
+      return local;
+    }
+    // a cluster without a latency sample yet is tried, so that it gets one
+    return cluster.latencyNanos() < than.latencyNanos();
+  }
+
+  private boolean isLocal(SpiceDbCluster cluster) {
+    return localRegion != null && Objects.equals(localRegion, cluster.getRegion());
+  }
+
+  @Override
+  public void close() throws InterruptedException {
+    for (SpiceDbCluster cluster : clusters) {
+      cluster.close();
+    }
+  }
+
+  private class Routing extends Channel {
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+      boolean write = WRITE_METHODS.contains(methodDescriptor.getBareMethodName());
+      return select(SpiceDbRouting.get(), write).channel().newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+      return clusters.get(0).channel().authority();
+    }
+  }
+}
@@ -1,15 +1,38 @@
 package org.ilt.fga;
 
 import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SchemaServiceGrpc;
+import com.authzed.api.v1.WatchServiceGrpc;
 import com.authzed.grpcutil.BearerToken;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
+import io.grpc.MethodDescriptor;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.EnvironmentAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 
 @Configuration
-public class SpiceDbConfig {
+public class SpiceDbConfig implements EnvironmentAware {
+
+  private static final String PERMISSIONS_SERVICE = "authzed.api.v1.PermissionsService";
 
   @Value("${spicedb.url:localhost}")
   private String spiceDbUrl;
@@ -23,6 +46,65 @@ public class SpiceDbConfig {
   @Value("${spicedb.is-secure:false}")
   private Boolean isTls;
 
+  /** Default deadline for unary calls that do not set their own; zero disables it. */
+  @Value("${spicedb.deadline:0s}")
+  private Duration deadline = Duration.ZERO;
+
+  /** Number of channels, and so HTTP/2 connections, that calls are spread over. */
+  @Value("${spicedb.channel.pool-size:1}")
+  private int poolSize = 1;
+
+  /** Interval of keepalive pings; zero disables keepalive. */
+  @Value("${spicedb.channel.keepalive-time:0s}")
+  private Duration keepAliveTime = Duration.ZERO;
+
+  @Value("${spicedb.channel.keepalive-timeout:20s}")
+  private Duration keepAliveTimeout = Duration.ofSeconds(20);
+
+  @Value("${spicedb.channel.keepalive-without-calls:false}")
+  private boolean keepAliveWithoutCalls;
+
+  @Value("${spicedb.channel.max-inbound-message-size:4194304}")
+  private int maxInboundMessageSize = 4 * 1024 * 1024;
+
+  /** {@code pick_first} or {@code round_robin} over the addresses DNS resolves the host to. */
+  @Value("${spicedb.channel.load-balancing-policy:pick_first}")
+  private String loadBalancingPolicy = "pick_first";
+
+  /** Runs call callbacks on the transport thread instead of handing them to an executor. */
+  @Value("${spicedb.channel.direct-executor:false}")
+  private boolean directExecutor;
+
+  /** Size of a dedicated callback executor; zero uses gRPC's shared default executor. */
+  @Value("${spicedb.channel.executor-threads:0}")
+  private int executorThreads;
+
+  /** Attempts per call including the first for UNAVAILABLE errors; one disables retries. */
+  @Value("${spicedb.retry.max-attempts:1}")
+  private int retryMaxAttempts = 1;
+
+  @Value("${spicedb.retry.initial-backoff:100ms}")
+  private Duration retryInitialBackoff = Duration.ofMillis(100);
+
+  @Value("${spicedb.retry.max-backoff:1s}")
+  private Duration retryMaxBackoff = Duration.ofSeconds(1);
+
+  /** Spreads calls over the clusters under {@code spicedb.routing.clusters} instead. */
+  @Value("${spicedb.routing.enabled:false}")
+  private boolean routingEnabled;
+
+  /** Region this application runs in; reads prefer healthy clusters of that region. */
+  @Value("${spicedb.routing.local-region:}")
+  private String localRegion;
+
+  @Value("${spicedb.routing.failure-threshold:3}")
+  private int routingFailureThreshold = 3;
+
+  @Value("${spicedb.routing.retry-after:5s}")
+  private Duration routingRetryAfter = Duration.ofSeconds(5);
+
+  private Environment environment;
+
   public SpiceDbConfig() {
   }
 
@@ -33,24 +115,173 @@ public class SpiceDbConfig {
     this.isTls = isTls;
   }
 
+  @Override
+  public void setEnvironment(Environment environment) {
+    this.environment = environment;
+  }
+
+  @Bean
+  @ConditionalOnProperty(
+      name = "spicedb.routing.enabled",
+      havingValue = "false",
+      matchIfMissing = true)
+  public SpiceDbChannelPool spiceDbChannelPool() {
+    return channelPool(spiceDbUrl, spiceDbPort, isTls);
+  }
+
+  /**
+   * One cluster per entry under {@code spicedb.routing.clusters}, each with its own {@code url},
+   * {@code port}, {@code token} and {@code is-secure} defaulting to the global ones, a {@code
+   * region}, and the {@code tenants} it serves.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "spicedb.routing.enabled", havingValue = "true")
+  public SpiceDbClusterRouter spiceDbClusterRouter() {
+    Map<String, ClusterProperties> properties =
+        Binder.get(environment)
+            .bind(
+                "spicedb.routing.clusters",
+                Bindable.mapOf(String.class, ClusterProperties.class))
+            .orElse(Map.of());
+    if (properties.isEmpty()) {
+      throw new IllegalStateException(
+          "spicedb.routing.enabled is set but no spicedb.routing.clusters are configured");
+    }
+    List<SpiceDbCluster> clusters = new ArrayList<>(properties.size());
+    properties.forEach(
+        (name, cluster) ->
+            clusters.add(
+                new SpiceDbCluster(
+                    name,
+                    cluster.region(),
+                    cluster.tenants() != null ? cluster.tenants() : List.of(),
+                    channelPool(
+                        Objects.requireNonNullElse(cluster.url(), spiceDbUrl),
+                        Objects.requireNonNullElse(cluster.port(), spiceDbPort),
+                        Objects.requireNonNullElse(cluster.isSecure(), isTls)),
+                    routingFailureThreshold,
+                    routingRetryAfter,
+                    clusterToken(cluster))));
+    return new SpiceDbClusterRouter(clusters, localRegion.isEmpty() ? null : localRegion);
+  }
+
   @Bean
   public PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService() {
-    ManagedChannel channel = getChannel();
+    return PermissionsServiceGrpc.newBlockingStub(channel())
+        .withCallCredentials(new BearerToken(spiceDbToken));
+  }
+
+  @Bean
+  public PermissionsServiceGrpc.PermissionsServiceFutureStub permissionsFutureService() {
+    return PermissionsServiceGrpc.newFutureStub(channel())
+        .withCallCredentials(new BearerToken(spiceDbToken));
+  }
+
+  @Bean
+  public SchemaServiceGrpc.SchemaServiceBlockingStub schemaService() {
+    return SchemaServiceGrpc.newBlockingStub(channel())
+        .withCallCredentials(new BearerToken(spiceDbToken));
+  }
 
-    return PermissionsServiceGrpc.newBlockingStub(channel)
+  @Bean
+  public WatchServiceGrpc.WatchServiceStub watchService() {
+    return WatchServiceGrpc.newStub(channel())
         .withCallCredentials(new BearerToken(spiceDbToken));
   }
 
-  private ManagedChannel getChannel() {
+  private Channel channel() {
+    return routingEnabled ? spiceDbClusterRouter().channel() : spiceDbChannelPool().channel();
+  }
+
+  private ClientInterceptor[] clusterToken(ClusterProperties cluster) {
+    if (cluster.token() == null || cluster.token().equals(spiceDbToken)) {
+      return new ClientInterceptor[0];
+    }
+    return new ClientInterceptor[] {new ClusterToken(cluster.token())};
+  }
+
+  private SpiceDbChannelPool channelPool(String host, int port, boolean tls) {
+    ExecutorService executor = null;
+    if (!directExecutor && executorThreads > 0) {
+      executor = Executors.newFixedThreadPool(executorThreads);
+    }
+    List<ManagedChannel> channels = new ArrayList<>(poolSize);
+    for (int i = 0; i < Math.max(1, poolSize); i++) {
+      channels.add(getChannel(host, port, tls, executor));
+    }
+    return new SpiceDbChannelPool(channels, deadline, executor);
+  }
+
+  private ManagedChannel getChannel(String host, int port, boolean tls, ExecutorService executor) {
     ManagedChannelBuilder<?> managedChannelBuilder =
-        ManagedChannelBuilder.forAddress(spiceDbUrl, Integer.valueOf(spiceDbPort));
+        ManagedChannelBuilder.forAddress(host, port)
+            .maxInboundMessageSize(maxInboundMessageSize)
+            .defaultLoadBalancingPolicy(loadBalancingPolicy);
+
+    if (!keepAliveTime.isZero()) {
+      managedChannelBuilder
+          .keepAliveTime(keepAliveTime.toNanos(), TimeUnit.NANOSECONDS)
+          .keepAliveTimeout(keepAliveTimeout.toNanos(), TimeUnit.NANOSECONDS)
+          .keepAliveWithoutCalls(keepAliveWithoutCalls);
+    }
+    if (directExecutor) {
+      managedChannelBuilder.directExecutor();
+    } else if (executor != null) {
+      managedChannelBuilder.executor(executor);
+    }
+    if (retryMaxAttempts > 1) {
+      managedChannelBuilder.enableRetry().defaultServiceConfig(retryServiceConfig());
+    }
 
     ManagedChannel channel;
-    if (isTls) {
+    if (tls) {
       channel = managedChannelBuilder.useTransportSecurity().build();
     } else {
       channel = managedChannelBuilder.usePlaintext().build();
     }
     return channel;
   }
+
+  private Map<String, Object> retryServiceConfig() {
+    Map<String, Object> retryPolicy =
+        Map.of(
+            "maxAttempts", (double) retryMaxAttempts,
+            "initialBackoff", seconds(retryInitialBackoff),
+            "maxBackoff", seconds(retryMaxBackoff),
+            "backoffMultiplier", 2.0,
+            "retryableStatusCodes", List.of("UNAVAILABLE"));
+    Map<String, Object> methodConfig =
+        Map.of(
+            "name", List.of(Map.of("service", PERMISSIONS_SERVICE)), "retryPolicy", retryPolicy);
+    return Map.of("methodConfig", List.of(methodConfig));
+  }
+
+  /** Formats a duration the way gRPC service configs expect it, e.g. {@code 0.100s}. */
+  private static String seconds(Duration duration) {
+    return BigDecimal.valueOf(duration.toMillis(), 3).toPlainString() + "s";
+  }
+
+  /** A cluster under {@code spicedb.routing.clusters}; unset connection settings are global. */
+  record ClusterProperties(
+      String url,
+      Integer port,
+      String token,
+      Boolean isSecure,
+      String region,
+      List<String> tenants) {}
+
+  /** Replaces the global token, which stubs carry as call credentials, with a cluster's own. */
+  private static class ClusterToken implements ClientInterceptor {
+    private final BearerToken token;
+
+    private ClusterToken(String token) {
+      this.token = new BearerToken(token);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      return next.newCall(method, callOptions.withCallCredentials(token));
+    }
+  }
 }
@@ -0,0 +1,33 @@
+package org.ilt.fga;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Removes the elements of a returned {@code List}, {@code Collection}, {@code Set}, {@code Stream}
+ * or Spring Data {@code Page} that the subject may not access. The method must be declared to
+ * return one of these types itself rather than an implementation such as {@code LinkedList}, since
+ * the filtered result is a new container. The resource id is read from each element, bound as
+ * {@code filterObject}, e.g. {@code document:{filterObject.id}#view@user:{user.id}}.
+ *
+ * <p>The checks go through the same {@link PermissionChecker} chain, audit log and observations as
+ * {@link SpiceDbAuthorize} checks. The total element count of a {@code Page} is returned as the
+ * method reported it: it counts elements of other pages that have not been checked, so it is an
+ * upper bound of what the subject may see rather than an exact count.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface SpiceDbPostFilter {
+  String permission();
+
+  /** Consistency of the checks; {@code DEFAULT} uses {@code spicedb.consistency.mode}. */
+  ConsistencyMode consistency() default ConsistencyMode.DEFAULT;
+
+  /**
+   * Key selecting the SpiceDB cluster the checks go to, as {@link SpiceDbAuthorize#routingKey()};
+   * the expression cannot read {@code filterObject}.
+   */
+  String routingKey() default "";
+}
@@ -0,0 +1,266 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.LookupPermissionship;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SubjectReference;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+
+/**
+ * Filters the results of {@link SpiceDbPostFilter} methods. Results of up to {@code
+ * lookupThreshold} elements are checked through the {@link PermissionChecker} chain, in batches of
+ * {@code bulkBatchSize} concurrent checks that {@link BulkCheckDispatcher} turns into {@code
+ * CheckBulkPermissions} calls when batching is enabled; larger results are matched against the ids
+ * streamed back by a single {@code LookupResources} call. Elements whose check fails are removed.
+ */
+@Aspect
+public class SpiceDbPostFilterAspect {
+
+  private static final CheckPermissionResponse ALLOWED =
+      CheckPermissionResponse.newBuilder()
+          .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+          .build();
+  private static final CheckPermissionResponse DENIED =
+      CheckPermissionResponse.newBuilder()
+          .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+          .build();
+
+  private final PermissionChecker permissionChecker;
+  private final PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService;
+  private final AuthorizationPlans plans;
+  private final ObservationRegistry observationRegistry;
+  private final DecisionAuditLog auditLog;
+  private final SubjectResolver subjectResolver;
+  private final int lookupThreshold;
+  private final int bulkBatchSize;
+
+  public SpiceDbPostFilterAspect(
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      AuthorizationPlans plans,
+      int lookupThreshold,
+      int bulkBatchSize) {
+    this(
+        new GrpcPermissionChecker(permissionsService),
+        permissionsService,
+        plans,
+        ObservationRegistry.NOOP,
+        null,
+        null,
+        lookupThreshold,
+        bulkBatchSize);
+  }
+
+  /**
+   * @param auditLog receives every decision, may be {@code null}
+   * @param subjectResolver supplies the {@code {subject}} expression variable, may be {@code null}
+   */
+  public SpiceDbPostFilterAspect(
+      PermissionChecker permissionChecker,
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub permissionsService,
+      AuthorizationPlans plans,
+      ObservationRegistry observationRegistry,
+      DecisionAuditLog auditLog,
+      SubjectResolver subjectResolver,
+      int lookupThreshold,
+      int bulkBatchSize) {
+    this.permissionChecker = permissionChecker;
+    this.permissionsService = permissionsService;
+    this.plans = plans;
+    this.observationRegistry = observationRegistry;
+    this.auditLog = auditLog;
+    this.subjectResolver = subjectResolver;
+    this.lookupThreshold = lookupThreshold;
+    this.bulkBatchSize = bulkBatchSize;
+  }
+
+  @Around("@annotation(org.ilt.fga.SpiceDbPostFilter)")
+  public Object filter(ProceedingJoinPoint joinPoint) throws Throwable {
+    MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+    FilterPlan plan = plans.getFilterPlan(signature.getMethod());
+    // resolved before proceeding, on the calling thread where the security context is available
+    Object[] args = Arrays.copyOf(joinPoint.getArgs(), plan.getElementIndex() + 1);
+    if (plan.getSubjectIndex() >= 0) {
+      SubjectReference subject = subjectResolver != null ? subjectResolver.resolve() : null;
+      if (subject != null) {
+        args[plan.getSubjectIndex()] = subject.getObject().getObjectId();
+      }
+    }
+    Object result = joinPoint.proceed();
+    if (result == null) {
+      return null;
+    }
+
+    switch (plan.getContainerKind()) {
+      case LIST:
+        return filter(
+            result instanceof List<?> list ? list : new ArrayList<>((Collection<?>) result),
+            plan,
+            args);
+      case SET:
+        return new LinkedHashSet<>(filter(new ArrayList<>((Set<?>) result), plan, args));
+      case STREAM:
+        try (Stream<?> stream = (Stream<?>) result) {
+          return filter(stream.toList(), plan, args).stream();
+        }
+      default:
+        return PageFiltering.filter(result, elements -> filter(elements, plan, args));
+    }
+  }
+
+  List<Object> filter(List<?> elements, FilterPlan plan, Object[] args) {
+    if (elements.isEmpty()) {
+      return new ArrayList<>();
+    }
+    Observation observation =
+        AuthorizationObservations.authorize(
+            observationRegistry, plan.getMethod(), plan.getPermission().getPermission());
+    try (Observation.Scope scope = observation.openScope()) {
+      String routingKey = plan.resolveRoutingKey(args);
+      List<Object> allowed =
+          routingKey == null
+              ? filterObserved(elements, plan, args)
+              : SpiceDbRouting.with(routingKey, () -> filterObserved(elements, plan, args));
+      // allowed only when nothing had to be removed
+      AuthorizationObservations.decided(observation, allowed.size() == elements.size());
+      return allowed;
+    } catch (RuntimeException e) {
+      AuthorizationObservations.failed(observation, e);
+      throw e;
+    } finally {
+      observation.stop();
+    }
+  }
+
+  private List<Object> filterObserved(List<?> elements, FilterPlan plan, Object[] args) {
+    if (elements.size() > lookupThreshold) {
+      return filterByLookup(elements, plan, args);
+    }
+    return filterByCheck(elements, plan, args);
+  }
+
+  private List<Object> filterByCheck(List<?> elements, FilterPlan plan, Object[] args) {
+    Consistency consistency = plan.getConsistency().toConsistency();
+    PermissionPlan permission = plan.getPermission();
+    int elementIndex = plan.getElementIndex();
+    List<Object> allowed = new ArrayList<>(elements.size());
+
+    for (int start = 0; start < elements.size(); start += bulkBatchSize) {
+      List<?> batch = elements.subList(start, Math.min(elements.size(), start + bulkBatchSize));
+      List<CompletableFuture<CheckPermissionResponse>> checks = new ArrayList<>(batch.size());
+      for (Object element : batch) {
+        args[elementIndex] = element;
+        checks.add(check(plan, permission.buildRequest(args, consistency)));
+      }
+      for (int i = 0; i < batch.size(); i++) {
+        if (PermissionDecisions.isAllowed(await(checks.get(i)))) {
+          allowed.add(batch.get(i));
+        }
+      }
+    }
+    args[elementIndex] = null;
+    return allowed;
+  }
+
+  private CompletableFuture<CheckPermissionResponse> check(
+      FilterPlan plan, CheckPermissionRequest request) {
+    long start = System.nanoTime();
+    CompletableFuture<CheckPermissionResponse> check = permissionChecker.checkAsync(request);
+    if (auditLog == null) {
+      return check;
+    }
+    return PermissionDecisions.forwardCancel(
+        check.whenComplete(
+            (response, error) -> {
+              if (response != null) {
+                auditLog.record(plan.getMethod(), request, response, System.nanoTime() - start);
+              }
+            }),
+        check);
+  }
+
+  private List<Object> filterByLookup(List<?> elements, FilterPlan plan, Object[] args) {
+    PermissionPlan permission = plan.getPermission();
+    int elementIndex = plan.getElementIndex();
+
+    String[] ids = new String[elements.size()];
+    Set<String> candidates = new HashSet<>();
+    for (int i = 0; i < ids.length; i++) {
+      args[elementIndex] = elements.get(i);
+      ids[i] = permission.resolveObjectId(args);
+      candidates.add(ids[i]);
+    }
+
+    args[elementIndex] = null;
+    Consistency consistency = plan.getConsistency().toConsistency();
+    LookupResourcesRequest request =
+        LookupResourcesRequest.newBuilder()
+            .setResourceObjectType(permission.getObjectType())
+            .setPermission(permission.getPermission())
+            .setSubject(permission.buildSubject(args))
+            .setConsistency(consistency)
+            .build();
+
+    // only ids of the result are kept, however many resources the subject can see
+    long start = System.nanoTime();
+    Set<String> allowedIds = new HashSet<>();
+    Iterator<LookupResourcesResponse> responses = permissionsService.lookupResources(request);
+    while (responses.hasNext()) {
+      LookupResourcesResponse response = responses.next();
+      if (response.getPermissionship()
+              == LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION
+          && candidates.contains(response.getResourceObjectId())) {
+        allowedIds.add(response.getResourceObjectId());
+      }
+    }
+    long elapsed = System.nanoTime() - start;
+
+    List<Object> allowed = new ArrayList<>(allowedIds.size());
+    for (int i = 0; i < ids.length; i++) {
+      boolean granted = allowedIds.contains(ids[i]);
+      if (granted) {
+        allowed.add(elements.get(i));
+      }
+      if (auditLog != null) {
+        args[elementIndex] = elements.get(i);
+        auditLog.record(
+            plan.getMethod(),
+            permission.buildRequest(args, consistency),
+            granted ? ALLOWED : DENIED,
+            elapsed);
+      }
+    }
+    args[elementIndex] = null;
+    return allowed;
+  }
+
+  private static CheckPermissionResponse await(CompletableFuture<CheckPermissionResponse> check) {
+    try {
+      return check.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
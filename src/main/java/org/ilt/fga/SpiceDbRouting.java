@@ -0,0 +1,50 @@
+package org.ilt.fga;
+
+import java.util.function.Supplier;
+
+/**
+ * Holds the routing key, such as a tenant or a region, that {@link SpiceDbClusterRouter} selects
+ * the cluster of a call by. The key is bound to the current thread, for a whole request by {@link
+ * SpiceDbRoutingFilter} and for the checks of an annotated method by its {@code routingKey}; calls
+ * made on other threads only see it if it is handed over with {@link #bind(Supplier)}.
+ */
+public final class SpiceDbRouting {
+
+  private static final ThreadLocal<String> KEY = new ThreadLocal<>();
+
+  private SpiceDbRouting() {}
+
+  /** Returns the key bound to the current thread, or {@code null}. */
+  public static String get() {
+    return KEY.get();
+  }
+
+  public static void set(String key) {
+    if (key == null || key.isEmpty()) {
+      KEY.remove();
+    } else {
+      KEY.set(key);
+    }
+  }
+
+  public static void clear() {
+    KEY.remove();
+  }
+
+  /** Runs {@code action} with {@code key} bound, restoring the previous key afterwards. */
+  public static <T> T with(String key, Supplier<T> action) {
+    String previous = KEY.get();
+    set(key);
+    try {
+      return action.get();
+    } finally {
+      set(previous);
+    }
+  }
+
+  /** Returns {@code supplier} bound to the current key, to be run on another thread. */
+  static <T> Supplier<T> bind(Supplier<T> supplier) {
+    String key = KEY.get();
+    return key == null ? supplier : () -> with(key, supplier);
+  }
+}
@@ -0,0 +1,54 @@
+package org.ilt.fga;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Binds the routing key of the caller, such as its tenant or region, to {@link SpiceDbRouting}
+ * while the request is handled, so that every SpiceDB call made for it goes to the cluster serving
+ * that key. The key is resolved on the server by a {@link RoutingKeyResolver}, so the filter must
+ * run after authentication.
+ *
+ * <p>A trusted header, when configured, takes precedence over the resolved key. It lets a client
+ * pick the cluster, and with it the data its checks are decided against, so it is only meant for
+ * internal callers behind a gateway that strips the header from every external request.
+ */
+public class SpiceDbRoutingFilter extends OncePerRequestFilter {
+
+  public static final String DEFAULT_HEADER = "X-SpiceDB-Routing-Key";
+
+  private final RoutingKeyResolver resolver;
+  private final String trustedHeader;
+
+  public SpiceDbRoutingFilter(RoutingKeyResolver resolver) {
+    this(resolver, null);
+  }
+
+  /** @param trustedHeader the header read from trusted internal callers, or {@code null} */
+  public SpiceDbRoutingFilter(RoutingKeyResolver resolver, String trustedHeader) {
+    this.resolver = resolver;
+    this.trustedHeader = trustedHeader;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String key = trustedHeader != null ? request.getHeader(trustedHeader) : null;
+    if (key == null || key.isBlank()) {
+      key = resolver.resolve();
+    }
+    if (key != null && !key.isBlank()) {
+      SpiceDbRouting.set(key.trim());
+    }
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      SpiceDbRouting.clear();
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckBulkPermissionsResponseItem;
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.Precondition;
+import com.authzed.api.v1.ReadRelationshipsRequest;
+import com.authzed.api.v1.ReadRelationshipsResponse;
+import com.authzed.api.v1.ReadSchemaRequest;
+import com.authzed.api.v1.ReadSchemaResponse;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.RelationshipFilter;
+import com.authzed.api.v1.RelationshipUpdate;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.WatchRequest;
+import com.authzed.api.v1.WatchResponse;
+import com.authzed.api.v1.WriteRelationshipsRequest;
+import com.authzed.api.v1.WriteRelationshipsResponse;
+import com.authzed.api.v1.ZedToken;
+import java.util.List;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * Native-image hints for the SpiceDB API messages the starter exchanges. Protobuf reads message
+ * fields through the generated accessors reflectively, on the message and its builder.
+ */
+public class SpiceDbRuntimeHints implements RuntimeHintsRegistrar {
+
+  static final List<Class<?>> MESSAGES =
+      List.of(
+          CheckPermissionRequest.class,
+          CheckPermissionResponse.class,
+          CheckBulkPermissionsRequest.class,
+          CheckBulkPermissionsRequestItem.class,
+          CheckBulkPermissionsResponse.class,
+          CheckBulkPermissionsPair.class,
+          CheckBulkPermissionsResponseItem.class,
+          LookupResourcesRequest.class,
+          LookupResourcesResponse.class,
+          ReadSchemaRequest.class,
+          ReadSchemaResponse.class,
+          ReadRelationshipsRequest.class,
+          ReadRelationshipsResponse.class,
+          RelationshipFilter.class,
+          Relationship.class,
+          WatchRequest.class,
+          WatchResponse.class,
+          RelationshipUpdate.class,
+          WriteRelationshipsRequest.class,
+          WriteRelationshipsResponse.class,
+          Precondition.class,
+          Consistency.class,
+          ObjectReference.class,
+          SubjectReference.class,
+          ZedToken.class);
+
+  private static final MemberCategory[] MESSAGE_MEMBERS = {
+    MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS
+  };
+
+  @Override
+  public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+    for (Class<?> message : MESSAGES) {
+      hints.reflection().registerType(message, MESSAGE_MEMBERS);
+      hints
+          .reflection()
+          .registerType(TypeReference.of(message.getName() + "$Builder"), MESSAGE_MEMBERS);
+    }
+    // the routed clusters are bound from the environment through the record constructor
+    hints
+        .reflection()
+        .registerType(
+            SpiceDbConfig.ClusterProperties.class,
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+            MemberCategory.INVOKE_DECLARED_METHODS);
+  }
+}
@@ -0,0 +1,11 @@
+package org.ilt.fga;
+
+/**
+ * Thrown instead of waiting on SpiceDB when a check is rejected by {@link CheckResilience}, which
+ * denies access rather than letting callers queue up.
+ */
+public class SpiceDbUnavailableException extends FgaAuthorizationException {
+  public SpiceDbUnavailableException(String message) {
+    super(message);
+  }
+}
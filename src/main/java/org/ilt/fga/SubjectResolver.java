@@ -0,0 +1,15 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.SubjectReference;
+
+/**
+ * Supplies the subject of the current caller, so that it need not be passed to every annotated
+ * method. Permission expressions read its id as {@code {subject}}, e.g. {@code
+ * document:{document.id}#view@user:{subject}}, unless the method has a parameter of that name.
+ */
+@FunctionalInterface
+public interface SubjectResolver {
+
+  /** The subject of the current caller, or {@code null} when there is none. */
+  SubjectReference resolve();
+}
@@ -0,0 +1,31 @@
+package org.ilt.fga;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers {@link RelationshipWriter} writes to the end of the current Spring transaction. Kept
+ * separate so that spring-tx is only loaded when transactional writes are enabled.
+ */
+final class TransactionalWrites {
+
+  private TransactionalWrites() {}
+
+  static boolean isActive() {
+    return TransactionSynchronizationManager.isSynchronizationActive();
+  }
+
+  static void afterCommit(Runnable committed, Runnable rolledBack) {
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCompletion(int status) {
+            if (status == STATUS_COMMITTED) {
+              committed.run();
+            } else {
+              rolledBack.run();
+            }
+          }
+        });
+  }
+}
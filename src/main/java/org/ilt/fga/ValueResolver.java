@@ -0,0 +1,10 @@
+package org.ilt.fga;
+
+@FunctionalInterface
+public interface ValueResolver {
+  String resolve(Object[] args);
+
+  static ValueResolver literal(String value) {
+    return args -> value;
+  }
+}
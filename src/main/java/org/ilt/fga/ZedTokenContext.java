@@ -0,0 +1,187 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ZedToken;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Holds the ZedToken that {@link ConsistencyMode#AT_LEAST_AS_FRESH} and {@link
+ * ConsistencyMode#AT_EXACT_SNAPSHOT} checks are evaluated at. The token is bound to the current
+ * thread, typically by {@link ZedTokenFilter} for the duration of a request; checks started on
+ * other threads only see it if it is set there too. Writes queued by {@link RelationshipWriter}
+ * record their token in the context of the thread that queued them once they complete, provided
+ * that thread has one; writes from threads outside of a request leave no token behind.
+ *
+ * <p>A token {@link #received} from a client is only honoured as a lower bound: evaluating at its
+ * exact snapshot would let the client replay an old one, e.g. from before its access was revoked.
+ */
+public final class ZedTokenContext {
+
+  private static final ThreadLocal<Scope> SCOPE = new ThreadLocal<>();
+
+  private ZedTokenContext() {}
+
+  /** Returns the token bound to the current thread, or {@code null}. */
+  public static ZedToken get() {
+    Bound bound = bound();
+    return bound == null ? null : bound.token;
+  }
+
+  /** Binds a token the application obtained from SpiceDB itself. */
+  public static void set(ZedToken token) {
+    bind(token, true);
+  }
+
+  /**
+   * Binds a token supplied by a client, which {@link ConsistencyMode#AT_EXACT_SNAPSHOT} checks
+   * treat as {@link ConsistencyMode#AT_LEAST_AS_FRESH}.
+   */
+  public static void received(ZedToken token) {
+    bind(token, false);
+  }
+
+  /** Whether the bound token was obtained from SpiceDB, rather than supplied by a client. */
+  static boolean isServerIssued() {
+    Bound bound = bound();
+    return bound != null && bound.serverIssued;
+  }
+
+  /**
+   * The consistency of checks at the bound token, built once per token and reused by the checks
+   * that follow, or {@code null} when no token is bound. Asking for an exact snapshot of a client
+   * token gives {@code at_least_as_fresh}.
+   */
+  static Consistency consistency(boolean exactSnapshot) {
+    Bound bound = bound();
+    if (bound == null) {
+      return null;
+    }
+    if (exactSnapshot && bound.serverIssued) {
+      if (bound.atExactSnapshot == null) {
+        bound.atExactSnapshot = Consistency.newBuilder().setAtExactSnapshot(bound.token).build();
+      }
+      return bound.atExactSnapshot;
+    }
+    if (bound.atLeastAsFresh == null) {
+      bound.atLeastAsFresh = Consistency.newBuilder().setAtLeastAsFresh(bound.token).build();
+    }
+    return bound.atLeastAsFresh;
+  }
+
+  private static Bound bound() {
+    Scope scope = SCOPE.get();
+    return scope == null ? null : scope.bound;
+  }
+
+  private static Scope scope() {
+    Scope scope = SCOPE.get();
+    if (scope == null) {
+      scope = new Scope();
+      SCOPE.set(scope);
+    }
+    return scope;
+  }
+
+  private static void bind(ZedToken token, boolean serverIssued) {
+    if (token == null || token.getToken().isEmpty()) {
+      Scope scope = SCOPE.get();
+      if (scope != null) {
+        scope.bound = null;
+      }
+    } else {
+      scope().bound = new Bound(token, serverIssued);
+    }
+  }
+
+  /**
+   * Records the token returned by a relationship write, so that later checks in this request see
+   * the write and the token is handed on to the caller's next request.
+   */
+  public static void written(ZedToken token) {
+    scope().written(token);
+  }
+
+  /**
+   * Returns a callback that records a token as {@link #written} in the context of the current
+   * thread, even when called from another thread, e.g. once an asynchronous write completes. A
+   * thread without a context gets a callback that does nothing, rather than a context that nothing
+   * would ever clear and that would pin its later checks to the token.
+   */
+  static Consumer<ZedToken> writtenLater() {
+    Scope scope = SCOPE.get();
+    return scope == null ? token -> {} : scope::written;
+  }
+
+  static void onWrite(Consumer<ZedToken> listener) {
+    scope().listener = listener;
+  }
+
+  /**
+   * Returns {@code supplier} bound to the current token, to be run on another thread. The token is
+   * only seen while it runs; writes it records do not reach the current thread.
+   */
+  static <T> Supplier<T> bind(Supplier<T> supplier) {
+    Bound bound = bound();
+    if (bound == null) {
+      return supplier;
+    }
+    return () -> {
+      Scope previous = SCOPE.get();
+      Scope scope = new Scope();
+      scope.bound = bound;
+      SCOPE.set(scope);
+      try {
+        return supplier.get();
+      } finally {
+        if (previous == null) {
+          SCOPE.remove();
+        } else {
+          SCOPE.set(previous);
+        }
+      }
+    };
+  }
+
+  public static void clear() {
+    Scope scope = SCOPE.get();
+    if (scope != null) {
+      // writes completing after the request has ended must not reach its recycled response
+      scope.listener = null;
+      SCOPE.remove();
+    }
+  }
+
+  /**
+   * The context of one thread, typically for one request. Writes completing on other threads
+   * update it through {@link #writtenLater}, hence the volatile fields.
+   */
+  private static final class Scope {
+    private volatile Bound bound;
+    private volatile Consumer<ZedToken> listener;
+
+    private void written(ZedToken token) {
+      if (token == null || token.getToken().isEmpty()) {
+        return;
+      }
+      bound = new Bound(token, true);
+      Consumer<ZedToken> current = listener;
+      if (current != null) {
+        current.accept(token);
+      }
+    }
+  }
+
+  /** A token bound to one thread, with the consistencies built for it so far. */
+  private static final class Bound {
+    private final ZedToken token;
+    private final boolean serverIssued;
+    private Consistency atLeastAsFresh;
+    private Consistency atExactSnapshot;
+
+    private Bound(ZedToken token, boolean serverIssued) {
+      this.token = token;
+      this.serverIssued = serverIssued;
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package org.ilt.fga;
+
+import com.authzed.api.v1.ZedToken;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Carries the ZedToken of the latest write across requests. The token sent by the client in the
+ * configured header is bound to {@link ZedTokenContext} while the request is handled, and a token
+ * recorded with {@link ZedTokenContext#written} is returned in the same header so the client can
+ * send it with its next request. Client tokens are only used as a lower bound of freshness, never
+ * as an exact snapshot.
+ */
+public class ZedTokenFilter extends OncePerRequestFilter {
+
+  public static final String DEFAULT_HEADER = "X-SpiceDB-ZedToken";
+
+  private final String header;
+
+  public ZedTokenFilter() {
+    this(DEFAULT_HEADER);
+  }
+
+  public ZedTokenFilter(String header) {
+    this.header = header;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String token = request.getHeader(header);
+    if (token != null && !token.isBlank()) {
+      ZedTokenContext.received(ZedToken.newBuilder().setToken(token.trim()).build());
+    }
+    ZedTokenContext.onWrite(
+        written -> {
+          if (!response.isCommitted()) {
+            response.setHeader(header, written.getToken());
+          }
+        });
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      ZedTokenContext.clear();
+    }
+  }
+}
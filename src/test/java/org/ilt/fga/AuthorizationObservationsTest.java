@@ -0,0 +1,109 @@
+package org.ilt.fga;
+
+import static io.micrometer.observation.tck.TestObservationRegistryAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionResponse;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import java.lang.reflect.Method;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthorizationObservationsTest {
+
+  @Mock private ProceedingJoinPoint joinPoint;
+
+  @Mock private MethodSignature methodSignature;
+
+  private final TestObservationRegistry registry = TestObservationRegistry.create();
+
+  private CheckPermissionResponse.Permissionship permissionship;
+
+  private SpiceDbAuthorizeAspect aspect;
+
+  @BeforeEach
+  void setUp() throws NoSuchMethodException {
+    PermissionChecker checker =
+        new ObservedPermissionChecker(
+            request ->
+                CheckPermissionResponse.newBuilder().setPermissionship(permissionship).build(),
+            registry);
+    aspect = new SpiceDbAuthorizeAspect(checker, new AuthorizationPlans(), registry);
+
+    Method method = TestClass.class.getMethod("testMethod", User.class);
+    when(joinPoint.getSignature()).thenReturn(methodSignature);
+    when(methodSignature.getMethod()).thenReturn(method);
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new User("123", "456")});
+  }
+
+  @Test
+  void shouldObserveAllowedAuthorization() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+
+    aspect.authorize(joinPoint);
+
+    assertThat(registry)
+        .hasObservationWithNameEqualTo(AuthorizationObservations.AUTHORIZE)
+        .that()
+        .hasLowCardinalityKeyValue(AuthorizationObservations.METHOD, "TestClass.testMethod")
+        .hasLowCardinalityKeyValue(AuthorizationObservations.PERMISSION, "READ")
+        .hasLowCardinalityKeyValue(
+            AuthorizationObservations.OUTCOME, AuthorizationObservations.ALLOWED)
+        .hasBeenStopped();
+    assertThat(registry)
+        .hasObservationWithNameEqualTo(AuthorizationObservations.RESOLVE)
+        .that()
+        .hasBeenStopped();
+    assertThat(registry)
+        .hasObservationWithNameEqualTo(AuthorizationObservations.CHECK)
+        .that()
+        .hasLowCardinalityKeyValue(AuthorizationObservations.RESOURCE_TYPE, "account")
+        .hasParentObservationContextMatching(
+            context -> context.getName().equals(AuthorizationObservations.AUTHORIZE))
+        .hasBeenStopped();
+  }
+
+  @Test
+  void shouldObserveDeniedAuthorization() {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+
+    assertThrows(UnauthorizedException.class, () -> aspect.authorize(joinPoint));
+
+    assertThat(registry)
+        .hasObservationWithNameEqualTo(AuthorizationObservations.AUTHORIZE)
+        .that()
+        .hasLowCardinalityKeyValue(
+            AuthorizationObservations.OUTCOME, AuthorizationObservations.DENIED)
+        .hasBeenStopped();
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(permission = "account:{user.accountId}#READ@user:{user.id}")
+    public void testMethod(User user) {}
+  }
+
+  private static class User {
+    private final String id;
+    private final String accountId;
+
+    public User(String id, String accountId) {
+      this.id = id;
+      this.accountId = accountId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getAccountId() {
+      return accountId;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import java.lang.reflect.Method;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+public class AuthorizationPlansTest {
+
+  private final AuthorizationPlans plans = new AuthorizationPlans();
+
+  @Test
+  void shouldCompilePermissionOncePerMethod() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("testMethod", User.class);
+
+    AuthorizationPlan authorizationPlan = plans.get(method);
+    PermissionPlan plan = authorizationPlan.getPermissions().get(0);
+
+    assertThat(plans.get(method)).isSameAs(authorizationPlan);
+    assertThat(authorizationPlan.isSinglePermission()).isTrue();
+    assertThat(plan.getObjectType()).isEqualTo("account");
+    assertThat(plan.getPermission()).isEqualTo("READ");
+    assertThat(plan.getSubjectType()).isEqualTo("user");
+  }
+
+  @Test
+  void shouldResolveIdsFromArguments() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("testMethod", User.class);
+    Object[] args = {new User("123", "456")};
+
+    PermissionPlan plan = plans.get(method).getPermissions().get(0);
+
+    assertThat(plan.resolveObjectId(args)).isEqualTo("456");
+    assertThat(plan.resolveSubjectId(args)).isEqualTo("123");
+  }
+
+  @Test
+  void shouldReuseReferencesOfRecurringIds() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("testMethod", User.class);
+    PermissionPlan plan = plans.get(method).getPermissions().get(0);
+    Consistency consistency = ConsistencyMode.MINIMIZE_LATENCY.toConsistency();
+
+    CheckPermissionRequest first =
+        plan.buildRequest(new Object[] {new User("123", "456")}, consistency);
+    CheckPermissionRequest second =
+        plan.buildRequest(new Object[] {new User("123", "456")}, consistency);
+    CheckPermissionRequest other =
+        plan.buildRequest(new Object[] {new User("789", "456")}, consistency);
+
+    assertThat(second.getResource()).isSameAs(first.getResource());
+    assertThat(second.getSubject()).isSameAs(first.getSubject());
+    assertThat(other.getSubject()).isNotSameAs(first.getSubject());
+    assertThat(first)
+        .isEqualTo(
+            CheckPermissionRequest.newBuilder()
+                .setResource(
+                    ObjectReference.newBuilder().setObjectType("account").setObjectId("456"))
+                .setPermission("READ")
+                .setSubject(
+                    SubjectReference.newBuilder()
+                        .setObject(
+                            ObjectReference.newBuilder().setObjectType("user").setObjectId("123")))
+                .setConsistency(consistency)
+                .build());
+  }
+
+  @Test
+  void shouldResolveNestedExpressionsInCompiledMode() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("nestedMethod", User.class);
+    User user = new User("123", "456");
+    user.setAccount(new Account("ac1234"));
+    Object[] args = {user};
+
+    PermissionPlan plan =
+        new AuthorizationPlans(SpelCompilerMode.MIXED).get(method).getPermissions().get(0);
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(plan.resolveObjectId(args)).isEqualTo("ac1234");
+      assertThat(plan.resolveSubjectId(args)).isEqualTo("123");
+    }
+  }
+
+  @Test
+  void shouldFailOnNullArgument() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("testMethod", User.class);
+
+    PermissionPlan plan = plans.get(method).getPermissions().get(0);
+
+    assertThrows(FgaAuthorizationException.class, () -> plan.resolveObjectId(new Object[] {null}));
+  }
+
+  @Test
+  void shouldReadRecordsAndPublicFieldsButNeverPrivateFields() throws NoSuchMethodException {
+    Object[] args = {new Folder("f1"), new Secret("s1", "u1")};
+
+    PermissionPlan folder =
+        plans
+            .get(TestClass.class.getMethod("folderMethod", Folder.class, Secret.class))
+            .getPermissions()
+            .get(0);
+    PermissionPlan secret =
+        plans
+            .get(TestClass.class.getMethod("secretMethod", Folder.class, Secret.class))
+            .getPermissions()
+            .get(0);
+
+    assertThat(folder.resolveObjectId(args)).isEqualTo("f1");
+    assertThat(folder.resolveSubjectId(args)).isEqualTo("u1");
+    // as with SpEL, a private field without a getter cannot be read
+    assertThrows(FgaAuthorizationException.class, () -> secret.resolveObjectId(args));
+  }
+
+  @Test
+  void shouldCompileEveryPermissionOfAMethod() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("multiMethod", User.class);
+
+    AuthorizationPlan plan = plans.get(method);
+
+    assertThat(plan.getOperator()).isEqualTo(SpiceDbAuthorize.Operator.OR);
+    assertThat(plan.getPermissions())
+        .extracting(PermissionPlan::getPermission)
+        .containsExactly("READ", "ADMIN");
+  }
+
+  @Test
+  void shouldRejectInvalidPermissionFormat() throws NoSuchMethodException {
+    Method method = TestClass.class.getMethod("invalidMethod", User.class);
+
+    assertThrows(UnauthorizedException.class, () -> plans.get(method));
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(permission = "account:{user.accountId}#READ@user:{user.id}")
+    public void testMethod(User user) {}
+
+    @SpiceDbAuthorize(permission = "account:{user.account.accountId}#READ@user:{user.id}")
+    public void nestedMethod(User user) {}
+
+    @SpiceDbAuthorize(
+        permissions = {
+          "account:{user.accountId}#READ@user:{user.id}",
+          "account:{user.accountId}#ADMIN@user:{user.id}"
+        },
+        operator = SpiceDbAuthorize.Operator.OR)
+    public void multiMethod(User user) {}
+
+    @SpiceDbAuthorize(permission = "invalid:permission:format")
+    public void invalidMethod(User user) {}
+
+    @SpiceDbAuthorize(permission = "folder:{folder.id}#READ@user:{secret.owner}")
+    public void folderMethod(Folder folder, Secret secret) {}
+
+    @SpiceDbAuthorize(permission = "secret:{secret.id}#READ@user:{secret.owner}")
+    public void secretMethod(Folder folder, Secret secret) {}
+  }
+
+  public record Folder(String id) {}
+
+  public static class Secret {
+    public final String owner;
+    private final String id;
+
+    public Secret(String id, String owner) {
+      this.id = id;
+      this.owner = owner;
+    }
+  }
+
+  private static class User {
+    private final String id;
+    private final String accountId;
+    private Account account;
+
+    public User(String id, String accountId) {
+      this.id = id;
+      this.accountId = accountId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getAccountId() {
+      return accountId;
+    }
+
+    public Account getAccount() {
+      return account;
+    }
+
+    public void setAccount(Account account) {
+      this.account = account;
+    }
+  }
+
+  public static class Account {
+    private final String accountId;
+
+    public Account(String accountId) {
+      this.accountId = accountId;
+    }
+
+    public String getAccountId() {
+      return accountId;
+    }
+  }
+}
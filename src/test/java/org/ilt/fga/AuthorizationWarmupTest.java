@@ -0,0 +1,141 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ReadSchemaRequest;
+import com.authzed.api.v1.ReadSchemaResponse;
+import com.authzed.api.v1.SchemaServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+public class AuthorizationWarmupTest {
+
+  private static final String SCHEMA =
+      """
+      definition user {}
+
+      // documents belong to folders
+      definition document {
+        relation viewer: user
+        permission view = viewer
+      }
+      """;
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final List<CheckPermissionRequest> checks = new ArrayList<>();
+
+  @Test
+  void shouldCompileAnnotatedBeanMethodsAtStartup() {
+    AuthorizationPlans plans = new AuthorizationPlans();
+    AuthorizationWarmup warmup = warmup(plans, null, ValidService.class);
+
+    List<PermissionPlan> permissions = warmup.compileAll();
+
+    assertThat(permissions)
+        .extracting(PermissionPlan::getPermission)
+        .containsExactlyInAnyOrder("view", "edit");
+  }
+
+  @Test
+  void shouldSkipMalformedPermissionWithoutFailingStartup() {
+    AuthorizationWarmup warmup = warmup(new AuthorizationPlans(), null, InvalidService.class);
+
+    assertThat(warmup.compileAll()).isEmpty();
+    warmup.afterSingletonsInstantiated();
+    assertThat(checks).isEmpty();
+  }
+
+  @Test
+  void shouldRejectPermissionsMissingFromSchema() throws IOException {
+    AuthorizationWarmup warmup =
+        warmup(new AuthorizationPlans(), schemaService(), ValidService.class);
+
+    assertThatThrownBy(warmup::afterSingletonsInstantiated)
+        .isInstanceOf(FgaAuthorizationException.class)
+        .hasMessageContaining("'document' has no permission 'edit'")
+        .hasMessageNotContaining("'view'");
+  }
+
+  @Test
+  void shouldWarmUpCheckerWithThrowawayChecks() {
+    AuthorizationWarmup warmup = warmup(new AuthorizationPlans(), null, ValidService.class);
+
+    warmup.afterSingletonsInstantiated();
+
+    assertThat(checks).hasSize(3);
+    assertThat(checks.get(0).getResource().getObjectId()).isEqualTo(AuthorizationWarmup.WARMUP_ID);
+  }
+
+  private AuthorizationWarmup warmup(
+      AuthorizationPlans plans,
+      SchemaServiceGrpc.SchemaServiceBlockingStub schemaService,
+      Class<?> beanClass) {
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerBeanDefinition("service", new RootBeanDefinition(beanClass));
+    PermissionChecker checker =
+        request -> {
+          checks.add(request);
+          return CheckPermissionResponse.getDefaultInstance();
+        };
+    return new AuthorizationWarmup(beanFactory, plans, checker, null, schemaService, 3);
+  }
+
+  private SchemaServiceGrpc.SchemaServiceBlockingStub schemaService() throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(
+                new SchemaServiceGrpc.SchemaServiceImplBase() {
+                  @Override
+                  public void readSchema(
+                      ReadSchemaRequest request, StreamObserver<ReadSchemaResponse> observer) {
+                    observer.onNext(ReadSchemaResponse.newBuilder().setSchemaText(SCHEMA).build());
+                    observer.onCompleted();
+                  }
+                })
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    return SchemaServiceGrpc.newBlockingStub(channel);
+  }
+
+  public static class ValidService {
+    @SpiceDbAuthorize(permission = "document:{user.id}#view@user:{user.id}")
+    public String read(User user) {
+      return "ok";
+    }
+
+    @SpiceDbAuthorize(permission = "document:{user.id}#edit@user:{user.id}")
+    public String write(User user) {
+      return "ok";
+    }
+  }
+
+  public static class InvalidService {
+    @SpiceDbAuthorize(permission = "document:{user.id}view@user")
+    public String broken(User user) {
+      return "ok";
+    }
+  }
+
+  public static class User {
+    public String getId() {
+      return "u1";
+    }
+  }
+}
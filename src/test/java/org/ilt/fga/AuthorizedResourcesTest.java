@@ -0,0 +1,165 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.LookupPermissionship;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+public class AuthorizedResourcesTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final AtomicReference<LookupResourcesRequest> lastRequest = new AtomicReference<>();
+
+  private AuthorizedResources resources;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    resources = new AuthorizedResources(stub(), new AuthorizationPlans());
+  }
+
+  @Test
+  void shouldStreamPermittedIds() {
+    try (Stream<String> ids = resources.ids("document", "view", "user:{user.id}", new User("u1"))) {
+      assertThat(ids.collect(Collectors.toList())).containsExactly("doc1", "doc2", "doc4", "doc5");
+    }
+
+    LookupResourcesRequest request = lastRequest.get();
+    assertThat(request.getResourceObjectType()).isEqualTo("document");
+    assertThat(request.getPermission()).isEqualTo("view");
+    assertThat(request.getSubject().getObject().getObjectType()).isEqualTo("user");
+    assertThat(request.getSubject().getObject().getObjectId()).isEqualTo("u1");
+  }
+
+  @Test
+  void shouldStreamIdsInChunks() {
+    try (Stream<List<String>> chunks =
+        resources.chunks(3, "document", "view", "user:{user.id}", new User("u1"))) {
+      assertThat(chunks.collect(Collectors.toList()))
+          .containsExactly(List.of("doc1", "doc2", "doc4"), List.of("doc5"));
+    }
+  }
+
+  @Test
+  void shouldAcceptLiteralSubject() {
+    try (Stream<String> ids = resources.ids("document", "view", "user:admin")) {
+      assertThat(ids.count()).isEqualTo(4);
+    }
+    assertThat(lastRequest.get().getSubject().getObject().getObjectId()).isEqualTo("admin");
+  }
+
+  @Test
+  void shouldEmitIdsOnDemandAsFlux() {
+    StepVerifier.create(resources.flux("document", "view", "user:{user.id}", new User("u1")), 2)
+        .expectNext("doc1", "doc2")
+        .thenRequest(10)
+        .expectNext("doc4", "doc5")
+        .verifyComplete();
+  }
+
+  @Test
+  void shouldLookUpFluxWithTheKeyAndTokenBoundWhenItWasBuilt() throws IOException {
+    AtomicReference<String> routingKey = new AtomicReference<>();
+    ClientInterceptor recordRouting =
+        new ClientInterceptor() {
+          @Override
+          public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+              MethodDescriptor<ReqT, RespT> method, CallOptions options, Channel next) {
+            routingKey.set(SpiceDbRouting.get());
+            return next.newCall(method, options);
+          }
+        };
+    AuthorizedResources routed =
+        new AuthorizedResources(
+            stub().withInterceptors(recordRouting),
+            new AuthorizationPlans(SpelCompilerMode.OFF, ConsistencyMode.AT_LEAST_AS_FRESH));
+    ZedToken token = ZedToken.newBuilder().setToken("t1").build();
+    ZedTokenContext.set(token);
+    Flux<String> ids;
+    try {
+      ids = SpiceDbRouting.with("acme", () -> routed.flux("document", "view", "user:admin"));
+    } finally {
+      ZedTokenContext.clear();
+    }
+
+    StepVerifier.create(ids).expectNextCount(4).verifyComplete();
+
+    assertThat(routingKey).hasValue("acme");
+    assertThat(lastRequest.get().getConsistency().getAtLeastAsFresh()).isEqualTo(token);
+  }
+
+  @Test
+  void shouldRejectInvalidSubject() {
+    assertThatThrownBy(() -> resources.ids("document", "view", "user#{user.id}", new User("u1")))
+        .isInstanceOf(UnauthorizedException.class);
+  }
+
+  private PermissionsServiceGrpc.PermissionsServiceBlockingStub stub() throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(new LookupService())
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    return PermissionsServiceGrpc.newBlockingStub(channel);
+  }
+
+  public static class User {
+    private final String id;
+
+    public User(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  private class LookupService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+
+    @Override
+    public void lookupResources(
+        LookupResourcesRequest request, StreamObserver<LookupResourcesResponse> observer) {
+      lastRequest.set(request);
+      for (int i = 1; i <= 5; i++) {
+        observer.onNext(
+            LookupResourcesResponse.newBuilder()
+                .setResourceObjectId("doc" + i)
+                .setPermissionship(
+                    i == 3
+                        ? LookupPermissionship.LOOKUP_PERMISSIONSHIP_CONDITIONAL_PERMISSION
+                        : LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION)
+                .build());
+      }
+      observer.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,221 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckBulkPermissionsResponseItem;
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SubjectReference;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class BulkCheckDispatcherTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final AtomicInteger bulkCalls = new AtomicInteger();
+
+  private final AtomicInteger unaryCalls = new AtomicInteger();
+
+  private BulkCheckDispatcher dispatcher;
+
+  @AfterEach
+  void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  void shouldSendConcurrentChecksAsOneBulkRequest() throws Exception {
+    dispatcher =
+        new BulkCheckDispatcher(stub(new BulkService(true)), Duration.ofMillis(200), 10, true);
+
+    List<CheckPermissionResponse> responses = checkConcurrently("doc1", "secret", "doc2");
+
+    assertThat(bulkCalls).hasValue(1);
+    assertThat(unaryCalls).hasValue(0);
+    assertThat(responses)
+        .extracting(CheckPermissionResponse::getPermissionship)
+        .containsExactly(
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION,
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION,
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION);
+  }
+
+  @Test
+  void shouldSendBatchAsSoonAsItIsFull() throws Exception {
+    dispatcher =
+        new BulkCheckDispatcher(stub(new BulkService(true)), Duration.ofMinutes(1), 2, true);
+
+    List<CheckPermissionResponse> responses = checkConcurrently("doc1", "doc2");
+
+    assertThat(bulkCalls).hasValue(1);
+    assertThat(responses).hasSize(2);
+  }
+
+  @Test
+  void shouldFallBackToUnaryWhenBulkIsUnavailable() throws Exception {
+    dispatcher =
+        new BulkCheckDispatcher(stub(new BulkService(false)), Duration.ofMillis(200), 10, true);
+
+    List<CheckPermissionResponse> responses = checkConcurrently("doc1", "secret");
+
+    assertThat(unaryCalls).hasValue(2);
+    assertThat(responses)
+        .extracting(CheckPermissionResponse::getPermissionship)
+        .containsExactly(
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION,
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION);
+  }
+
+  @Test
+  void shouldMatchResultsToChecksByRequestItem() throws Exception {
+    dispatcher =
+        new BulkCheckDispatcher(
+            stub(new BulkService(true, true)), Duration.ofMillis(200), 10, true);
+
+    List<CheckPermissionResponse> responses = checkConcurrently("doc1", "secret", "doc2");
+
+    assertThat(bulkCalls).hasValue(1);
+    assertThat(responses)
+        .extracting(CheckPermissionResponse::getPermissionship)
+        .containsExactly(
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION,
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION,
+            CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION);
+  }
+
+  @Test
+  void shouldFailQueuedChecksOnClose() throws Exception {
+    dispatcher =
+        new BulkCheckDispatcher(stub(new BulkService(true)), Duration.ofMinutes(1), 10, true);
+
+    CompletableFuture<CheckPermissionResponse> queued = dispatcher.checkAsync(request("doc1"));
+    dispatcher.close();
+
+    assertThat(queued).isCompletedExceptionally();
+    assertThat(dispatcher.checkAsync(request("doc2"))).isCompletedExceptionally();
+    assertThat(bulkCalls).hasValue(0);
+  }
+
+  private List<CheckPermissionResponse> checkConcurrently(String... documentIds)
+      throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(documentIds.length);
+    try {
+      List<Future<CheckPermissionResponse>> futures = new ArrayList<>();
+      for (String documentId : documentIds) {
+        futures.add(executor.submit(() -> dispatcher.check(request(documentId))));
+      }
+      List<CheckPermissionResponse> responses = new ArrayList<>();
+      for (Future<CheckPermissionResponse> future : futures) {
+        responses.add(future.get(5, TimeUnit.SECONDS));
+      }
+      return responses;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private PermissionsServiceGrpc.PermissionsServiceBlockingStub stub(BulkService service)
+      throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(service)
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    return PermissionsServiceGrpc.newBlockingStub(channel);
+  }
+
+  private static CheckPermissionResponse.Permissionship decide(ObjectReference resource) {
+    return "secret".equals(resource.getObjectId())
+        ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION
+        : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+  }
+
+  private static CheckPermissionRequest request(String documentId) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(documentId))
+        .setPermission("view")
+        .setSubject(
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId("u1")))
+        .build();
+  }
+
+  private class BulkService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+    private final boolean bulkAvailable;
+    private final boolean reversed;
+
+    private BulkService(boolean bulkAvailable) {
+      this(bulkAvailable, false);
+    }
+
+    private BulkService(boolean bulkAvailable, boolean reversed) {
+      this.bulkAvailable = bulkAvailable;
+      this.reversed = reversed;
+    }
+
+    @Override
+    public void checkPermission(
+        CheckPermissionRequest request, StreamObserver<CheckPermissionResponse> observer) {
+      unaryCalls.incrementAndGet();
+      observer.onNext(
+          CheckPermissionResponse.newBuilder()
+              .setPermissionship(decide(request.getResource()))
+              .build());
+      observer.onCompleted();
+    }
+
+    @Override
+    public void checkBulkPermissions(
+        CheckBulkPermissionsRequest request,
+        StreamObserver<CheckBulkPermissionsResponse> observer) {
+      if (!bulkAvailable) {
+        observer.onError(Status.UNIMPLEMENTED.asRuntimeException());
+        return;
+      }
+      bulkCalls.incrementAndGet();
+      CheckBulkPermissionsResponse.Builder response = CheckBulkPermissionsResponse.newBuilder();
+      List<CheckBulkPermissionsRequestItem> items = new ArrayList<>(request.getItemsList());
+      if (reversed) {
+        Collections.reverse(items);
+      }
+      for (CheckBulkPermissionsRequestItem item : items) {
+        response.addPairs(
+            CheckBulkPermissionsPair.newBuilder()
+                .setRequest(item)
+                .setItem(
+                    CheckBulkPermissionsResponseItem.newBuilder()
+                        .setPermissionship(decide(item.getResource()))));
+      }
+      observer.onNext(response.build());
+      observer.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.ZedToken;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CachingPermissionCheckerTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  private PermissionDecisionCache cache;
+
+  private CachingPermissionChecker checker;
+
+  @BeforeEach
+  void setUp() {
+    cache = new PermissionDecisionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    checker =
+        new CachingPermissionChecker(
+            request -> {
+              calls.incrementAndGet();
+              return CheckPermissionResponse.newBuilder()
+                  .setPermissionship(
+                      CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+                  .setCheckedAt(ZedToken.newBuilder().setToken("t1"))
+                  .build();
+            },
+            cache);
+  }
+
+  @Test
+  void shouldServeRepeatedChecksFromCache() {
+    checker.check(request("doc1"));
+    CheckPermissionResponse response = checker.check(request("doc1"));
+
+    assertThat(response.getCheckedAt().getToken()).isEqualTo("t1");
+    assertThat(calls).hasValue(1);
+    assertThat(cache.hitCount()).isEqualTo(1);
+    assertThat(cache.missCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeyOnTheWholeTuple() {
+    checker.check(request("doc1"));
+    checker.check(request("doc2"));
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldKeyOnTheRoutingKey() {
+    checker.check(request("doc1"));
+    SpiceDbRouting.with("acme", () -> checker.check(request("doc1")));
+    SpiceDbRouting.with("acme", () -> checker.check(request("doc1")));
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldBypassCacheForFullConsistency() {
+    checker.check(request("doc1"));
+    checker.check(
+        request("doc1").toBuilder()
+            .setConsistency(Consistency.newBuilder().setFullyConsistent(true))
+            .build());
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldOnlyServeSnapshotRequestsCheckedAtTheSameToken() {
+    checker.check(request("doc1"));
+
+    checker.check(atExactSnapshot("doc1", "t1"));
+    assertThat(calls).hasValue(1);
+
+    checker.check(atExactSnapshot("doc1", "t2"));
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldDropDecisionsOnWrite() {
+    checker.check(request("doc1"));
+    cache.invalidate(ZedToken.newBuilder().setToken("t2").build());
+    checker.check(request("doc1"));
+
+    assertThat(calls).hasValue(2);
+    assertThat(cache.getLastWrite().getToken()).isEqualTo("t2");
+  }
+
+  @Test
+  void shouldNotServeDecisionsOlderThanMaxStaleness() {
+    cache = new PermissionDecisionCache(100, Duration.ofMinutes(1), Duration.ZERO);
+    checker =
+        new CachingPermissionChecker(
+            request -> {
+              calls.incrementAndGet();
+              return CheckPermissionResponse.newBuilder()
+                  .setPermissionship(
+                      CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+                  .build();
+            },
+            cache);
+
+    checker.check(request("doc1"));
+    checker.check(request("doc1"));
+
+    assertThat(calls).hasValue(2);
+  }
+
+  private static CheckPermissionRequest atExactSnapshot(String documentId, String token) {
+    return request(documentId).toBuilder()
+        .setConsistency(
+            Consistency.newBuilder().setAtExactSnapshot(ZedToken.newBuilder().setToken(token)))
+        .build();
+  }
+
+  private static CheckPermissionRequest request(String documentId) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(documentId))
+        .setPermission("view")
+        .setSubject(
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId("u1")))
+        .build();
+  }
+}
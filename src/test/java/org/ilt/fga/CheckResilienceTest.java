@@ -0,0 +1,154 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import io.grpc.Status;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class CheckResilienceTest {
+
+  private static final CheckPermissionRequest REQUEST =
+      CheckPermissionRequest.newBuilder().setPermission("view").build();
+
+  private final List<CompletableFuture<CheckPermissionResponse>> attempts = new ArrayList<>();
+
+  private CheckResilience resilience;
+
+  @AfterEach
+  void tearDown() {
+    resilience.close();
+  }
+
+  @Test
+  void shouldFailCallsThatExceedTimeout() {
+    resilience = new CheckResilience(Duration.ofMillis(50), 0, Duration.ZERO, 0, Duration.ZERO, 10);
+    PermissionChecker checker = resilience.wrap(pending());
+
+    assertThatThrownBy(() -> checker.check(REQUEST))
+        .isInstanceOf(SpiceDbUnavailableException.class);
+    assertThat(attempts.get(0)).isCancelled();
+    assertThat(resilience.timeoutCount()).isEqualTo(1);
+    assertThat(resilience.inFlight()).isZero();
+  }
+
+  @Test
+  void shouldRejectCallsWhileCircuitIsOpen() throws Exception {
+    resilience =
+        new CheckResilience(Duration.ofSeconds(1), 0, Duration.ZERO, 2, Duration.ofMillis(100), 10);
+    PermissionChecker failing =
+        resilience.wrap(
+            request -> {
+              throw Status.UNAVAILABLE.asRuntimeException();
+            });
+
+    for (int i = 0; i < 2; i++) {
+      assertThatThrownBy(() -> failing.check(REQUEST))
+          .isNotInstanceOf(SpiceDbUnavailableException.class);
+    }
+    assertThat(resilience.getCircuitState()).isEqualTo(CheckResilience.CircuitState.OPEN);
+
+    PermissionChecker healthy = resilience.wrap(request -> allowed());
+    assertThatThrownBy(() -> healthy.check(REQUEST))
+        .isInstanceOf(SpiceDbUnavailableException.class);
+    assertThat(resilience.circuitRejectionCount()).isEqualTo(1);
+
+    TimeUnit.MILLISECONDS.sleep(150);
+    assertThat(healthy.check(REQUEST)).isEqualTo(allowed());
+    assertThat(resilience.getCircuitState()).isEqualTo(CheckResilience.CircuitState.CLOSED);
+  }
+
+  @Test
+  void shouldNotOpenCircuitOnRequestErrors() {
+    resilience =
+        new CheckResilience(Duration.ofSeconds(1), 0, Duration.ZERO, 2, Duration.ofMillis(100), 10);
+    PermissionChecker invalid =
+        resilience.wrap(
+            request -> {
+              throw Status.INVALID_ARGUMENT.asRuntimeException();
+            });
+
+    for (int i = 0; i < 3; i++) {
+      assertThatThrownBy(() -> invalid.check(REQUEST))
+          .isNotInstanceOf(SpiceDbUnavailableException.class);
+    }
+
+    assertThat(resilience.getCircuitState()).isEqualTo(CheckResilience.CircuitState.CLOSED);
+  }
+
+  @Test
+  void shouldRejectCallsBeyondBulkhead() {
+    resilience = new CheckResilience(Duration.ZERO, 0, Duration.ZERO, 0, Duration.ZERO, 1);
+    PermissionChecker checker = resilience.wrap(pending());
+
+    CompletableFuture<CheckPermissionResponse> first = checker.checkAsync(REQUEST);
+    assertThat(resilience.inFlight()).isEqualTo(1);
+    assertThat(checker.checkAsync(REQUEST))
+        .failsWithin(Duration.ofSeconds(1))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(SpiceDbUnavailableException.class);
+    assertThat(resilience.bulkheadRejectionCount()).isEqualTo(1);
+
+    attempts.get(0).complete(allowed());
+    assertThat(first).isCompletedWithValue(allowed());
+    assertThat(resilience.inFlight()).isZero();
+  }
+
+  @Test
+  void shouldHedgeSlowCallAfterLatencyPercentile() throws Exception {
+    resilience =
+        new CheckResilience(
+            Duration.ofSeconds(5), 0.95, Duration.ofMillis(20), 0, Duration.ZERO, 10);
+    PermissionChecker fast = resilience.wrap(request -> allowed());
+    for (int i = 0; i < 20; i++) {
+      fast.check(REQUEST);
+    }
+
+    PermissionChecker slowOnce =
+        resilience.wrap(
+            request -> {
+              if (attempts.isEmpty()) {
+                CompletableFuture<CheckPermissionResponse> slow = new CompletableFuture<>();
+                attempts.add(slow);
+                return slow;
+              }
+              return CompletableFuture.completedFuture(allowed());
+            });
+
+    assertThat(slowOnce.checkAsync(REQUEST).get(1, TimeUnit.SECONDS)).isEqualTo(allowed());
+    assertThat(resilience.hedgeCount()).isEqualTo(1);
+    assertThat(attempts.get(0)).isCancelled();
+  }
+
+  private PermissionChecker pending() {
+    return new PermissionChecker() {
+      @Override
+      public CheckPermissionResponse check(CheckPermissionRequest request) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public CompletableFuture<CheckPermissionResponse> checkAsync(
+          CheckPermissionRequest request) {
+        CompletableFuture<CheckPermissionResponse> attempt = new CompletableFuture<>();
+        attempts.add(attempt);
+        return attempt;
+      }
+    };
+  }
+
+  private static CheckPermissionResponse allowed() {
+    return CheckPermissionResponse.newBuilder()
+        .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+        .build();
+  }
+}
@@ -0,0 +1,160 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+public class CoalescingPermissionCheckerTest {
+
+  private final AtomicInteger calls = new AtomicInteger();
+
+  @Test
+  void shouldShareOneRpcBetweenConcurrentIdenticalChecks() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CoalescingPermissionChecker checker =
+        new CoalescingPermissionChecker(
+            request -> {
+              calls.incrementAndGet();
+              started.countDown();
+              await(release);
+              return allowed();
+            });
+
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<CheckPermissionResponse>> results = new ArrayList<>();
+      results.add(executor.submit(() -> checker.check(request("doc1"))));
+      assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+      for (int i = 0; i < 3; i++) {
+        results.add(executor.submit(() -> checker.check(request("doc1"))));
+      }
+      Thread.sleep(100);
+      release.countDown();
+
+      for (Future<CheckPermissionResponse> result : results) {
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(allowed());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertThat(calls).hasValue(1);
+  }
+
+  @Test
+  void shouldIssueNewRpcOnceThePreviousOneCompleted() {
+    CoalescingPermissionChecker checker =
+        new CoalescingPermissionChecker(
+            request -> {
+              calls.incrementAndGet();
+              return allowed();
+            });
+
+    checker.check(request("doc1"));
+    checker.check(request("doc1"));
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldMemoizeChecksWithinARequest() {
+    RequestContextHolder.setRequestAttributes(new MapRequestAttributes());
+    try {
+      RequestScopedPermissionChecker checker =
+          new RequestScopedPermissionChecker(
+              request -> {
+                calls.incrementAndGet();
+                return allowed();
+              });
+
+      checker.check(request("doc1"));
+      checker.check(request("doc1"));
+      checker.check(request("doc2"));
+    } finally {
+      RequestContextHolder.resetRequestAttributes();
+    }
+    assertThat(calls).hasValue(2);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static CheckPermissionResponse allowed() {
+    return CheckPermissionResponse.newBuilder()
+        .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+        .build();
+  }
+
+  private static CheckPermissionRequest request(String documentId) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(documentId))
+        .setPermission("view")
+        .setSubject(
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId("u1")))
+        .build();
+  }
+
+  private static class MapRequestAttributes implements RequestAttributes {
+    private final Map<String, Object> attributes = new HashMap<>();
+
+    @Override
+    public Object getAttribute(String name, int scope) {
+      return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value, int scope) {
+      attributes.put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name, int scope) {
+      attributes.remove(name);
+    }
+
+    @Override
+    public String[] getAttributeNames(int scope) {
+      return attributes.keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public void registerDestructionCallback(String name, Runnable callback, int scope) {}
+
+    @Override
+    public Object resolveReference(String key) {
+      return null;
+    }
+
+    @Override
+    public String getSessionId() {
+      return "session";
+    }
+
+    @Override
+    public Object getSessionMutex() {
+      return this;
+    }
+  }
+}
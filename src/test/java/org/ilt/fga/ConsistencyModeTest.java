@@ -0,0 +1,161 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ZedToken;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ConsistencyModeTest {
+
+  private static final ZedToken TOKEN = ZedToken.newBuilder().setToken("GhUKEzE2").build();
+
+  @AfterEach
+  void tearDown() {
+    ZedTokenContext.clear();
+  }
+
+  @Test
+  void shouldUseGlobalModeUnlessAnnotationOverridesIt() throws Exception {
+    AuthorizationPlans plans =
+        new AuthorizationPlans(SpelCompilerMode.OFF, ConsistencyMode.FULLY_CONSISTENT);
+
+    assertThat(plans.get(Service.class.getMethod("byDefault", User.class)).getConsistency())
+        .isEqualTo(ConsistencyMode.FULLY_CONSISTENT);
+    assertThat(plans.get(Service.class.getMethod("fresh", User.class)).getConsistency())
+        .isEqualTo(ConsistencyMode.AT_LEAST_AS_FRESH);
+  }
+
+  @Test
+  void shouldEvaluateSnapshotModesAtCurrentToken() {
+    ZedTokenContext.set(TOKEN);
+
+    assertThat(ConsistencyMode.AT_LEAST_AS_FRESH.toConsistency().getAtLeastAsFresh())
+        .isEqualTo(TOKEN);
+    assertThat(ConsistencyMode.AT_EXACT_SNAPSHOT.toConsistency().getAtExactSnapshot())
+        .isEqualTo(TOKEN);
+    assertThat(ConsistencyMode.FULLY_CONSISTENT.toConsistency().getFullyConsistent()).isTrue();
+  }
+
+  @Test
+  void shouldReuseConsistencyOfBoundTokenOnlyOnItsThread() throws Exception {
+    ZedTokenContext.set(TOKEN);
+    Consistency consistency = ConsistencyMode.AT_LEAST_AS_FRESH.toConsistency();
+    AtomicReference<Consistency> other = new AtomicReference<>();
+
+    Thread thread = new Thread(() -> other.set(ConsistencyMode.AT_LEAST_AS_FRESH.toConsistency()));
+    thread.start();
+    thread.join();
+
+    assertThat(ConsistencyMode.AT_LEAST_AS_FRESH.toConsistency()).isSameAs(consistency);
+    assertThat(other.get().getMinimizeLatency()).isTrue();
+  }
+
+  @Test
+  void shouldNotEvaluateClientTokensAtExactSnapshot() {
+    ZedTokenContext.received(TOKEN);
+
+    Consistency consistency = ConsistencyMode.AT_EXACT_SNAPSHOT.toConsistency();
+
+    assertThat(consistency.getRequirementCase())
+        .isEqualTo(Consistency.RequirementCase.AT_LEAST_AS_FRESH);
+    assertThat(consistency.getAtLeastAsFresh()).isEqualTo(TOKEN);
+
+    ZedTokenContext.written(TOKEN);
+    assertThat(ConsistencyMode.AT_EXACT_SNAPSHOT.toConsistency().getAtExactSnapshot())
+        .isEqualTo(TOKEN);
+  }
+
+  @Test
+  void shouldMinimizeLatencyWithoutToken() {
+    assertThat(ConsistencyMode.AT_LEAST_AS_FRESH.toConsistency().getRequirementCase())
+        .isEqualTo(Consistency.RequirementCase.MINIMIZE_LATENCY);
+    assertThat(ConsistencyMode.MINIMIZE_LATENCY.toConsistency().getMinimizeLatency()).isTrue();
+  }
+
+  @Test
+  void shouldSendPlanConsistencyWithChecks() {
+    AtomicReference<CheckPermissionRequest> sent = new AtomicReference<>();
+    PermissionChecker checker =
+        request -> {
+          sent.set(request);
+          return CheckPermissionResponse.newBuilder()
+              .setPermissionship(
+                  CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+              .build();
+        };
+    AspectJProxyFactory factory = new AspectJProxyFactory(new Service());
+    factory.setProxyTargetClass(true);
+    factory.addAspect(new SpiceDbAuthorizeAspect(checker, new AuthorizationPlans()));
+    Service service = factory.getProxy();
+    ZedTokenContext.set(TOKEN);
+
+    service.fresh(new User("u1"));
+    assertThat(sent.get().getConsistency().getAtLeastAsFresh()).isEqualTo(TOKEN);
+
+    service.byDefault(new User("u1"));
+    assertThat(sent.get().getConsistency().getMinimizeLatency()).isTrue();
+  }
+
+  @Test
+  void shouldCarryTokenAcrossRequestsInHeader() throws Exception {
+    ZedTokenFilter filter = new ZedTokenFilter();
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader(ZedTokenFilter.DEFAULT_HEADER, "GhUKEzE1");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicReference<ZedToken> seen = new AtomicReference<>();
+
+    filter.doFilter(
+        request,
+        response,
+        new MockFilterChain() {
+          @Override
+          public void doFilter(ServletRequest req, ServletResponse res) {
+            seen.set(ZedTokenContext.get());
+            assertThat(ZedTokenContext.isServerIssued()).isFalse();
+            ZedTokenContext.written(TOKEN);
+          }
+        });
+
+    assertThat(seen.get().getToken()).isEqualTo("GhUKEzE1");
+    assertThat(response.getHeader(ZedTokenFilter.DEFAULT_HEADER)).isEqualTo("GhUKEzE2");
+    assertThat(ZedTokenContext.get()).isNull();
+  }
+
+  public static class Service {
+    @SpiceDbAuthorize(permission = "document:{user.id}#view@user:{user.id}")
+    public String byDefault(User user) {
+      return "ok";
+    }
+
+    @SpiceDbAuthorize(
+        permission = "document:{user.id}#view@user:{user.id}",
+        consistency = ConsistencyMode.AT_LEAST_AS_FRESH)
+    public String fresh(User user) {
+      return "ok";
+    }
+  }
+
+  public static class User {
+    private final String id;
+
+    public User(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+}
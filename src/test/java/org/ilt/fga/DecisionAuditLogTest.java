@@ -0,0 +1,226 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.ZedToken;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DecisionAuditLogTest {
+
+  private final List<AuthorizationDecision> published = new CopyOnWriteArrayList<>();
+
+  @Test
+  void shouldPublishDecisionsOffTheCallingThread() throws Exception {
+    try (DecisionAuditLog log = new DecisionAuditLog(List.of(published::addAll), 16, 8, 1.0)) {
+      log.record(method(), request("doc1", "alice"), response(true, "t1"), 1_500);
+      log.record(method(), request("doc2", "bob"), response(false, null), 2_500);
+      await(() -> published.size() == 2);
+    }
+
+    AuthorizationDecision first = published.get(0);
+    assertThat(first.method()).isEqualTo(TestClass.class.getName() + "#read");
+    assertThat(first.resource()).isEqualTo("document:doc1");
+    assertThat(first.permission()).isEqualTo("view");
+    assertThat(first.subject()).isEqualTo("user:alice");
+    assertThat(first.allowed()).isTrue();
+    assertThat(first.zedToken()).isEqualTo("t1");
+    assertThat(first.latencyNanos()).isEqualTo(1_500);
+    assertThat(published.get(1).allowed()).isFalse();
+    assertThat(published.get(1).zedToken()).isNull();
+  }
+
+  @Test
+  void shouldSampleAllowedDecisionsButKeepEveryDenial() throws Exception {
+    try (DecisionAuditLog log = new DecisionAuditLog(List.of(published::addAll), 16, 8, 0.0)) {
+      log.record(method(), request("doc1", "alice"), response(true, "t1"), 1);
+      log.record(method(), request("doc2", "alice"), response(false, "t1"), 1);
+
+      assertThat(log.sampledOutCount()).isEqualTo(1);
+      assertThat(log.recordedCount()).isEqualTo(1);
+    }
+    assertThat(published)
+        .extracting(AuthorizationDecision::resource)
+        .containsExactly("document:doc2");
+  }
+
+  @Test
+  void shouldDropDecisionsInsteadOfBlockingWhenSinksFallBehind() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch blocked = new CountDownLatch(1);
+    DecisionAuditSink slow =
+        decisions -> {
+          blocked.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          published.addAll(decisions);
+        };
+
+    try (DecisionAuditLog log = new DecisionAuditLog(List.of(slow), 4, 1, 1.0)) {
+      log.record(method(), request("doc0", "alice"), response(false, null), 1);
+      assertThat(blocked.await(5, TimeUnit.SECONDS)).isTrue();
+      for (int i = 1; i <= 7; i++) {
+        log.record(method(), request("doc" + i, "alice"), response(false, null), 1);
+      }
+
+      assertThat(log.recordedCount()).isEqualTo(5);
+      assertThat(log.droppedCount()).isEqualTo(3);
+      release.countDown();
+    }
+    assertThat(published).hasSize(5);
+  }
+
+  @Test
+  void shouldKeepPublishingWhenASinkFails() throws Exception {
+    DecisionAuditSink failing =
+        decisions -> {
+          throw new IllegalStateException("broker down");
+        };
+    try (DecisionAuditLog log =
+        new DecisionAuditLog(List.of(failing, published::addAll), 16, 8, 1.0)) {
+      log.record(method(), request("doc1", "alice"), response(true, "t1"), 1);
+      await(() -> published.size() == 1);
+      log.record(method(), request("doc2", "alice"), response(true, "t1"), 1);
+      await(() -> published.size() == 2);
+
+      assertThat(log.sinkFailureCount()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void shouldWakeTheIdleDrainerWhenADecisionIsRecorded() throws Exception {
+    try (DecisionAuditLog log = new DecisionAuditLog(List.of(published::addAll), 16, 8, 1.0)) {
+      // long enough for the idle drainer to back off well past its first park
+      Thread.sleep(1_500);
+      long start = System.nanoTime();
+      log.record(method(), request("doc1", "alice"), response(true, "t1"), 1);
+      await(() -> published.size() == 1);
+
+      assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(500));
+    }
+  }
+
+  @Test
+  void shouldAppendJsonLinesToAFile(@TempDir Path directory) throws Exception {
+    Path file = directory.resolve("audit.log");
+    try (DecisionAuditLog log =
+        new DecisionAuditLog(List.of(new FileDecisionAuditSink(file)), 16, 8, 1.0)) {
+      log.record(method(), request("doc\"1", "alice"), response(true, "t1"), 42);
+    }
+
+    List<String> lines = Files.readAllLines(file);
+    assertThat(lines).hasSize(1);
+    assertThat(lines.get(0))
+        .startsWith("{\"timestamp\":\"")
+        .contains("\"resource\":\"document:doc\\\"1\"")
+        .contains("\"allowed\":true,\"zedToken\":\"t1\",\"latencyNanos\":42}");
+  }
+
+  @Test
+  void shouldAuditChecksOfAnnotatedMethods() throws Throwable {
+    PermissionChecker checker = request -> response(true, "t7");
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(method());
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new Document("doc9", "carol")});
+    when(joinPoint.proceed()).thenReturn("ok");
+
+    try (DecisionAuditLog log = new DecisionAuditLog(List.of(published::addAll), 16, 8, 1.0)) {
+      SpiceDbAuthorizeAspect aspect =
+          new SpiceDbAuthorizeAspect(
+              checker, new AuthorizationPlans(), ObservationRegistry.NOOP, log);
+      assertThat(aspect.authorize(joinPoint)).isEqualTo("ok");
+      await(() -> published.size() == 1);
+    }
+
+    AuthorizationDecision decision = published.get(0);
+    assertThat(decision.resource()).isEqualTo("document:doc9");
+    assertThat(decision.subject()).isEqualTo("user:carol");
+    assertThat(decision.zedToken()).isEqualTo("t7");
+    assertThat(decision.latencyNanos()).isNotNegative();
+  }
+
+  private static Method method() throws NoSuchMethodException {
+    return TestClass.class.getMethod("read", Document.class);
+  }
+
+  private static CheckPermissionRequest request(String document, String user) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(document))
+        .setPermission("view")
+        .setSubject(
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId(user)))
+        .build();
+  }
+
+  private static CheckPermissionResponse response(boolean allowed, String token) {
+    CheckPermissionResponse.Builder response =
+        CheckPermissionResponse.newBuilder()
+            .setPermissionship(
+                allowed
+                    ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+                    : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION);
+    if (token != null) {
+      response.setCheckedAt(ZedToken.newBuilder().setToken(token));
+    }
+    return response.build();
+  }
+
+  private static void await(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Condition not met within 5s");
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(permission = "document:{document.id}#view@user:{document.owner}")
+    public String read(Document document) {
+      return "ok";
+    }
+  }
+
+  private static class Document {
+    private final String id;
+    private final String owner;
+
+    Document(String id, String owner) {
+      this.id = id;
+      this.owner = owner;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getOwner() {
+      return owner;
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicReference;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+
+public class FgAuthorizeAspectTest {
+
+  private final AtomicReference<CheckPermissionRequest> checked = new AtomicReference<>();
+
+  private final FgAuthorizeAspect aspect =
+      new FgAuthorizeAspect(
+          request -> {
+            checked.set(request);
+            return CheckPermissionResponse.newBuilder()
+                .setPermissionship(
+                    CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+                .build();
+          },
+          ObservationRegistry.NOOP,
+          new AuthorizationPlans(),
+          null,
+          null);
+
+  @Test
+  void shouldCheckTheObjectIdRatherThanTheSubjectId() throws Throwable {
+    assertThat(aspect.authorize(joinPoint("read"))).isEqualTo("ok");
+
+    assertThat(checked.get().getResource().getObjectType()).isEqualTo("document");
+    assertThat(checked.get().getResource().getObjectId()).isEqualTo("doc1");
+    assertThat(checked.get().getSubject().getObject().getObjectId()).isEqualTo("alice");
+  }
+
+  @Test
+  void shouldRejectObjectWithoutId() throws Throwable {
+    ProceedingJoinPoint joinPoint = joinPoint("typeOnly");
+
+    assertThrows(FgaAuthorizationException.class, () -> aspect.authorize(joinPoint));
+    assertThat(checked.get()).isNull();
+  }
+
+  private static ProceedingJoinPoint joinPoint(String name) throws Throwable {
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    Method method = TestClass.class.getMethod(name, User.class, Document.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(method);
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new User(), new Document()});
+    when(joinPoint.proceed()).thenReturn("ok");
+    return joinPoint;
+  }
+
+  private static class TestClass {
+    @FgaAuthorize(permission = "view", object = "document:{document.id}", subject = "user.id")
+    public String read(User user, Document document) {
+      return "ok";
+    }
+
+    @FgaAuthorize(permission = "view", object = "document", subject = "user.id")
+    public String typeOnly(User user, Document document) {
+      return "ok";
+    }
+  }
+
+  public static class User {
+    public String getId() {
+      return "alice";
+    }
+  }
+
+  public static class Document {
+    public String getId() {
+      return "doc1";
+    }
+  }
+}
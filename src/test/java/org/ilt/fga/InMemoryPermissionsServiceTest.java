@@ -0,0 +1,230 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+public class InMemoryPermissionsServiceTest {
+
+  static final String SCHEMA =
+      """
+      definition user {}
+
+      definition group {
+        relation member: user | group#member
+      }
+
+      /** folders pass their permissions down to documents */
+      definition folder {
+        relation viewer: user | group#member
+        permission view = viewer
+      }
+
+      definition document {
+        relation parent: folder
+        relation owner: user
+        relation viewer: user | user:* | group#member
+        relation banned: user
+        relation approved: user
+        // viewers of the parent folder can see the document too
+        permission view = (owner + viewer + parent->view) - banned
+        permission approve = owner & approved
+        permission none = nil
+      }
+      """;
+
+  static final String RELATIONSHIPS =
+      """
+      // direct
+      document:doc1#owner@user:alice
+      document:doc1#viewer@group:eng#member
+      document:doc1#banned@user:mallory
+      document:doc1#approved@user:alice
+      document:doc2#parent@folder:f1
+      document:doc3#viewer@user:*
+      folder:f1#viewer@user:carol
+      group:eng#member@group:leads#member
+      group:leads#member@user:bob
+      group:leads#member@user:mallory
+      """;
+
+  private InProcessSpiceDb spiceDb;
+  private InMemoryPermissionsService service;
+
+  @BeforeEach
+  void setUp() {
+    service = new InMemoryPermissionsService(SCHEMA, RELATIONSHIPS);
+    spiceDb = InProcessSpiceDb.start(service);
+  }
+
+  @AfterEach
+  void tearDown() {
+    spiceDb.close();
+  }
+
+  @Test
+  void shouldEvaluateRelationsUnionsAndNestedGroups() {
+    assertThat(check("doc1", "view", "alice")).isTrue();
+    assertThat(check("doc1", "view", "bob")).isTrue();
+    assertThat(check("doc1", "view", "carol")).isFalse();
+    assertThat(check("doc1", "owner", "alice")).isTrue();
+  }
+
+  @Test
+  void shouldEvaluateExclusionsAndIntersections() {
+    assertThat(check("doc1", "view", "mallory")).isFalse();
+    assertThat(check("doc1", "approve", "alice")).isTrue();
+    assertThat(check("doc1", "approve", "bob")).isFalse();
+    assertThat(check("doc1", "none", "alice")).isFalse();
+  }
+
+  @Test
+  void shouldFollowArrowsAndWildcards() {
+    assertThat(check("doc2", "view", "carol")).isTrue();
+    assertThat(check("doc2", "view", "alice")).isFalse();
+    assertThat(check("doc3", "view", "anyone")).isTrue();
+  }
+
+  @Test
+  void shouldCheckSubjectSets() {
+    SubjectReference leads =
+        SubjectReference.newBuilder()
+            .setObject(ObjectReference.newBuilder().setObjectType("group").setObjectId("leads"))
+            .setOptionalRelation("member")
+            .build();
+
+    assertThat(service.check("group", "eng", "member", RelationshipStore.subject(leads))).isTrue();
+    assertThat(service.check("document", "doc1", "view", RelationshipStore.subject(leads)))
+        .isTrue();
+  }
+
+  @Test
+  void shouldAnswerBulkChecksWithPerItemErrors() {
+    CheckBulkPermissionsResponse response =
+        spiceDb
+            .permissionsService()
+            .checkBulkPermissions(
+                CheckBulkPermissionsRequest.newBuilder()
+                    .addItems(item("doc1", "view", "bob"))
+                    .addItems(item("doc2", "view", "bob"))
+                    .addItems(item("doc1", "edit", "bob"))
+                    .build());
+
+    List<CheckBulkPermissionsPair> pairs = response.getPairsList();
+    assertThat(pairs.get(0).getItem().getPermissionship())
+        .isEqualTo(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION);
+    assertThat(pairs.get(1).getItem().getPermissionship())
+        .isEqualTo(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION);
+    assertThat(pairs.get(2).getError().getCode()).isEqualTo(Status.Code.INVALID_ARGUMENT.value());
+  }
+
+  @Test
+  void shouldLookUpResources() {
+    List<String> ids = new ArrayList<>();
+    spiceDb
+        .permissionsService()
+        .lookupResources(
+            LookupResourcesRequest.newBuilder()
+                .setResourceObjectType("document")
+                .setPermission("view")
+                .setSubject(user("carol"))
+                .build())
+        .forEachRemaining(response -> ids.add(response.getResourceObjectId()));
+
+    assertThat(ids).containsExactly("doc2", "doc3");
+  }
+
+  @Test
+  void shouldServeAuthorizedResources() {
+    AuthorizedResources resources =
+        new AuthorizedResources(spiceDb.permissionsService(), new AuthorizationPlans());
+
+    try (Stream<String> ids = resources.ids("document", "view", "user:bob")) {
+      assertThat(ids.collect(Collectors.toList())).containsExactly("doc1", "doc3");
+    }
+  }
+
+  @Test
+  void shouldRejectUnknownPermissions() {
+    assertThatThrownBy(() -> check("doc1", "edit", "alice"))
+        .isInstanceOf(StatusRuntimeException.class)
+        .hasMessageContaining("INVALID_ARGUMENT");
+  }
+
+  @Test
+  void shouldLoadFromResources() {
+    InMemoryPermissionsService loaded =
+        InMemoryPermissionsService.load(
+            new ByteArrayResource(SCHEMA.getBytes()),
+            new ByteArrayResource(RELATIONSHIPS.getBytes()));
+
+    assertThat(loaded.check("document", "doc1", "view", subject("bob"))).isTrue();
+  }
+
+  @Test
+  void shouldReportMalformedInput() {
+    assertThatThrownBy(() -> new InMemoryPermissionsService(SCHEMA, "document:doc1#viewer"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("line 1");
+    assertThatThrownBy(
+            () ->
+                new InMemoryPermissionsService(
+                    "definition document { permission view = viewer + }", ""))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("document#view");
+  }
+
+  private boolean check(String document, String permission, String user) {
+    CheckPermissionResponse response =
+        spiceDb
+            .permissionsService()
+            .checkPermission(
+                CheckPermissionRequest.newBuilder()
+                    .setResource(
+                        ObjectReference.newBuilder()
+                            .setObjectType("document")
+                            .setObjectId(document))
+                    .setPermission(permission)
+                    .setSubject(user(user))
+                    .build());
+    return PermissionDecisions.isAllowed(response);
+  }
+
+  private static CheckBulkPermissionsRequestItem item(
+      String document, String permission, String user) {
+    return CheckBulkPermissionsRequestItem.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(document))
+        .setPermission(permission)
+        .setSubject(user(user))
+        .build();
+  }
+
+  private static RelationshipStore.Subject subject(String user) {
+    return RelationshipStore.subject(user(user));
+  }
+
+  private static SubjectReference user(String id) {
+    return SubjectReference.newBuilder()
+        .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId(id))
+        .build();
+  }
+}
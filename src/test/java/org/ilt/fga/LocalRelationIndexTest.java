@@ -0,0 +1,276 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ContextualizedCaveat;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.ReadRelationshipsRequest;
+import com.authzed.api.v1.ReadRelationshipsResponse;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.RelationshipUpdate;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.WatchRequest;
+import com.authzed.api.v1.WatchResponse;
+import com.authzed.api.v1.WatchServiceGrpc;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class LocalRelationIndexTest {
+
+  private static final ZedToken READ_AT = ZedToken.newBuilder().setToken("r1").build();
+
+  private final AtomicInteger remoteChecks = new AtomicInteger();
+  private final List<Consistency> readConsistencies = new CopyOnWriteArrayList<>();
+  private final AtomicReference<WatchRequest> watchRequest = new AtomicReference<>();
+  private final AtomicReference<StreamObserver<WatchResponse>> watchStream =
+      new AtomicReference<>();
+
+  private InProcessSpiceDb spiceDb;
+  private LocalRelationIndex index;
+  private PermissionChecker checker;
+
+  @BeforeEach
+  void setUp() {
+    spiceDb = InProcessSpiceDb.start(new ReadService(), new WatchService());
+    index =
+        new LocalRelationIndex(
+            spiceDb.permissionsService(),
+            WatchServiceGrpc.newStub(spiceDb.channel()),
+            List.of("document#owner"),
+            Duration.ofMillis(10));
+    checker =
+        index.wrap(
+            request -> {
+              remoteChecks.incrementAndGet();
+              return CheckPermissionResponse.newBuilder()
+                  .setPermissionship(
+                      CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+                  .build();
+            });
+    index.start();
+    await(() -> watchStream.get() != null && index.isReady());
+  }
+
+  @AfterEach
+  void tearDown() {
+    index.close();
+    spiceDb.close();
+  }
+
+  @Test
+  void shouldAnswerDirectRelationsLocally() {
+    assertThat(allowed(check("doc1", "owner", "alice"))).isTrue();
+    assertThat(allowed(check("doc1", "owner", "bob"))).isFalse();
+    assertThat(allowed(check("unknown", "owner", "alice"))).isFalse();
+    assertThat(remoteChecks).hasValue(0);
+    assertThat(index.hitCount()).isEqualTo(3);
+    assertThat(index.tupleCount()).isEqualTo(3);
+    assertThat(index.estimatedBytes()).isPositive();
+    assertThat(watchRequest.get().getOptionalStartCursor()).isEqualTo(READ_AT);
+    assertThat(readConsistencies)
+        .containsExactly(Consistency.newBuilder().setAtExactSnapshot(READ_AT).build());
+  }
+
+  @Test
+  void shouldNotAnswerLocallyUntilWatchIsConfirmed() {
+    StreamObserver<WatchResponse> first = watchStream.get();
+    first.onError(io.grpc.Status.UNAVAILABLE.asRuntimeException());
+    await(() -> watchStream.get() != first);
+
+    assertThat(index.isReady()).isFalse();
+    check("doc1", "owner", "alice");
+    assertThat(remoteChecks).hasValue(1);
+
+    watchStream.get().onNext(WatchResponse.getDefaultInstance());
+    await(index::isReady);
+    check("doc1", "owner", "alice");
+    assertThat(remoteChecks).hasValue(1);
+  }
+
+  @Test
+  void shouldDelegateChecksItCannotDecideExactly() {
+    // doc2 has a subject set and doc3 a caveated owner
+    check("doc2", "owner", "bob");
+    check("doc3", "owner", "carol");
+    check("doc1", "view", "alice");
+    checker.check(
+        request("doc1", "owner", "alice").toBuilder()
+            .setConsistency(Consistency.newBuilder().setFullyConsistent(true))
+            .build());
+
+    assertThat(remoteChecks).hasValue(4);
+    assertThat(index.fallbackCount()).isEqualTo(4);
+  }
+
+  @Test
+  void shouldDelegateChecksMadeWithARoutingKey() {
+    SpiceDbRouting.with("acme", () -> check("doc1", "owner", "alice"));
+
+    assertThat(remoteChecks).hasValue(1);
+    assertThat(index.fallbackCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldFollowWatchUpdates() {
+    watchStream
+        .get()
+        .onNext(
+            WatchResponse.newBuilder()
+                .addUpdates(update(RelationshipUpdate.Operation.OPERATION_CREATE, "doc1", "bob"))
+                .addUpdates(update(RelationshipUpdate.Operation.OPERATION_DELETE, "doc1", "alice"))
+                .setChangesThrough(ZedToken.newBuilder().setToken("r2"))
+                .build());
+    await(() -> index.updateCount() == 2);
+
+    assertThat(allowed(check("doc1", "owner", "bob"))).isTrue();
+    CheckPermissionResponse alice = check("doc1", "owner", "alice");
+    assertThat(allowed(alice)).isFalse();
+    assertThat(alice.getCheckedAt().getToken()).isEqualTo("r2");
+    assertThat(remoteChecks).hasValue(0);
+  }
+
+  @Test
+  void shouldResumeWatchFromLastRevisionAfterDisconnect() {
+    StreamObserver<WatchResponse> first = watchStream.get();
+    first.onNext(
+        WatchResponse.newBuilder().setChangesThrough(ZedToken.newBuilder().setToken("r5")).build());
+    first.onError(io.grpc.Status.UNAVAILABLE.asRuntimeException());
+
+    await(() -> watchStream.get() != first && index.isReady());
+    assertThat(watchRequest.get().getOptionalStartCursor().getToken()).isEqualTo("r5");
+  }
+
+  @Test
+  void longHashSetShouldMatchHashSet() {
+    LongHashSet set = new LongHashSet();
+    Set<Long> expected = new HashSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 20_000; i++) {
+      long key = random.nextInt(2_000);
+      if (random.nextBoolean()) {
+        assertThat(set.add(key)).isEqualTo(expected.add(key));
+      } else {
+        assertThat(set.remove(key)).isEqualTo(expected.remove(key));
+      }
+    }
+    assertThat(set.size()).isEqualTo(expected.size());
+    for (long key = 0; key < 2_000; key++) {
+      assertThat(set.contains(key)).isEqualTo(expected.contains(key));
+    }
+  }
+
+  private CheckPermissionResponse check(String document, String permission, String user) {
+    return checker.check(request(document, permission, user));
+  }
+
+  private static boolean allowed(CheckPermissionResponse response) {
+    return PermissionDecisions.isAllowed(response);
+  }
+
+  private static CheckPermissionRequest request(String document, String permission, String user) {
+    return CheckPermissionRequest.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(document))
+        .setPermission(permission)
+        .setSubject(user(user))
+        .build();
+  }
+
+  private static SubjectReference user(String id) {
+    return SubjectReference.newBuilder()
+        .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId(id))
+        .build();
+  }
+
+  private static Relationship owner(String document, SubjectReference subject) {
+    return Relationship.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(document))
+        .setRelation("owner")
+        .setSubject(subject)
+        .build();
+  }
+
+  private static RelationshipUpdate update(
+      RelationshipUpdate.Operation operation, String document, String user) {
+    return RelationshipUpdate.newBuilder()
+        .setOperation(operation)
+        .setRelationship(owner(document, user(user)))
+        .build();
+  }
+
+  private static void await(BooleanSupplier condition) {
+    long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) {
+        throw new AssertionError("Condition not met within 5s");
+      }
+      Thread.onSpinWait();
+    }
+  }
+
+  private class ReadService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+
+    @Override
+    public void checkPermission(
+        CheckPermissionRequest request, StreamObserver<CheckPermissionResponse> observer) {
+      observer.onNext(
+          CheckPermissionResponse.newBuilder()
+              .setPermissionship(
+                  CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+              .setCheckedAt(READ_AT)
+              .build());
+      observer.onCompleted();
+    }
+
+    @Override
+    public void readRelationships(
+        ReadRelationshipsRequest request, StreamObserver<ReadRelationshipsResponse> observer) {
+      readConsistencies.add(request.getConsistency());
+      List<Relationship> relationships =
+          List.of(
+              owner("doc1", user("alice")),
+              owner(
+                  "doc2",
+                  SubjectReference.newBuilder()
+                      .setObject(
+                          ObjectReference.newBuilder().setObjectType("group").setObjectId("eng"))
+                      .setOptionalRelation("member")
+                      .build()),
+              owner("doc3", user("carol")).toBuilder()
+                  .setOptionalCaveat(ContextualizedCaveat.newBuilder().setCaveatName("on_shift"))
+                  .build());
+      for (Relationship relationship : relationships) {
+        observer.onNext(
+            ReadRelationshipsResponse.newBuilder()
+                .setReadAt(READ_AT)
+                .setRelationship(relationship)
+                .build());
+      }
+      observer.onCompleted();
+    }
+  }
+
+  private class WatchService extends WatchServiceGrpc.WatchServiceImplBase {
+
+    @Override
+    public void watch(WatchRequest request, StreamObserver<WatchResponse> observer) {
+      watchRequest.set(request);
+      watchStream.set(observer);
+    }
+  }
+}
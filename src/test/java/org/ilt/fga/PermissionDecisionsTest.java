@@ -0,0 +1,202 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.micrometer.observation.ObservationRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+
+public class PermissionDecisionsTest {
+
+  @Test
+  void shouldAllowOrAsSoonAsOneCheckAllowsAndCancelTheRest() {
+    CompletableFuture<CheckPermissionResponse> first = new CompletableFuture<>();
+    CompletableFuture<CheckPermissionResponse> second = new CompletableFuture<>();
+
+    CompletableFuture<Boolean> result =
+        PermissionDecisions.combine(List.of(first, second), SpiceDbAuthorize.Operator.OR);
+    second.complete(response(true));
+
+    assertThat(result.join()).isTrue();
+    assertThat(first).isCancelled();
+  }
+
+  @Test
+  void shouldDenyOrWhenEveryCheckDenies() {
+    CompletableFuture<CheckPermissionResponse> first = new CompletableFuture<>();
+    CompletableFuture<CheckPermissionResponse> second = new CompletableFuture<>();
+
+    CompletableFuture<Boolean> result =
+        PermissionDecisions.combine(List.of(first, second), SpiceDbAuthorize.Operator.OR);
+    first.complete(response(false));
+    assertThat(result).isNotDone();
+    second.complete(response(false));
+
+    assertThat(result.join()).isFalse();
+  }
+
+  @Test
+  void shouldDenyAndAsSoonAsOneCheckDenies() {
+    CompletableFuture<CheckPermissionResponse> first = new CompletableFuture<>();
+    CompletableFuture<CheckPermissionResponse> second = new CompletableFuture<>();
+
+    CompletableFuture<Boolean> result =
+        PermissionDecisions.combine(List.of(first, second), SpiceDbAuthorize.Operator.AND);
+    first.complete(response(false));
+
+    assertThat(result.join()).isFalse();
+    assertThat(second).isCancelled();
+  }
+
+  @Test
+  void shouldAllowAndWhenEveryCheckAllows() {
+    CompletableFuture<Boolean> result =
+        PermissionDecisions.combine(
+            List.of(
+                CompletableFuture.completedFuture(response(true)),
+                CompletableFuture.completedFuture(response(true))),
+            SpiceDbAuthorize.Operator.AND);
+
+    assertThat(result.join()).isTrue();
+  }
+
+  @Test
+  void shouldFailOrOnlyWhenNoCheckAllows() {
+    CompletableFuture<Boolean> result =
+        PermissionDecisions.combine(
+            List.of(
+                CompletableFuture.failedFuture(new IllegalStateException("unavailable")),
+                CompletableFuture.completedFuture(response(false))),
+            SpiceDbAuthorize.Operator.OR);
+
+    CompletionException e = assertThrows(CompletionException.class, result::join);
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldCancelTheRpcOfAnUndecidedCheckThroughTheDefaultChain() throws Throwable {
+    CountDownLatch cancelled = new CountDownLatch(1);
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub(cancelled);
+    DefaultListableBeanFactory beans = new DefaultListableBeanFactory();
+    beans.registerSingleton(
+        "cache", new PermissionDecisionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1)));
+    PermissionChecker checker =
+        new SpiceDbAutoConfiguration()
+            .permissionChecker(
+                stub,
+                beans.getBeanProvider(BulkCheckDispatcher.class),
+                beans.getBeanProvider(PermissionDecisionCache.class),
+                beans.getBeanProvider(CheckResilience.class),
+                beans.getBeanProvider(LocalRelationIndex.class),
+                beans.getBeanProvider(ObservationRegistry.class),
+                true,
+                true);
+    try (DecisionAuditLog auditLog = new DecisionAuditLog(List.of(), 16, 16, 1.0)) {
+      SpiceDbAuthorizeAspect aspect =
+          new SpiceDbAuthorizeAspect(
+              checker, new AuthorizationPlans(), ObservationRegistry.NOOP, auditLog, null);
+
+      assertThat(aspect.authorize(joinPoint())).isEqualTo("ok");
+    }
+
+    assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+  }
+
+  private static ProceedingJoinPoint joinPoint() throws Throwable {
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod())
+        .thenReturn(TestClass.class.getMethod("read", Document.class, User.class));
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new Document(), new User()});
+    when(joinPoint.proceed()).thenReturn("ok");
+    return joinPoint;
+  }
+
+  /** Allows {@code document:fast} at once and never answers for {@code document:slow}. */
+  private static PermissionsServiceGrpc.PermissionsServiceBlockingStub stub(
+      CountDownLatch cancelled) throws Exception {
+    GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .addService(
+                new PermissionsServiceGrpc.PermissionsServiceImplBase() {
+                  @Override
+                  public void checkPermission(
+                      CheckPermissionRequest request,
+                      StreamObserver<CheckPermissionResponse> observer) {
+                    if (request.getResource().getObjectId().equals("slow")) {
+                      ((ServerCallStreamObserver<CheckPermissionResponse>) observer)
+                          .setOnCancelHandler(cancelled::countDown);
+                      return;
+                    }
+                    observer.onNext(response(true));
+                    observer.onCompleted();
+                  }
+                })
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+    return PermissionsServiceGrpc.newBlockingStub(channel);
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(
+        permissions = {
+          "document:{document.slowId}#view@user:{user.id}",
+          "document:{document.id}#view@user:{user.id}"
+        },
+        operator = SpiceDbAuthorize.Operator.OR)
+    public String read(Document document, User user) {
+      return "ok";
+    }
+  }
+
+  public static class Document {
+    public String getId() {
+      return "fast";
+    }
+
+    public String getSlowId() {
+      return "slow";
+    }
+  }
+
+  public static class User {
+    public String getId() {
+      return "u1";
+    }
+  }
+
+  private static CheckPermissionResponse response(boolean allowed) {
+    return CheckPermissionResponse.newBuilder()
+        .setPermissionship(
+            allowed
+                ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+                : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+        .build();
+  }
+}
@@ -0,0 +1,311 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.Consistency;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.Precondition;
+import com.authzed.api.v1.Relationship;
+import com.authzed.api.v1.RelationshipFilter;
+import com.authzed.api.v1.RelationshipUpdate;
+import com.authzed.api.v1.SubjectReference;
+import com.authzed.api.v1.WriteRelationshipsRequest;
+import com.authzed.api.v1.WriteRelationshipsResponse;
+import com.authzed.api.v1.ZedToken;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class RelationshipWriterTest {
+
+  private final List<WriteRelationshipsRequest> requests = new CopyOnWriteArrayList<>();
+  private final AtomicInteger revision = new AtomicInteger();
+
+  private InProcessSpiceDb spiceDb;
+  private RelationshipWriter writer;
+
+  @BeforeEach
+  void setUp() {
+    spiceDb = InProcessSpiceDb.start(new WriteService());
+  }
+
+  @AfterEach
+  void tearDown() {
+    writer.close();
+    spiceDb.close();
+    ZedTokenContext.clear();
+  }
+
+  @Test
+  void shouldBatchConcurrentWritesAndHandBackTheToken() throws Exception {
+    writer = writer(Duration.ofMillis(200), 100, null);
+    ExecutorService threads = Executors.newFixedThreadPool(8);
+    List<CompletableFuture<ZedToken>> futures = new ArrayList<>();
+    try {
+      for (int i = 0; i < 20; i++) {
+        String id = "doc" + i;
+        futures.add(
+            CompletableFuture.supplyAsync(() -> writer.touch(owner(id, "alice")), threads)
+                .thenCompose(future -> future));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+          .get(5, TimeUnit.SECONDS);
+    } finally {
+      threads.shutdown();
+    }
+
+    assertThat(requests).hasSize(1);
+    assertThat(requests.get(0).getUpdatesCount()).isEqualTo(20);
+    assertThat(futures).allSatisfy(f -> assertThat(f.get().getToken()).isEqualTo("1"));
+    assertThat(writer.requestCount()).isEqualTo(1);
+    assertThat(writer.updateCount()).isEqualTo(20);
+  }
+
+  @Test
+  void shouldSendFullBatchesWithoutWaitingForTheWindow() throws Exception {
+    writer = writer(Duration.ofSeconds(30), 2, null);
+
+    CompletableFuture<ZedToken> first = writer.create(owner("doc1", "alice"));
+    CompletableFuture<ZedToken> second = writer.create(owner("doc2", "alice"));
+
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(first.get());
+    assertThat(requests).hasSize(1);
+  }
+
+  @Test
+  void shouldSplitBatchesThatUpdateTheSameRelationshipTwice() throws Exception {
+    writer = writer(Duration.ofSeconds(30), 100, null);
+
+    CompletableFuture<ZedToken> created = writer.create(owner("doc1", "alice"));
+    CompletableFuture<ZedToken> other = writer.create(owner("doc2", "alice"));
+    CompletableFuture<ZedToken> deleted = writer.delete(owner("doc1", "alice"));
+    writer.flush();
+
+    assertThat(deleted.get(5, TimeUnit.SECONDS).getToken()).isEqualTo("2");
+    assertThat(created.get().getToken()).isEqualTo("1");
+    assertThat(other.get().getToken()).isEqualTo("1");
+    assertThat(requests)
+        .extracting(WriteRelationshipsRequest::getUpdatesCount)
+        .containsExactly(2, 1);
+  }
+
+  @Test
+  void shouldFailOnlyTheWriteWhosePreconditionFails() throws Exception {
+    writer = writer(Duration.ofSeconds(30), 100, null);
+
+    CompletableFuture<ZedToken> guarded =
+        writer.write(
+            List.of(update(owner("doc1", "alice"))),
+            List.of(
+                Precondition.newBuilder()
+                    .setOperation(Precondition.Operation.OPERATION_MUST_MATCH)
+                    .setFilter(RelationshipFilter.newBuilder().setResourceType("locked"))
+                    .build()));
+    CompletableFuture<ZedToken> plain = writer.touch(owner("doc2", "alice"));
+    writer.flush();
+
+    assertThat(plain.get(5, TimeUnit.SECONDS)).isNotNull();
+    assertThatThrownBy(guarded::get)
+        .isInstanceOf(ExecutionException.class)
+        .hasMessageContaining("FAILED_PRECONDITION");
+    assertThat(requests).hasSize(2);
+  }
+
+  @Test
+  void shouldSendWritesWithPreconditionsAloneInQueueOrder() throws Exception {
+    writer = writer(Duration.ofSeconds(30), 100, null);
+
+    writer.touch(owner("doc1", "alice"));
+    writer.touch(owner("doc2", "alice"));
+    CompletableFuture<ZedToken> guarded =
+        writer.write(
+            List.of(update(owner("doc3", "alice"))),
+            List.of(
+                Precondition.newBuilder()
+                    .setOperation(Precondition.Operation.OPERATION_MUST_MATCH)
+                    .setFilter(RelationshipFilter.newBuilder().setResourceType("document"))
+                    .build()));
+    CompletableFuture<ZedToken> last = writer.touch(owner("doc4", "alice"));
+    writer.flush();
+
+    assertThat(last.get(5, TimeUnit.SECONDS).getToken()).isEqualTo("3");
+    assertThat(guarded.get().getToken()).isEqualTo("2");
+    assertThat(requests)
+        .extracting(WriteRelationshipsRequest::getUpdatesCount)
+        .containsExactly(2, 1, 1);
+    assertThat(requests.get(1).getOptionalPreconditionsCount()).isEqualTo(1);
+    assertThat(requests.get(2).getOptionalPreconditionsCount()).isZero();
+  }
+
+  @Test
+  void shouldInvalidateCachedDecisions() throws Exception {
+    PermissionDecisionCache cache =
+        new PermissionDecisionCache(100, Duration.ofMinutes(1), Duration.ofMinutes(1));
+    writer = writer(Duration.ofMillis(1), 100, cache);
+
+    CheckKey doc1 = new CheckKey("document", "doc1", "view", "user", "alice", "", null);
+    CheckKey doc1Acme = new CheckKey("document", "doc1", "view", "user", "alice", "", "acme");
+    CheckKey doc2 = new CheckKey("document", "doc2", "view", "user", "alice", "", null);
+    CheckPermissionResponse allowed =
+        CheckPermissionResponse.newBuilder()
+            .setPermissionship(CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+            .build();
+    cache.put(doc1, allowed, System.nanoTime());
+    cache.put(doc1Acme, allowed, System.nanoTime());
+    cache.put(doc2, allowed, System.nanoTime());
+
+    ZedToken token = writer.touch(owner("doc1", "alice")).get(5, TimeUnit.SECONDS);
+
+    assertThat(cache.getLastWrite()).isEqualTo(token);
+    assertThat(cache.get(doc1, Consistency.getDefaultInstance())).isNull();
+    assertThat(cache.get(doc1Acme, Consistency.getDefaultInstance())).isNull();
+    assertThat(cache.get(doc2, Consistency.getDefaultInstance())).isEqualTo(allowed);
+  }
+
+  @Test
+  void shouldRecordTokenInTheContextOfTheWritingThread() throws Exception {
+    writer = writer(Duration.ofMillis(1), 100, null);
+    List<ZedToken> listened = new CopyOnWriteArrayList<>();
+    ZedTokenContext.onWrite(listened::add);
+
+    ZedToken token = writer.touch(owner("doc1", "alice")).get(5, TimeUnit.SECONDS);
+
+    assertThat(ZedTokenContext.get()).isEqualTo(token);
+    assertThat(ZedTokenContext.isServerIssued()).isTrue();
+    assertThat(listened).containsExactly(token);
+  }
+
+  @Test
+  void shouldNotBindTokensToThreadsOutsideOfARequest() throws Exception {
+    writer = writer(Duration.ofMillis(1), 100, null);
+    ExecutorService thread = Executors.newSingleThreadExecutor();
+    try {
+      Consistency consistency =
+          CompletableFuture.supplyAsync(
+                  () -> {
+                    writer.touch(owner("doc1", "alice")).join();
+                    return ConsistencyMode.AT_EXACT_SNAPSHOT.toConsistency();
+                  },
+                  thread)
+              .get(5, TimeUnit.SECONDS);
+      ZedToken bound = CompletableFuture.supplyAsync(ZedTokenContext::get, thread).get();
+
+      assertThat(consistency.getMinimizeLatency()).isTrue();
+      assertThat(bound).isNull();
+    } finally {
+      thread.shutdown();
+    }
+  }
+
+  @Test
+  void shouldSendQueuedWritesOnClose() throws Exception {
+    writer = writer(Duration.ofMinutes(1), 100, null);
+    CompletableFuture<ZedToken> queued = writer.touch(owner("doc1", "alice"));
+
+    writer.close();
+
+    assertThat(queued).isCompleted();
+    assertThat(requests).hasSize(1);
+    assertThat(writer.touch(owner("doc2", "alice")))
+        .failsWithin(Duration.ofSeconds(1))
+        .withThrowableOfType(ExecutionException.class)
+        .withCauseInstanceOf(FgaAuthorizationException.class);
+  }
+
+  @Test
+  void shouldWriteOnlyAfterTheTransactionCommits() throws Exception {
+    writer =
+        new RelationshipWriter(
+            spiceDb.permissionsService(), null, Duration.ofMillis(1), 100, true);
+
+    TransactionSynchronizationManager.initSynchronization();
+    CompletableFuture<ZedToken> committed;
+    CompletableFuture<ZedToken> rolledBack;
+    List<TransactionSynchronization> synchronizations;
+    try {
+      committed = writer.touch(owner("doc1", "alice"));
+      synchronizations = TransactionSynchronizationManager.getSynchronizations();
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    Thread.sleep(50);
+    assertThat(requests).isEmpty();
+
+    synchronizations.forEach(
+        s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+    assertThat(committed.get(5, TimeUnit.SECONDS)).isNotNull();
+
+    TransactionSynchronizationManager.initSynchronization();
+    try {
+      rolledBack = writer.touch(owner("doc2", "alice"));
+      TransactionSynchronizationManager.getSynchronizations()
+          .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+    } finally {
+      TransactionSynchronizationManager.clearSynchronization();
+    }
+    assertThatThrownBy(rolledBack::get).isInstanceOf(CancellationException.class);
+    assertThat(requests).hasSize(1);
+  }
+
+  private RelationshipWriter writer(
+      Duration window, int maxBatchSize, PermissionDecisionCache cache) {
+    return new RelationshipWriter(
+        spiceDb.permissionsService(), cache, window, maxBatchSize, false);
+  }
+
+  private static RelationshipUpdate update(Relationship relationship) {
+    return RelationshipUpdate.newBuilder()
+        .setOperation(RelationshipUpdate.Operation.OPERATION_TOUCH)
+        .setRelationship(relationship)
+        .build();
+  }
+
+  private static Relationship owner(String document, String user) {
+    return Relationship.newBuilder()
+        .setResource(ObjectReference.newBuilder().setObjectType("document").setObjectId(document))
+        .setRelation("owner")
+        .setSubject(
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId(user)))
+        .build();
+  }
+
+  private class WriteService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+
+    @Override
+    public void writeRelationships(
+        WriteRelationshipsRequest request, StreamObserver<WriteRelationshipsResponse> observer) {
+      requests.add(request);
+      for (Precondition precondition : request.getOptionalPreconditionsList()) {
+        if ("locked".equals(precondition.getFilter().getResourceType())) {
+          observer.onError(Status.FAILED_PRECONDITION.asRuntimeException());
+          return;
+        }
+      }
+      observer.onNext(
+          WriteRelationshipsResponse.newBuilder()
+              .setWrittenAt(
+                  ZedToken.newBuilder().setToken(Integer.toString(revision.incrementAndGet())))
+              .build());
+      observer.onCompleted();
+    }
+  }
+}
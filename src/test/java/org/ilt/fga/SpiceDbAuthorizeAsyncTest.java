@@ -0,0 +1,250 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+public class SpiceDbAuthorizeAsyncTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  @Mock private ProceedingJoinPoint joinPoint;
+
+  @Mock private MethodSignature methodSignature;
+
+  private SpiceDbAuthorizeAspect aspect;
+
+  private volatile CheckPermissionResponse.Permissionship permissionship;
+
+  /** Holds check responses back until the method has been invoked. */
+  private final CountDownLatch invoked = new CountDownLatch(1);
+
+  @BeforeEach
+  public void setUp() throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .addService(
+                new PermissionsServiceGrpc.PermissionsServiceImplBase() {
+                  @Override
+                  public void checkPermission(
+                      CheckPermissionRequest request,
+                      StreamObserver<CheckPermissionResponse> observer) {
+                    if (request.getPermission().equals("SPECULATE")) {
+                      awaitInvocation();
+                    }
+                    observer.onNext(
+                        CheckPermissionResponse.newBuilder()
+                            .setPermissionship(permissionship)
+                            .build());
+                    observer.onCompleted();
+                  }
+                })
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+
+    aspect = new SpiceDbAuthorizeAspect(PermissionsServiceGrpc.newBlockingStub(channel));
+
+    when(joinPoint.getSignature()).thenReturn(methodSignature);
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new User("123", "456")});
+  }
+
+  @Test
+  public void shouldSubscribeToMonoOnlyAfterCheckAllows() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("monoMethod"));
+    when(joinPoint.proceed()).thenReturn(Mono.just("ok"));
+
+    Object result = aspect.authorize(joinPoint);
+
+    verify(joinPoint, never()).proceed();
+    StepVerifier.create((Mono<?>) result).expectNext("ok").verifyComplete();
+    verify(joinPoint).proceed();
+  }
+
+  @Test
+  public void shouldFailMonoWhenDenied() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("monoMethod"));
+
+    Object result = aspect.authorize(joinPoint);
+
+    StepVerifier.create((Mono<?>) result).verifyError(UnauthorizedException.class);
+    verify(joinPoint, never()).proceed();
+  }
+
+  @Test
+  public void shouldAuthorizeFlux() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("fluxMethod"));
+    when(joinPoint.proceed()).thenReturn(Flux.just("a", "b"));
+
+    Object result = aspect.authorize(joinPoint);
+
+    StepVerifier.create((Flux<?>) result).expectNext("a", "b").verifyComplete();
+  }
+
+  @Test
+  public void shouldCompleteFutureAfterCheckAllows() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("futureMethod"));
+    when(joinPoint.proceed()).thenReturn(CompletableFuture.completedFuture("ok"));
+
+    Object result = aspect.authorize(joinPoint);
+
+    assertThat(((CompletableFuture<?>) result).get(5, TimeUnit.SECONDS)).isEqualTo("ok");
+  }
+
+  @Test
+  public void shouldFailFutureWhenDenied() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("futureMethod"));
+
+    CompletableFuture<?> result = (CompletableFuture<?>) aspect.authorize(joinPoint);
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(UnauthorizedException.class);
+    verify(joinPoint, never()).proceed();
+  }
+
+  @Test
+  public void shouldRunSpeculativeMethodWhileCheckIsInFlight() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("speculativeMethod"));
+    when(joinPoint.proceed())
+        .thenAnswer(
+            invocation -> {
+              invoked.countDown();
+              return "ok";
+            });
+
+    assertThat(aspect.authorize(joinPoint)).isEqualTo("ok");
+  }
+
+  @Test
+  public void shouldDiscardSpeculativeResultWhenDenied() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("speculativeMethod"));
+    when(joinPoint.proceed())
+        .thenAnswer(
+            invocation -> {
+              invoked.countDown();
+              throw new IllegalStateException("not found");
+            });
+
+    assertThrows(UnauthorizedException.class, () -> aspect.authorize(joinPoint));
+    verify(joinPoint).proceed();
+  }
+
+  @Test
+  public void shouldFailSpeculativeFutureWhenDenied() throws Throwable {
+    permissionship = CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION;
+    when(methodSignature.getMethod()).thenReturn(method("speculativeFutureMethod"));
+    when(joinPoint.proceed())
+        .thenAnswer(
+            invocation -> {
+              invoked.countDown();
+              return CompletableFuture.completedFuture("secret");
+            });
+
+    CompletableFuture<?> result = (CompletableFuture<?>) aspect.authorize(joinPoint);
+
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(UnauthorizedException.class);
+  }
+
+  private void awaitInvocation() {
+    try {
+      if (!invoked.await(5, TimeUnit.SECONDS)) {
+        throw new IllegalStateException("Method was not invoked while the check was in flight");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static Method method(String name) throws NoSuchMethodException {
+    return TestClass.class.getMethod(name, User.class);
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(permission = "account:{user.accountId}#READ@user:{user.id}")
+    public Mono<String> monoMethod(User user) {
+      return Mono.just("ok");
+    }
+
+    @SpiceDbAuthorize(permission = "account:{user.accountId}#READ@user:{user.id}")
+    public Flux<String> fluxMethod(User user) {
+      return Flux.just("a", "b");
+    }
+
+    @SpiceDbAuthorize(permission = "account:{user.accountId}#READ@user:{user.id}")
+    public CompletableFuture<String> futureMethod(User user) {
+      return CompletableFuture.completedFuture("ok");
+    }
+
+    @SpiceDbAuthorize(
+        permission = "account:{user.accountId}#SPECULATE@user:{user.id}",
+        speculative = true)
+    public String speculativeMethod(User user) {
+      return "ok";
+    }
+
+    @SpiceDbAuthorize(
+        permission = "account:{user.accountId}#SPECULATE@user:{user.id}",
+        speculative = true)
+    public CompletableFuture<String> speculativeFutureMethod(User user) {
+      return CompletableFuture.completedFuture("ok");
+    }
+  }
+
+  private static class User {
+    private final String id;
+    private final String accountId;
+
+    public User(String id, String accountId) {
+      this.id = id;
+      this.accountId = accountId;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getAccountId() {
+      return accountId;
+    }
+  }
+}
@@ -0,0 +1,143 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SpiceDbAuthorizeProcessorTest {
+
+  private static final String SOURCE =
+      """
+      package com.acme;
+
+      import org.ilt.fga.SpiceDbAuthorize;
+
+      public class DocumentService {
+        @SpiceDbAuthorize(permission = "document:{user.account.id}#view@user:{user.id}")
+        public String read(User user) {
+          return "ok";
+        }
+
+        @SpiceDbAuthorize(permission = "document:{long}#view@user:{user.nickname}")
+        public String byId(User user, long id) {
+          return "ok";
+        }
+
+        public static class User {
+          public final String id;
+          private final Account account;
+
+          public User(String id, Account account) {
+            this.id = id;
+            this.account = account;
+          }
+
+          public Account getAccount() {
+            return account;
+          }
+        }
+
+        public static class Account {
+          public int getId() {
+            return 42;
+          }
+        }
+      }
+      """;
+
+  @TempDir Path directory;
+
+  @Test
+  void shouldGenerateReflectionFreeResolvers() throws Exception {
+    DiagnosticCollector<JavaFileObject> diagnostics = compile(SOURCE);
+    assertThat(diagnostics.getDiagnostics())
+        .noneMatch(d -> d.getKind() == Diagnostic.Kind.ERROR);
+
+    URL[] classpath = {directory.toUri().toURL()};
+    try (URLClassLoader loader = new URLClassLoader(classpath, getClass().getClassLoader())) {
+      Class<?> service = loader.loadClass("com.acme.DocumentService");
+      Class<?> userType = loader.loadClass("com.acme.DocumentService$User");
+      Class<?> accountType = loader.loadClass("com.acme.DocumentService$Account");
+      GeneratedResolvers resolvers =
+          (GeneratedResolvers)
+              loader
+                  .loadClass("com.acme.DocumentService" + GeneratedResolvers.CLASS_SUFFIX)
+                  .getDeclaredConstructor()
+                  .newInstance();
+      Object user =
+          userType
+              .getConstructor(String.class, accountType)
+              .newInstance("u1", accountType.getConstructor().newInstance());
+
+      String read = GeneratedResolvers.methodKey(service.getMethod("read", userType));
+      assertThat(resolvers.resolver(read, "user.account.id").resolve(new Object[] {user}))
+          .isEqualTo("42");
+      assertThat(resolvers.resolver(read, "user.id").resolve(new Object[] {user}))
+          .isEqualTo("u1");
+
+      String byId = GeneratedResolvers.methodKey(service.getMethod("byId", userType, long.class));
+      assertThat(resolvers.resolver(byId, "long").resolve(new Object[] {user, 7L})).isEqualTo("7");
+      // properties the processor cannot see are left to the runtime resolvers
+      assertThat(resolvers.resolver(byId, "user.nickname")).isNull();
+
+      Object anonymous = userType.getConstructor(String.class, accountType).newInstance(null, null);
+      assertThatThrownBy(
+              () -> resolvers.resolver(read, "user.account.id").resolve(new Object[] {anonymous}))
+          .isInstanceOf(FgaAuthorizationException.class)
+          .hasMessage("Unable to resolve expression: user.account.id");
+    }
+  }
+
+  @Test
+  void shouldReportMalformedPermissionAsCompileError() throws IOException {
+    DiagnosticCollector<JavaFileObject> diagnostics =
+        compile(SOURCE.replace("{user.account.id}#view", "{user.account.id}view"));
+
+    assertThat(diagnostics.getDiagnostics())
+        .anyMatch(
+            d ->
+                d.getKind() == Diagnostic.Kind.ERROR
+                    && d.getMessage(Locale.ROOT).startsWith("Invalid permission format"));
+  }
+
+  private DiagnosticCollector<JavaFileObject> compile(String source) throws IOException {
+    Path file = directory.resolve("com/acme/DocumentService.java");
+    Files.createDirectories(file.getParent());
+    Files.writeString(file, source);
+
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+    try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+      JavaCompiler.CompilationTask task =
+          compiler.getTask(
+              null,
+              files,
+              diagnostics,
+              List.of(
+                  "-d",
+                  directory.toString(),
+                  "-classpath",
+                  System.getProperty("java.class.path")),
+              null,
+              files.getJavaFileObjects(file));
+      task.setProcessors(List.of(new SpiceDbAuthorizeProcessor()));
+      task.call();
+    }
+    return diagnostics;
+  }
+}
@@ -0,0 +1,121 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+public class SpiceDbChannelPoolTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final AtomicInteger firstCalls = new AtomicInteger();
+
+  private final AtomicInteger secondCalls = new AtomicInteger();
+
+  @Test
+  void shouldSpreadCallsOverChannels() throws Exception {
+    SpiceDbChannelPool pool =
+        new SpiceDbChannelPool(
+            List.of(channel(firstCalls, 0), channel(secondCalls, 0)), Duration.ZERO);
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub =
+        PermissionsServiceGrpc.newBlockingStub(pool.channel());
+
+    for (int i = 0; i < 4; i++) {
+      stub.checkPermission(CheckPermissionRequest.getDefaultInstance());
+    }
+    pool.close();
+
+    assertThat(firstCalls).hasValue(2);
+    assertThat(secondCalls).hasValue(2);
+    assertThat(pool.getChannels()).allMatch(ManagedChannel::isShutdown);
+  }
+
+  @Test
+  void shouldApplyDefaultDeadline() throws Exception {
+    SpiceDbChannelPool pool =
+        new SpiceDbChannelPool(List.of(channel(firstCalls, 500)), Duration.ofMillis(50));
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub =
+        PermissionsServiceGrpc.newBlockingStub(pool.channel());
+
+    StatusRuntimeException e =
+        assertThrows(
+            StatusRuntimeException.class,
+            () -> stub.checkPermission(CheckPermissionRequest.getDefaultInstance()));
+    pool.close();
+
+    assertThat(e.getStatus().getCode()).isEqualTo(Status.Code.DEADLINE_EXCEEDED);
+  }
+
+  @Test
+  void shouldNotApplyDefaultDeadlineToStreams() throws Exception {
+    SpiceDbChannelPool pool =
+        new SpiceDbChannelPool(List.of(channel(firstCalls, 200)), Duration.ofMillis(50));
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub =
+        PermissionsServiceGrpc.newBlockingStub(pool.channel());
+
+    List<LookupResourcesResponse> responses = new ArrayList<>();
+    stub.lookupResources(LookupResourcesRequest.getDefaultInstance())
+        .forEachRemaining(responses::add);
+    pool.close();
+
+    assertThat(responses).hasSize(2);
+  }
+
+  private ManagedChannel channel(AtomicInteger calls, long delayMillis) throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .addService(
+                new PermissionsServiceGrpc.PermissionsServiceImplBase() {
+                  @Override
+                  public void checkPermission(
+                      CheckPermissionRequest request,
+                      StreamObserver<CheckPermissionResponse> observer) {
+                    calls.incrementAndGet();
+                    try {
+                      Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    observer.onNext(CheckPermissionResponse.getDefaultInstance());
+                    observer.onCompleted();
+                  }
+
+                  @Override
+                  public void lookupResources(
+                      LookupResourcesRequest request,
+                      StreamObserver<LookupResourcesResponse> observer) {
+                    calls.incrementAndGet();
+                    observer.onNext(LookupResourcesResponse.getDefaultInstance());
+                    try {
+                      Thread.sleep(delayMillis);
+                    } catch (InterruptedException e) {
+                      Thread.currentThread().interrupt();
+                    }
+                    observer.onNext(LookupResourcesResponse.getDefaultInstance());
+                    observer.onCompleted();
+                  }
+                })
+            .build()
+            .start());
+    return grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build());
+  }
+}
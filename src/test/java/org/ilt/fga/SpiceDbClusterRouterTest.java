@@ -0,0 +1,237 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.WriteRelationshipsRequest;
+import com.authzed.api.v1.WriteRelationshipsResponse;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class SpiceDbClusterRouterTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final FakeCluster eu = new FakeCluster();
+
+  private final FakeCluster us = new FakeCluster();
+
+  private final FakeCluster acme = new FakeCluster();
+
+  private SpiceDbClusterRouter router;
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    SpiceDbRouting.clear();
+    if (router != null) {
+      router.close();
+    }
+  }
+
+  @Test
+  void shouldRouteTenantKeysToTheirCluster() throws Exception {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub("eu");
+
+    SpiceDbRouting.with("acme", () -> stub.checkPermission(request()));
+
+    assertThat(acme.checks).hasValue(1);
+    assertThat(eu.checks).hasValue(0);
+  }
+
+  @Test
+  void shouldPreferLocalRegionForReads() throws Exception {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub("us");
+
+    stub.checkPermission(request());
+    SpiceDbRouting.with("eu", () -> stub.checkPermission(request()));
+
+    assertThat(us.checks).hasValue(1);
+    assertThat(eu.checks).hasValue(1);
+    assertThat(acme.checks).hasValue(0);
+  }
+
+  @Test
+  void shouldSkipClusterAfterConsecutiveFailures() throws Exception {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub("eu");
+    eu.unavailable.set(true);
+
+    for (int i = 0; i < 2; i++) {
+      assertThrows(StatusRuntimeException.class, () -> stub.checkPermission(request()));
+    }
+    stub.checkPermission(request());
+
+    assertThat(eu.checks).hasValue(2);
+    assertThat(us.checks).hasValue(1);
+    assertThat(router.getClusters().get(0).isHealthy()).isFalse();
+    assertThat(router.getClusters().get(0).failureCount()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldSendWritesToFirstHealthyCluster() throws Exception {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub("us");
+
+    stub.writeRelationships(WriteRelationshipsRequest.getDefaultInstance());
+    stub.checkPermission(request());
+
+    assertThat(eu.writes).hasValue(1);
+    assertThat(us.writes).hasValue(0);
+    assertThat(us.checks).hasValue(1);
+  }
+
+  @Test
+  void shouldRouteChecksByAnnotationKey() throws Throwable {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub("eu");
+    SpiceDbAuthorizeAspect aspect =
+        new SpiceDbAuthorizeAspect(
+            stub::checkPermission, new AuthorizationPlans(), ObservationRegistry.NOOP, null, null);
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(TestClass.class.getMethod("read", Document.class));
+    when(joinPoint.getArgs()).thenReturn(new Object[] {new Document()});
+    when(joinPoint.proceed()).thenReturn("ok");
+
+    assertThat(aspect.authorize(joinPoint)).isEqualTo("ok");
+    assertThat(acme.checks).hasValue(1);
+    assertThat(SpiceDbRouting.get()).isNull();
+  }
+
+  @Test
+  void shouldBindTheResolvedKeyAndIgnoreTheHeaderByDefault() throws Exception {
+    SpiceDbRoutingFilter filter = new SpiceDbRoutingFilter(() -> "acme");
+
+    assertThat(routingKeyOf(filter, "globex")).isEqualTo("acme");
+    assertThat(routingKeyOf(new SpiceDbRoutingFilter(() -> null), "globex")).isNull();
+    assertThat(SpiceDbRouting.get()).isNull();
+  }
+
+  @Test
+  void shouldPreferTheHeaderOnlyWhenTrusted() throws Exception {
+    SpiceDbRoutingFilter filter =
+        new SpiceDbRoutingFilter(() -> "acme", SpiceDbRoutingFilter.DEFAULT_HEADER);
+
+    assertThat(routingKeyOf(filter, "globex")).isEqualTo("globex");
+    assertThat(routingKeyOf(filter, null)).isEqualTo("acme");
+  }
+
+  private static String routingKeyOf(SpiceDbRoutingFilter filter, String header)
+      throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    if (header != null) {
+      request.addHeader(SpiceDbRoutingFilter.DEFAULT_HEADER, header);
+    }
+    AtomicReference<String> seen = new AtomicReference<>();
+    filter.doFilter(
+        request,
+        new MockHttpServletResponse(),
+        new MockFilterChain() {
+          @Override
+          public void doFilter(ServletRequest req, ServletResponse res) {
+            seen.set(SpiceDbRouting.get());
+          }
+        });
+    return seen.get();
+  }
+
+  private PermissionsServiceGrpc.PermissionsServiceBlockingStub stub(String localRegion)
+      throws IOException {
+    router =
+        new SpiceDbClusterRouter(
+            List.of(
+                cluster("eu", "eu", List.of(), eu),
+                cluster("us", "us", List.of(), us),
+                cluster("acme", "us", List.of("acme"), acme)),
+            localRegion);
+    return PermissionsServiceGrpc.newBlockingStub(router.channel());
+  }
+
+  private SpiceDbCluster cluster(
+      String name, String region, List<String> tenants, FakeCluster fake) throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName).addService(fake).build().start());
+    SpiceDbChannelPool pool =
+        new SpiceDbChannelPool(
+            List.of(grpcCleanup.register(InProcessChannelBuilder.forName(serverName).build())),
+            Duration.ZERO);
+    return new SpiceDbCluster(name, region, tenants, pool, 2, Duration.ofMinutes(1));
+  }
+
+  private static CheckPermissionRequest request() {
+    return CheckPermissionRequest.getDefaultInstance();
+  }
+
+  private static class FakeCluster extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+    private final AtomicInteger checks = new AtomicInteger();
+    private final AtomicInteger writes = new AtomicInteger();
+    private final AtomicBoolean unavailable = new AtomicBoolean();
+
+    @Override
+    public void checkPermission(
+        CheckPermissionRequest request, StreamObserver<CheckPermissionResponse> observer) {
+      checks.incrementAndGet();
+      if (unavailable.get()) {
+        observer.onError(Status.UNAVAILABLE.asRuntimeException());
+        return;
+      }
+      observer.onNext(
+          CheckPermissionResponse.newBuilder()
+              .setPermissionship(
+                  CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+              .build());
+      observer.onCompleted();
+    }
+
+    @Override
+    public void writeRelationships(
+        WriteRelationshipsRequest request, StreamObserver<WriteRelationshipsResponse> observer) {
+      writes.incrementAndGet();
+      observer.onNext(WriteRelationshipsResponse.getDefaultInstance());
+      observer.onCompleted();
+    }
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(
+        permission = "document:{document.id}#view@user:alice",
+        routingKey = "{document.tenantId}")
+    public String read(Document document) {
+      return "ok";
+    }
+  }
+
+  public static class Document {
+    public String getId() {
+      return "doc1";
+    }
+
+    public String getTenantId() {
+      return "acme";
+    }
+  }
+}
@@ -0,0 +1,308 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.authzed.api.v1.CheckBulkPermissionsPair;
+import com.authzed.api.v1.CheckBulkPermissionsRequest;
+import com.authzed.api.v1.CheckBulkPermissionsRequestItem;
+import com.authzed.api.v1.CheckBulkPermissionsResponse;
+import com.authzed.api.v1.CheckBulkPermissionsResponseItem;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.LookupPermissionship;
+import com.authzed.api.v1.LookupResourcesRequest;
+import com.authzed.api.v1.LookupResourcesResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.PermissionsServiceGrpc;
+import com.authzed.api.v1.SubjectReference;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.grpc.testing.GrpcCleanupRule;
+import io.micrometer.observation.ObservationRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+public class SpiceDbPostFilterAspectTest {
+
+  private final GrpcCleanupRule grpcCleanup = new GrpcCleanupRule();
+
+  private final AtomicInteger bulkCalls = new AtomicInteger();
+
+  private final AtomicInteger lookupCalls = new AtomicInteger();
+
+  @Test
+  void shouldFilterSmallResultsWithBulkChecks() throws Exception {
+    BulkCheckDispatcher dispatcher =
+        new BulkCheckDispatcher(stub(), Duration.ofMillis(5), 100, false);
+    try {
+      DocumentService service = proxy(dispatcher.asPermissionChecker(), null, 10, 2);
+
+      List<Document> documents = service.list(new User("u1"), "doc1", "secret", "doc2");
+
+      assertThat(documents).extracting(Document::getId).containsExactly("doc1", "doc2");
+      assertThat(bulkCalls).hasValue(2);
+      assertThat(lookupCalls).hasValue(0);
+    } finally {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  void shouldCheckThroughPermissionCheckerWithSubjectAndRoutingKey() throws Exception {
+    List<String> routingKeys = new CopyOnWriteArrayList<>();
+    PermissionChecker checker =
+        request -> {
+          routingKeys.add(SpiceDbRouting.get());
+          return response(!request.getResource().getObjectId().equals("secret"));
+        };
+    SubjectResolver subjectResolver =
+        () ->
+            SubjectReference.newBuilder()
+                .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId("alice"))
+                .build();
+    DocumentService service = proxy(checker, subjectResolver, 10, 100);
+
+    List<Document> documents = service.tenantList(new Tenant("acme"), "doc1", "secret");
+
+    assertThat(documents).extracting(Document::getId).containsExactly("doc1");
+    assertThat(routingKeys).containsExactly("acme", "acme");
+    assertThat(SpiceDbRouting.get()).isNull();
+  }
+
+  @Test
+  void shouldFilterLargeResultsWithLookupResources() throws Exception {
+    DocumentService service = proxy(2, 100);
+
+    List<Document> documents = service.list(new User("u1"), "doc1", "secret", "doc2");
+
+    assertThat(documents).extracting(Document::getId).containsExactly("doc1", "doc2");
+    assertThat(bulkCalls).hasValue(0);
+    assertThat(lookupCalls).hasValue(1);
+  }
+
+  @Test
+  void shouldKeepContainerType() throws Exception {
+    DocumentService service = proxy(10, 100);
+
+    assertThat(service.set(new User("u1"), "secret", "doc1"))
+        .extracting(Document::getId)
+        .containsExactly("doc1");
+    assertThat(service.stream(new User("u1"), "doc1", "secret"))
+        .extracting(Document::getId)
+        .containsExactly("doc1");
+    assertThat(service.collection(new User("u1"), "doc1", "secret"))
+        .extracting(Document::getId)
+        .containsExactly("doc1");
+  }
+
+  @Test
+  void shouldRejectConcreteCollectionReturnTypes() throws Exception {
+    assertThatThrownBy(
+            () ->
+                new AuthorizationPlans()
+                    .getFilterPlan(
+                        ConcreteService.class.getMethod("linked", User.class, String[].class)))
+        .isInstanceOf(FgaAuthorizationException.class)
+        .hasMessageContaining("not an implementation");
+  }
+
+  @Test
+  void shouldKeepPageTotals() throws Exception {
+    DocumentService service = proxy(10, 100);
+
+    Page<Document> page = service.page(new User("u1"), "doc1", "secret", "doc2");
+
+    assertThat(page.getContent()).extracting(Document::getId).containsExactly("doc1", "doc2");
+    assertThat(page.getTotalElements()).isEqualTo(10);
+    assertThat(page.getPageable()).isEqualTo(PageRequest.of(0, 3));
+  }
+
+  private DocumentService proxy(int lookupThreshold, int bulkBatchSize) throws IOException {
+    PermissionsServiceGrpc.PermissionsServiceBlockingStub stub = stub();
+    return proxy(new GrpcPermissionChecker(stub), stub, null, lookupThreshold, bulkBatchSize);
+  }
+
+  private DocumentService proxy(
+      PermissionChecker checker,
+      SubjectResolver subjectResolver,
+      int lookupThreshold,
+      int bulkBatchSize)
+      throws IOException {
+    return proxy(checker, stub(), subjectResolver, lookupThreshold, bulkBatchSize);
+  }
+
+  private DocumentService proxy(
+      PermissionChecker checker,
+      PermissionsServiceGrpc.PermissionsServiceBlockingStub stub,
+      SubjectResolver subjectResolver,
+      int lookupThreshold,
+      int bulkBatchSize) {
+    AspectJProxyFactory factory = new AspectJProxyFactory(new DocumentService());
+    factory.setProxyTargetClass(true);
+    factory.addAspect(
+        new SpiceDbPostFilterAspect(
+            checker,
+            stub,
+            new AuthorizationPlans(),
+            ObservationRegistry.NOOP,
+            null,
+            subjectResolver,
+            lookupThreshold,
+            bulkBatchSize));
+    return factory.getProxy();
+  }
+
+  private static CheckPermissionResponse response(boolean allowed) {
+    return CheckPermissionResponse.newBuilder()
+        .setPermissionship(
+            allowed
+                ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION
+                : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION)
+        .build();
+  }
+
+  private PermissionsServiceGrpc.PermissionsServiceBlockingStub stub() throws IOException {
+    String serverName = InProcessServerBuilder.generateName();
+    grpcCleanup.register(
+        InProcessServerBuilder.forName(serverName)
+            .directExecutor()
+            .addService(new FilterService())
+            .build()
+            .start());
+    ManagedChannel channel =
+        grpcCleanup.register(InProcessChannelBuilder.forName(serverName).directExecutor().build());
+    return PermissionsServiceGrpc.newBlockingStub(channel);
+  }
+
+  public static class DocumentService {
+    private static final String PERMISSION = "document:{filterObject.id}#view@user:{user.id}";
+
+    @SpiceDbPostFilter(permission = PERMISSION)
+    public List<Document> list(User user, String... ids) {
+      return Stream.of(ids).map(Document::new).toList();
+    }
+
+    @SpiceDbPostFilter(permission = PERMISSION)
+    public Set<Document> set(User user, String... ids) {
+      return Set.copyOf(list(user, ids));
+    }
+
+    @SpiceDbPostFilter(permission = PERMISSION)
+    public Stream<Document> stream(User user, String... ids) {
+      return list(user, ids).stream();
+    }
+
+    @SpiceDbPostFilter(permission = PERMISSION)
+    public Collection<Document> collection(User user, String... ids) {
+      return Set.copyOf(list(user, ids));
+    }
+
+    @SpiceDbPostFilter(
+        permission = "document:{filterObject.id}#view@user:{subject}",
+        routingKey = "{tenant.id}")
+    public List<Document> tenantList(Tenant tenant, String... ids) {
+      return Stream.of(ids).map(Document::new).toList();
+    }
+
+    @SpiceDbPostFilter(permission = PERMISSION)
+    public Page<Document> page(User user, String... ids) {
+      return new PageImpl<>(list(user, ids), PageRequest.of(0, 3), 10);
+    }
+  }
+
+  public static class ConcreteService {
+    @SpiceDbPostFilter(permission = DocumentService.PERMISSION)
+    public LinkedList<Document> linked(User user, String... ids) {
+      return new LinkedList<>();
+    }
+  }
+
+  public static class Document {
+    private final String id;
+
+    public Document(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  public static class User {
+    private final String id;
+
+    public User(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  public static class Tenant {
+    private final String id;
+
+    public Tenant(String id) {
+      this.id = id;
+    }
+
+    public String getId() {
+      return id;
+    }
+  }
+
+  private class FilterService extends PermissionsServiceGrpc.PermissionsServiceImplBase {
+
+    @Override
+    public void checkBulkPermissions(
+        CheckBulkPermissionsRequest request,
+        StreamObserver<CheckBulkPermissionsResponse> observer) {
+      bulkCalls.incrementAndGet();
+      CheckBulkPermissionsResponse.Builder response = CheckBulkPermissionsResponse.newBuilder();
+      for (CheckBulkPermissionsRequestItem item : request.getItemsList()) {
+        CheckPermissionResponse.Permissionship permissionship =
+            "secret".equals(item.getResource().getObjectId())
+                ? CheckPermissionResponse.Permissionship.PERMISSIONSHIP_NO_PERMISSION
+                : CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION;
+        response.addPairs(
+            CheckBulkPermissionsPair.newBuilder()
+                .setRequest(item)
+                .setItem(
+                    CheckBulkPermissionsResponseItem.newBuilder()
+                        .setPermissionship(permissionship)));
+      }
+      observer.onNext(response.build());
+      observer.onCompleted();
+    }
+
+    @Override
+    public void lookupResources(
+        LookupResourcesRequest request, StreamObserver<LookupResourcesResponse> observer) {
+      lookupCalls.incrementAndGet();
+      for (String id : List.of("doc1", "doc2", "doc3")) {
+        observer.onNext(
+            LookupResourcesResponse.newBuilder()
+                .setResourceObjectId(id)
+                .setPermissionship(LookupPermissionship.LOOKUP_PERMISSIONSHIP_HAS_PERMISSION)
+                .build());
+      }
+      observer.onCompleted();
+    }
+  }
+}
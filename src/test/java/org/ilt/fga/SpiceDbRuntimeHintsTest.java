@@ -0,0 +1,121 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.ObjectReference;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.GenerationContext;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.aot.AotServices;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.aot.BeanRegistrationCode;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.context.annotation.ImportCandidates;
+
+public class SpiceDbRuntimeHintsTest {
+
+  private final RuntimeHints hints = new RuntimeHints();
+
+  @Test
+  void shouldRegisterApiMessagesAndBuilders() throws Exception {
+    new SpiceDbRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+    assertThat(RuntimeHintsPredicates.reflection().onType(CheckPermissionRequest.class))
+        .accepts(hints);
+    assertThat(
+            RuntimeHintsPredicates.reflection()
+                .onMethod(CheckPermissionRequest.class.getMethod("getResource")))
+        .accepts(hints);
+    assertThat(
+            RuntimeHintsPredicates.reflection()
+                .onType(TypeReference.of(ObjectReference.Builder.class)))
+        .accepts(hints);
+  }
+
+  @Test
+  void shouldRegisterAnnotatedMethodsAndArgumentTypes() throws Exception {
+    contribution(DocumentService.class)
+        .applyTo(generationContext(), mock(BeanRegistrationCode.class));
+
+    assertThat(
+            RuntimeHintsPredicates.reflection()
+                .onMethod(DocumentService.class.getMethod("read", User.class)))
+        .accepts(hints);
+    assertThat(RuntimeHintsPredicates.reflection().onMethod(User.class.getMethod("getAccount")))
+        .accepts(hints);
+    // nested property types are reachable from SpEL and accessor expressions
+    assertThat(RuntimeHintsPredicates.reflection().onMethod(Account.class.getMethod("getId")))
+        .accepts(hints);
+    assertThat(RuntimeHintsPredicates.reflection().onType(Document.class)).accepts(hints);
+  }
+
+  @Test
+  void shouldSkipBeansWithoutAnnotations() {
+    assertThat(contribution(User.class)).isNull();
+  }
+
+  @Test
+  void shouldBeRegisteredForBootAndAot() {
+    assertThat(ImportCandidates.load(AutoConfiguration.class, getClass().getClassLoader()))
+        .contains(SpiceDbAutoConfiguration.class.getName());
+    assertThat(AotServices.factories().load(BeanRegistrationAotProcessor.class))
+        .hasAtLeastOneElementOfType(SpiceDbAuthorizationAotProcessor.class);
+  }
+
+  private BeanRegistrationAotContribution contribution(Class<?> beanClass) {
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerBeanDefinition("bean", new RootBeanDefinition(beanClass));
+    return new SpiceDbAuthorizationAotProcessor()
+        .processAheadOfTime(RegisteredBean.of(beanFactory, "bean"));
+  }
+
+  private GenerationContext generationContext() {
+    GenerationContext context = mock(GenerationContext.class);
+    when(context.getRuntimeHints()).thenReturn(hints);
+    return context;
+  }
+
+  public static class DocumentService {
+    @SpiceDbAuthorize(permission = "document:{user.account.id}#view@user:{user.id}")
+    public String read(User user) {
+      return "ok";
+    }
+
+    @SpiceDbPostFilter(permission = "document:{filterObject.id}#view@user:{user.id}")
+    public List<Document> list(User user) {
+      return List.of();
+    }
+  }
+
+  public static class User {
+    public String getId() {
+      return "u1";
+    }
+
+    public Account getAccount() {
+      return new Account();
+    }
+  }
+
+  public static class Account {
+    public String getId() {
+      return "a1";
+    }
+  }
+
+  public static class Document {
+    public String getId() {
+      return "d1";
+    }
+  }
+}
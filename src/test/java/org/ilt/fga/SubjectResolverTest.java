@@ -0,0 +1,188 @@
+package org.ilt.fga;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.authzed.api.v1.CheckPermissionRequest;
+import com.authzed.api.v1.CheckPermissionResponse;
+import com.authzed.api.v1.ObjectReference;
+import com.authzed.api.v1.SubjectReference;
+import io.micrometer.observation.ObservationRegistry;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.core.ClaimAccessor;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+public class SubjectResolverTest {
+
+  private final SecurityContextSubjectResolver resolver =
+      new SecurityContextSubjectResolver("user", "sub");
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  @Test
+  void shouldResolveSubjectFromAuthenticationName() {
+    authenticate("alice");
+
+    assertThat(resolver.resolve()).isEqualTo(user("alice"));
+  }
+
+  @Test
+  void shouldPreferTheConfiguredClaim() {
+    ClaimAccessor jwt = () -> Map.of("sub", "2f1c", "preferred_username", "alice");
+    authenticate(jwt);
+
+    assertThat(resolver.resolve()).isEqualTo(user("2f1c"));
+  }
+
+  @Test
+  void shouldResolveRoutingKeyFromTheConfiguredClaimOnly() {
+    RoutingKeyResolver routing = new SecurityContextRoutingKeyResolver("tenant");
+    ClaimAccessor jwt = () -> Map.of("sub", "2f1c", "tenant", "acme");
+    authenticate(jwt);
+    assertThat(routing.resolve()).isEqualTo("acme");
+
+    authenticate("alice");
+    assertThat(routing.resolve()).isNull();
+  }
+
+  @Test
+  void shouldNotResolveAnonymousCallers() {
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+    assertThat(resolver.resolve()).isNull();
+  }
+
+  @Test
+  void shouldResolveOncePerRequest() {
+    AtomicInteger calls = new AtomicInteger();
+    SubjectResolver scoped =
+        new RequestScopedSubjectResolver(
+            () -> {
+              calls.incrementAndGet();
+              return user("alice");
+            });
+
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+    scoped.resolve();
+    scoped.resolve();
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+    scoped.resolve();
+
+    assertThat(calls).hasValue(2);
+  }
+
+  @Test
+  void shouldExposeSubjectToPermissionExpressions() throws Throwable {
+    AtomicReference<CheckPermissionRequest> checked = new AtomicReference<>();
+    PermissionChecker checker =
+        request -> {
+          checked.set(request);
+          return CheckPermissionResponse.newBuilder()
+              .setPermissionship(
+                  CheckPermissionResponse.Permissionship.PERMISSIONSHIP_HAS_PERMISSION)
+              .build();
+        };
+    SpiceDbAuthorizeAspect aspect =
+        new SpiceDbAuthorizeAspect(
+            checker, new AuthorizationPlans(), ObservationRegistry.NOOP, null, resolver);
+    ProceedingJoinPoint joinPoint = joinPoint("read", "doc1");
+    authenticate("alice");
+
+    assertThat(aspect.authorize(joinPoint)).isEqualTo("ok");
+    assertThat(checked.get().getResource().getObjectId()).isEqualTo("doc1");
+    assertThat(checked.get().getSubject()).isEqualTo(user("alice"));
+  }
+
+  @Test
+  void shouldFailWhenExpressionNeedsAnUnknownSubject() throws Throwable {
+    SpiceDbAuthorizeAspect aspect =
+        new SpiceDbAuthorizeAspect(
+            request -> CheckPermissionResponse.getDefaultInstance(),
+            new AuthorizationPlans(),
+            ObservationRegistry.NOOP,
+            null,
+            resolver);
+    ProceedingJoinPoint joinPoint = joinPoint("read", "doc1");
+
+    assertThrows(FgaAuthorizationException.class, () -> aspect.authorize(joinPoint));
+  }
+
+  @Test
+  void shouldPlaceSubjectAfterTheMethodArguments() throws NoSuchMethodException {
+    AuthorizationPlans plans = new AuthorizationPlans();
+
+    assertThat(plans.get(method("read")).getSubjectIndex()).isEqualTo(1);
+    assertThat(plans.get(method("readAs")).getSubjectIndex()).isEqualTo(-1);
+  }
+
+  private static ProceedingJoinPoint joinPoint(String name, String id) throws Throwable {
+    ProceedingJoinPoint joinPoint = mock(ProceedingJoinPoint.class);
+    MethodSignature signature = mock(MethodSignature.class);
+    when(joinPoint.getSignature()).thenReturn(signature);
+    when(signature.getMethod()).thenReturn(method(name));
+    when(joinPoint.getArgs()).thenReturn(new Object[] {id});
+    when(joinPoint.proceed()).thenReturn("ok");
+    return joinPoint;
+  }
+
+  private static Method method(String name) throws NoSuchMethodException {
+    return name.equals("read")
+        ? TestClass.class.getMethod(name, String.class)
+        : TestClass.class.getMethod(name, String.class, Subject.class);
+  }
+
+  private static void authenticate(Object principal) {
+    SecurityContextHolder.getContext()
+        .setAuthentication(
+            UsernamePasswordAuthenticationToken.authenticated(principal, null, List.of()));
+  }
+
+  private static SubjectReference user(String id) {
+    return SubjectReference.newBuilder()
+        .setObject(ObjectReference.newBuilder().setObjectType("user").setObjectId(id))
+        .build();
+  }
+
+  private static class TestClass {
+    @SpiceDbAuthorize(permission = "document:{string}#view@user:{subject}")
+    public String read(String id) {
+      return "ok";
+    }
+
+    @SpiceDbAuthorize(permission = "document:{string}#view@user:{subject.id}")
+    public String readAs(String id, Subject subject) {
+      return "ok";
+    }
+  }
+
+  private static class Subject {
+    public String getId() {
+      return "bob";
+    }
+  }
+}